@@ -48,6 +48,10 @@ android {
     buildFeatures {
         compose = true
     }
+    testOptions {
+        // JVM tests run the data layer directly, android.util.Log calls become no-ops
+        unitTests.isReturnDefaultValues = true
+    }
 }
 
 dependencies {
@@ -76,6 +80,8 @@ dependencies {
     implementation("org.jetbrains.kotlinx:kotlinx-coroutines-play-services:1.10.2")
     implementation(libs.androidx.core.ktx)
     implementation(libs.androidx.lifecycle.runtime.ktx)
+    implementation(libs.androidx.lifecycle.livedata)
+    implementation(libs.androidx.work.runtime)
     implementation(libs.androidx.activity.compose)
     implementation(platform(libs.androidx.compose.bom))
     implementation(libs.androidx.compose.ui)
@@ -84,6 +90,9 @@ dependencies {
     implementation(libs.androidx.compose.material3)
     implementation(libs.androidx.room.runtime)
     testImplementation(libs.junit)
+    // Runs AlertRepository against Room and the main looper on the JVM
+    testImplementation(libs.robolectric)
+    testImplementation(libs.androidx.test.core)
     androidTestImplementation(libs.androidx.junit)
     androidTestImplementation(libs.androidx.espresso.core)
     androidTestImplementation(platform(libs.androidx.compose.bom))
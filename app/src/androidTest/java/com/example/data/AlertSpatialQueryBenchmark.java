@@ -0,0 +1,125 @@
+package com.example.data;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares geohash indexed radius/viewport lookups against a full scan filtered
+ * in Java, over 100k alerts spread across a city sized area.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AlertSpatialQueryBenchmark {
+    private static final String TAG = "SpatialBenchmark";
+    private static final int ROWS = 100_000;
+    private static final int ITERATIONS = 20;
+
+    // Nairobi CBD, alerts scattered within roughly +/- 25km
+    private static final double CENTER_LAT = -1.2864;
+    private static final double CENTER_LON = 36.8172;
+    private static final double SPREAD = 0.25;
+
+    private AlertDatabase database;
+    private AlertDao alertDao;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = Room.inMemoryDatabaseBuilder(context, AlertDatabase.class).build();
+        alertDao = database.alertDao();
+
+        Random random = new Random(42);
+        List<AlertEntity> batch = new ArrayList<>(1000);
+        for (int i = 0; i < ROWS; i++) {
+            AlertEntity alert = new AlertEntity("EMERGENCY", i,
+                    CENTER_LAT + (random.nextDouble() * 2 - 1) * SPREAD,
+                    CENTER_LON + (random.nextDouble() * 2 - 1) * SPREAD,
+                    null, null, true);
+            alert.updateGeohash();
+            batch.add(alert);
+            if (batch.size() == 1000) {
+                alertDao.insertAll(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void radiusLookup() {
+        double radius = 1000;
+
+        long start = System.nanoTime();
+        List<AlertEntity> indexed = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            indexed = AlertSpatialQuery.withinRadius(alertDao, CENTER_LAT, CENTER_LON, radius);
+        }
+        long indexedMicros = (System.nanoTime() - start) / 1000 / ITERATIONS;
+
+        start = System.nanoTime();
+        int scanned = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            scanned = 0;
+            for (AlertEntity alert : alertDao.getAlertsWithLocation()) {
+                if (AlertSpatialQuery.distanceMeters(CENTER_LAT, CENTER_LON,
+                        alert.getLatitudeDegrees(), alert.getLongitudeDegrees()) <= radius) {
+                    scanned++;
+                }
+            }
+        }
+        long scanMicros = (System.nanoTime() - start) / 1000 / ITERATIONS;
+
+        Log.i(TAG, "1km radius over " + ROWS + " rows: indexed " + indexedMicros
+                + "us, full scan " + scanMicros + "us, matches " + indexed.size());
+        assertEquals(scanned, indexed.size());
+    }
+
+    @Test
+    public void viewportLookup() {
+        double minLat = CENTER_LAT - 0.02, maxLat = CENTER_LAT + 0.02;
+        double minLon = CENTER_LON - 0.03, maxLon = CENTER_LON + 0.03;
+
+        long start = System.nanoTime();
+        List<AlertEntity> indexed = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            indexed = AlertSpatialQuery.inBounds(alertDao, minLat, minLon, maxLat, maxLon);
+        }
+        long indexedMicros = (System.nanoTime() - start) / 1000 / ITERATIONS;
+
+        start = System.nanoTime();
+        int scanned = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            scanned = 0;
+            for (AlertEntity alert : alertDao.getAlertsWithLocation()) {
+                double lat = alert.getLatitudeDegrees();
+                double lon = alert.getLongitudeDegrees();
+                if (lat >= minLat && lat <= maxLat && lon >= minLon && lon <= maxLon) {
+                    scanned++;
+                }
+            }
+        }
+        long scanMicros = (System.nanoTime() - start) / 1000 / ITERATIONS;
+
+        Log.i(TAG, "Viewport over " + ROWS + " rows: indexed " + indexedMicros
+                + "us, full scan " + scanMicros + "us, matches " + indexed.size());
+        assertEquals(scanned, indexed.size());
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.core;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+/**
+ * Brings detection back after a reboot or app update if it was running before.
+ * LOCKED_BOOT_COMPLETED arrives before the first unlock, the service and its
+ * settings are direct boot aware so it can run then.
+ */
+public class BootReceiver extends BroadcastReceiver {
+
+    private static final String TAG = "BootReceiver";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String action = intent.getAction();
+        if (!Intent.ACTION_LOCKED_BOOT_COMPLETED.equals(action)
+                && !Intent.ACTION_BOOT_COMPLETED.equals(action)
+                && !Intent.ACTION_MY_PACKAGE_REPLACED.equals(action)) {
+            return;
+        }
+        if (!EmergencyShakeService.isDetectionEnabled(context)) {
+            return;
+        }
+        // A second start after the unlocked boot broadcast only reaches onStartCommand again
+        Log.d(TAG, "Restarting detection after " + action);
+        ContextCompat.startForegroundService(context, new Intent(context, EmergencyShakeService.class));
+    }
+}
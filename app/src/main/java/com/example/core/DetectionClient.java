@@ -0,0 +1,184 @@
+package com.example.core;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Messenger;
+import android.os.RemoteException;
+import android.util.Log;
+
+import com.example.data.AlertConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * App process side of the detection service's Messenger interface. The binding doesn't
+ * create the service, it connects whenever detection runs. Commands sent while it doesn't
+ * are queued until it does, and every connection starts with the current config snapshot,
+ * so the service never runs on an older contact than the app shows. Status listeners
+ * share one subscription with the service, which pushes a new status on every change.
+ * Call on the main thread.
+ */
+public final class DetectionClient {
+
+    private static final String TAG = "DetectionClient";
+
+    private static DetectionClient instance;
+
+    private final Context context;
+    private final Handler replies = new Handler(Looper.getMainLooper());
+    private Messenger service;
+    // Commands sent while not connected
+    private final List<Message> queued = new ArrayList<>();
+
+    private final List<StatusCallback> listeners = new ArrayList<>();
+    private final Messenger statusReceiver = new Messenger(new Handler(Looper.getMainLooper(), message -> {
+        lastStatus = message.what == EmergencyShakeService.MSG_STATUS
+                ? DetectionStatus.fromBundle(message.getData()) : null;
+        notifyListeners();
+        return true;
+    }));
+    // Last status pushed, null while detection isn't running
+    private DetectionStatus lastStatus;
+
+    public interface StatusCallback {
+        // Null when detection isn't running
+        void onStatus(DetectionStatus status);
+    }
+
+    private final ServiceConnection connection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            service = new Messenger(binder);
+            Log.d(TAG, "✓ Connected to detection");
+            pushConfig(AlertConfig.get(context));
+            List<Message> commands = new ArrayList<>(queued);
+            queued.clear();
+            for (Message command : commands) {
+                send(command);
+            }
+            if (!listeners.isEmpty()) {
+                sendSubscription(EmergencyShakeService.MSG_SUBSCRIBE);
+            }
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            // Detection stopped or its process died, the binding reconnects when it comes back
+            disconnected();
+        }
+
+        @Override
+        public void onBindingDied(ComponentName name) {
+            // This binding won't connect again, e.g. after an app update
+            disconnected();
+            context.unbindService(this);
+            bind();
+        }
+    };
+
+    private DetectionClient(Context context) {
+        this.context = context;
+        bind();
+    }
+
+    private void bind() {
+        context.bindService(new Intent(context, EmergencyShakeService.class), connection, 0);
+    }
+
+    public static synchronized DetectionClient get(Context context) {
+        if (instance == null) {
+            instance = new DetectionClient(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Hand the service a new config snapshot. Not queued: the next connection sends
+     * whichever snapshot is current then.
+     */
+    public void pushConfig(AlertConfig config) {
+        Message message = Message.obtain(null, EmergencyShakeService.MSG_CONFIG);
+        message.setData(config.toBundle());
+        send(message);
+    }
+
+    public void cancelAlert() {
+        Message message = Message.obtain(null, EmergencyShakeService.MSG_CANCEL_ALERT);
+        if (!send(message)) {
+            queued.add(message);
+        }
+    }
+
+    public void requestStatus(StatusCallback callback) {
+        Message request = Message.obtain(null, EmergencyShakeService.MSG_GET_STATUS);
+        request.replyTo = new Messenger(new Handler(Looper.getMainLooper(), reply -> {
+            callback.onStatus(DetectionStatus.fromBundle(reply.getData()));
+            return true;
+        }));
+        if (!send(request)) {
+            replies.post(() -> callback.onStatus(null));
+        }
+    }
+
+    /**
+     * Receive the status now, if detection runs, and after every change. Gets null once
+     * detection stops.
+     */
+    public void subscribe(StatusCallback listener) {
+        listeners.add(listener);
+        if (listeners.size() == 1) {
+            sendSubscription(EmergencyShakeService.MSG_SUBSCRIBE);
+        } else if (lastStatus != null) {
+            listener.onStatus(lastStatus);
+        }
+    }
+
+    public void unsubscribe(StatusCallback listener) {
+        if (listeners.remove(listener) && listeners.isEmpty()) {
+            sendSubscription(EmergencyShakeService.MSG_UNSUBSCRIBE);
+            lastStatus = null;
+        }
+    }
+
+    private void sendSubscription(int what) {
+        Message message = Message.obtain(null, what);
+        message.replyTo = statusReceiver;
+        send(message);
+    }
+
+    private void disconnected() {
+        service = null;
+        if (lastStatus != null) {
+            lastStatus = null;
+            notifyListeners();
+        }
+    }
+
+    private void notifyListeners() {
+        for (StatusCallback listener : new ArrayList<>(listeners)) {
+            listener.onStatus(lastStatus);
+        }
+    }
+
+    private boolean send(Message message) {
+        if (service == null) {
+            return false;
+        }
+        try {
+            service.send(message);
+            return true;
+        } catch (RemoteException e) {
+            // Died since the last callback, onServiceDisconnected follows
+            Log.w(TAG, "✗ Detection process gone");
+            disconnected();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.core;
+
+import android.os.Bundle;
+import android.os.SystemClock;
+
+/**
+ * State of the detection service as reported to the app process
+ */
+public final class DetectionStatus {
+
+    private static final String KEY_SHAKE_LISTENING = "shake_listening";
+    private static final String KEY_VOLUME_BUTTONS_ACTIVE = "volume_buttons_active";
+    private static final String KEY_LOCATION_UPDATES_ACTIVE = "location_updates_active";
+    private static final String KEY_ALERT_DEADLINE = "alert_deadline";
+    private static final String KEY_LAST_FIX_AT = "last_fix_at";
+    private static final String KEY_OUTBOX_DEPTH = "outbox_depth";
+    private static final String KEY_DISPATCH_LATENCIES = "dispatch_latencies";
+
+    public final boolean shakeListening;
+    public final boolean volumeButtonsActive;
+    public final boolean locationUpdatesActive;
+    // Wall clock time the alert counting down goes out, 0 when none is
+    public final long alertDeadline;
+    // SystemClock.elapsedRealtime() of the last fix, 0 when there is none
+    public final long lastFixAt;
+    // Sent alerts not yet handed over for recording, e.g. before the first unlock
+    public final int outboxDepth;
+    // From the end of a countdown to the SMS being handed off, oldest first
+    public final long[] dispatchLatenciesMs;
+
+    DetectionStatus(boolean shakeListening, boolean volumeButtonsActive, boolean locationUpdatesActive,
+                    long alertDeadline, long lastFixAt, int outboxDepth, long[] dispatchLatenciesMs) {
+        this.shakeListening = shakeListening;
+        this.volumeButtonsActive = volumeButtonsActive;
+        this.locationUpdatesActive = locationUpdatesActive;
+        this.alertDeadline = alertDeadline;
+        this.lastFixAt = lastFixAt;
+        this.outboxDepth = outboxDepth;
+        this.dispatchLatenciesMs = dispatchLatenciesMs;
+    }
+
+    public boolean isAlertCountingDown() {
+        return alertDeadline != 0;
+    }
+
+    /**
+     * Age of the last fix right now, -1 when there is none. Computed on read, so a
+     * status that was pushed a while ago still reports it correctly.
+     */
+    public long getFixAgeMs() {
+        return lastFixAt != 0 ? SystemClock.elapsedRealtime() - lastFixAt : -1;
+    }
+
+    public long getAverageDispatchLatencyMs() {
+        if (dispatchLatenciesMs.length == 0) {
+            return 0;
+        }
+        long total = 0;
+        for (long latency : dispatchLatenciesMs) {
+            total += latency;
+        }
+        return total / dispatchLatenciesMs.length;
+    }
+
+    public long getMaxDispatchLatencyMs() {
+        long max = 0;
+        for (long latency : dispatchLatenciesMs) {
+            max = Math.max(max, latency);
+        }
+        return max;
+    }
+
+    Bundle toBundle() {
+        Bundle bundle = new Bundle();
+        bundle.putBoolean(KEY_SHAKE_LISTENING, shakeListening);
+        bundle.putBoolean(KEY_VOLUME_BUTTONS_ACTIVE, volumeButtonsActive);
+        bundle.putBoolean(KEY_LOCATION_UPDATES_ACTIVE, locationUpdatesActive);
+        bundle.putLong(KEY_ALERT_DEADLINE, alertDeadline);
+        bundle.putLong(KEY_LAST_FIX_AT, lastFixAt);
+        bundle.putInt(KEY_OUTBOX_DEPTH, outboxDepth);
+        bundle.putLongArray(KEY_DISPATCH_LATENCIES, dispatchLatenciesMs);
+        return bundle;
+    }
+
+    static DetectionStatus fromBundle(Bundle bundle) {
+        long[] latencies = bundle.getLongArray(KEY_DISPATCH_LATENCIES);
+        return new DetectionStatus(bundle.getBoolean(KEY_SHAKE_LISTENING),
+                bundle.getBoolean(KEY_VOLUME_BUTTONS_ACTIVE),
+                bundle.getBoolean(KEY_LOCATION_UPDATES_ACTIVE),
+                bundle.getLong(KEY_ALERT_DEADLINE),
+                bundle.getLong(KEY_LAST_FIX_AT),
+                bundle.getInt(KEY_OUTBOX_DEPTH),
+                latencies != null ? latencies : new long[0]);
+    }
+}
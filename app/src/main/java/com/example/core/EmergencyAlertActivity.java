@@ -7,11 +7,13 @@ import com.example.ui.EmergencyAlertDialog;
 
 public class EmergencyAlertActivity extends Activity {
 
+    private EmergencyAlertDialog alertDialog;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
-        EmergencyAlertDialog.show(this, new EmergencyAlertDialog.OnAlertActionListener() {
+        alertDialog = EmergencyAlertDialog.show(this, new EmergencyAlertDialog.OnAlertActionListener() {
             @Override
             public void onAlertSent() {
                 finish();
@@ -23,4 +25,11 @@ public class EmergencyAlertActivity extends Activity {
             }
         });
     }
+
+    @Override
+    protected void onDestroy() {
+        // A countdown must not outlive the activity, its dialogs would leak
+        alertDialog.dismiss();
+        super.onDestroy();
+    }
 }
\ No newline at end of file
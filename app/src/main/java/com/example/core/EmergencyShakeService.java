@@ -11,11 +11,15 @@ import android.content.Intent;
 import android.hardware.Sensor;
 import android.hardware.SensorManager;
 import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
 import android.os.IBinder;
-import android.os.PowerManager;
 import android.provider.Settings;
-import android.telephony.SmsManager;
+import android.util.Log;
 import android.os.Looper;
+import android.os.Message;
+import android.os.Messenger;
+import android.os.RemoteException;
 import android.Manifest;
 import android.content.pm.PackageManager;
 import android.location.Location;
@@ -26,13 +30,19 @@ import android.view.Gravity;
 import android.graphics.PixelFormat;
 import android.content.IntentFilter;
 
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
+
 import androidx.annotation.NonNull;
 import androidx.core.app.NotificationCompat;
 import androidx.core.app.ActivityCompat;
 
+import com.example.data.AlertConfig;
 import com.example.data.AlertEntity;
-import com.example.data.AlertRepository;
-import com.example.data.EmergencyContactManager;
+import com.example.data.AlertRecordReceiver;
+import com.example.data.DeviceStorage;
+import com.example.data.UnrecordedAlerts;
 import com.example.sentinel.MainActivity;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationCallback;
@@ -41,17 +51,50 @@ import com.google.android.gms.location.LocationResult;
 import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.location.Priority;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.List;
 
 public class EmergencyShakeService extends Service {
+    private static final String TAG = "EmergencyShakeService";
     private static final String CHANNEL_ID = "EmergencyShakeChannel";
     private static final int NOTIFICATION_ID = 1;
+    private static final int COUNTDOWN_NOTIFICATION_ID = 4;
+    // Sent by the Cancel action of the countdown notification
+    private static final String ACTION_CANCEL_ALERT = "com.example.sentinel.CANCEL_ALERT";
+    private static final String STATE_PREFS_NAME = "detection_state";
+    private static final String KEY_DETECTION_ENABLED = "detection_enabled";
+    // Past the countdown, sending and recording an alert takes a few seconds at most
+    private static final long DISPATCH_LEASE_MARGIN_MS = 30_000;
+
+    // Commands DetectionClient sends over the binder, MSG_GET_STATUS is answered with MSG_STATUS.
+    // A subscriber gets MSG_STATUS right away and on every change, then MSG_STOPPED.
+    static final int MSG_GET_STATUS = 1;
+    static final int MSG_STATUS = 2;
+    static final int MSG_CONFIG = 3;
+    static final int MSG_CANCEL_ALERT = 4;
+    static final int MSG_SUBSCRIBE = 5;
+    static final int MSG_UNSUBSCRIBE = 6;
+    static final int MSG_STOPPED = 7;
+    private static final int MAX_LATENCY_SAMPLES = 10;
+    // A wake-up accelerometer batches samples and wakes the CPU at most this late to deliver them
+    private static final int SENSOR_BATCH_LATENCY_US = 1_000_000;
+    // Without one the CPU has to stay awake while listening, in renewed leases of this length
+    private static final long LISTENING_LEASE_MS = 10 * 60 * 1000;
 
     private SensorManager sensorManager;
     private Sensor accelerometer;
+    // False when the device has no wake-up accelerometer, see setShakeListening
+    private boolean wakeUpAccelerometer;
     private ShakeDetector shakeDetector;
-    private EmergencyContactManager contactManager;
-    private PowerManager.WakeLock wakeLock;
+
+    // The CPU is only kept awake while a gesture or an alert is in progress
+    private WakeLeases wakeLeases;
+    private WakeLeases.Lease analysisLease;
+    private final Runnable analysisWindowEnd = this::releaseAnalysisLease;
+    private WakeLeases.Lease dispatchLease;
+    private WakeLeases.Lease listeningLease;
+    private final Runnable renewListeningLease = this::renewListeningLease;
 
     private FusedLocationProviderClient fusedLocationClient;
     private Location lastKnownLocation;
@@ -62,57 +105,94 @@ public class EmergencyShakeService extends Service {
     private BroadcastReceiver volumeButtonReceiver;
 
     private VolumeButtonGestureDetector volumeGestureDetector;
-    private AlertRepository alertRepository;
+    // Alerts sent before the first unlock wait in UnrecordedAlerts, these only when that write failed
+    private final List<AlertEntity> unsavedAlerts = new ArrayList<>();
+    private BroadcastReceiver unlockReceiver;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Messenger messenger = new Messenger(new Handler(Looper.getMainLooper(), this::handleCommand));
+    private final List<Messenger> statusSubscribers = new ArrayList<>();
+    // Most recent dispatch latencies, oldest first
+    private final ArrayDeque<Long> dispatchLatencies = new ArrayDeque<>();
+    private boolean destroyed;
+
+    // Settings currently in effect, replaced live when SettingsActivity changes them
+    private AlertConfig appliedConfig;
+    private final AlertConfig.Listener configListener = this::applyConfig;
+    private boolean shakeListening;
+    // Alert in its countdown, null when none
+    private PendingAlert pendingAlert;
 
     @Override
     public void onCreate() {
         super.onCreate();
 
-        contactManager = new EmergencyContactManager(this);
-        alertRepository = AlertRepository.getInstance(getApplication());
+        // Detection first: the config snapshot and the accelerometer, nothing that waits
+        // on Firebase, Room or the network. This also runs before the first unlock.
+        // The app process sends its current snapshot as soon as it connects, see DetectionClient
+        appliedConfig = AlertConfig.subscribe(this, configListener);
+        wakeLeases = new WakeLeases(this);
 
-        // Initialize shake detection
         sensorManager = (SensorManager) getSystemService(Context.SENSOR_SERVICE);
-        accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+        // A wake-up sensor delivers with the screen off and the CPU suspended
+        accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER, true);
+        wakeUpAccelerometer = accelerometer != null;
+        if (!wakeUpAccelerometer) {
+            accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+        }
         shakeDetector = new ShakeDetector();
+        shakeDetector.setSensitivity(appliedConfig.shakeSensitivity);
 
         shakeDetector.setOnShakeListener(count -> {
+            if (count == 1) {
+                // Stay awake for the rest of the gesture
+                releaseAnalysisLease();
+                analysisLease = wakeLeases.acquire(WakeLeases.Scope.ANALYSIS, ShakeDetector.SHAKE_TIME_WINDOW + 1000);
+                mainHandler.postDelayed(analysisWindowEnd, ShakeDetector.SHAKE_TIME_WINDOW);
+            }
             if (count >= 3) {
+                releaseAnalysisLease();
                 //sendEmergencySMS();
-                getLocationAndSendSMS();
+                startAlertCountdown();
             }
         });
+        setShakeListening(appliedConfig.shakeDetectionEnabled);
+        Log.d(TAG, "Detection armed");
 
-        if (Settings.canDrawOverlays(this)) {
-            setupOverlayForVolumeDetection();
-        }
+        // The rest once onStartCommand has put the service in the foreground
+        mainHandler.post(this::finishSetup);
+    }
 
-        // Acquire wake lock to keep CPU running
-        PowerManager powerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
-        wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK,
-                "Sentinel::ShakeDetectionWakeLock");
-        wakeLock.acquire();
+    private void finishSetup() {
+        if (destroyed) {
+            return;
+        }
 
         fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
-        startLocationUpdates();
+        if (appliedConfig.locationSharingEnabled) {
+            startLocationUpdates();
+        }
+
+        // Alerts from before a restart that the app process has not recorded yet
+        resumeUnrecordedAlerts();
 
         // Initialize volume gesture detection
         volumeGestureDetector = new VolumeButtonGestureDetector(new VolumeButtonGestureDetector.OnVolumeGestureListener() {
             @Override
             public void onSilentEmergency() {
-                getLocationAndSendSMS("SILENT EMERGENCY");
+                startAlertCountdown("SILENT EMERGENCY");
             }
             @Override
             public void onPoliceNeeded() {
-                getLocationAndSendSMS("POLICE NEEDED");
+                startAlertCountdown("POLICE NEEDED");
             }
             @Override
             public void onMedicalEmergency() {
-                getLocationAndSendSMS("MEDICAL EMERGENCY");
+                startAlertCountdown("MEDICAL EMERGENCY");
             }
             @Override
             public void onPanicAlert() {
-                getLocationAndSendSMS("PANIC ALERT");
+                startAlertCountdown("PANIC ALERT");
             }
         });
 
@@ -137,6 +217,8 @@ public class EmergencyShakeService extends Service {
         } else {
             registerReceiver(volumeButtonReceiver, filter, Context.RECEIVER_NOT_EXPORTED);
         }
+        Log.d(TAG, "Setup finished");
+        publishStatus();
     }
 
     private void setupOverlayForVolumeDetection() {
@@ -176,7 +258,7 @@ public class EmergencyShakeService extends Service {
     }
 
     public void handleVolumeButtonEvent(int keyCode, boolean isKeyDown) {
-        if (volumeGestureDetector == null) {
+        if (volumeGestureDetector == null || !appliedConfig.volumeButtonsEnabled) {
             return;
         }
 
@@ -192,13 +274,17 @@ public class EmergencyShakeService extends Service {
 
     }
 
-    private void getLocationAndSendSMS() {
-        getLocationAndSendSMS(null);
+    private void startAlertCountdown() {
+        startAlertCountdown(null);
     }
 
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent != null && ACTION_CANCEL_ALERT.equals(intent.getAction())) {
+            cancelAlertCountdown();
+        }
+
         createNotificationChannel();
 
         Intent notificationIntent = new Intent(this, MainActivity.class);
@@ -215,16 +301,75 @@ public class EmergencyShakeService extends Service {
 
         startForeground(NOTIFICATION_ID, notification);
 
-        // Register sensor listener
-        if (accelerometer != null) {
-            sensorManager.registerListener(shakeDetector, accelerometer,
-                    SensorManager.SENSOR_DELAY_UI);
-        }
+        // Brought back after a reboot or kill while this is set, see BootReceiver
+        setDetectionEnabled(this, true);
 
         return START_STICKY;
     }
 
+    /**
+     * Apply changed settings to the running detectors, no service restart needed
+     */
+    private void applyConfig(AlertConfig config) {
+        AlertConfig previous = appliedConfig;
+        appliedConfig = config;
+
+        if (config.shakeSensitivity != previous.shakeSensitivity) {
+            shakeDetector.setSensitivity(config.shakeSensitivity);
+            shakeDetector.reset();
+        }
+        if (config.shakeDetectionEnabled != previous.shakeDetectionEnabled) {
+            setShakeListening(config.shakeDetectionEnabled);
+        }
+        if (!config.volumeButtonsEnabled && previous.volumeButtonsEnabled && volumeGestureDetector != null) {
+            // Drop a gesture in progress, e.g. a pending long press
+            volumeGestureDetector.reset();
+        }
+        if (config.locationSharingEnabled != previous.locationSharingEnabled) {
+            if (config.locationSharingEnabled) {
+                startLocationUpdates();
+            } else {
+                stopLocationUpdates();
+            }
+        }
+        publishStatus();
+        Log.d(TAG, "Settings applied: shake=" + config.shakeDetectionEnabled
+                + " sensitivity=" + config.shakeSensitivity
+                + " volume=" + config.volumeButtonsEnabled
+                + " location=" + config.locationSharingEnabled);
+    }
+
+    private void setShakeListening(boolean listen) {
+        if (accelerometer == null || listen == shakeListening) {
+            return;
+        }
+        if (listen) {
+            // ShakeDetector times samples by their timestamps, so batched delivery is fine
+            sensorManager.registerListener(shakeDetector, accelerometer,
+                    SensorManager.SENSOR_DELAY_UI, SENSOR_BATCH_LATENCY_US);
+            if (!wakeUpAccelerometer) {
+                // Samples of a non wake-up sensor are dropped while the CPU sleeps
+                renewListeningLease();
+            }
+        } else {
+            sensorManager.unregisterListener(shakeDetector);
+            shakeDetector.reset();
+            mainHandler.removeCallbacks(renewListeningLease);
+            if (listeningLease != null) {
+                listeningLease.release();
+                listeningLease = null;
+            }
+        }
+        shakeListening = listen;
+        Log.d(TAG, "Shake listening " + listen + (wakeUpAccelerometer ? " (wake-up sensor)" : " (wake lock)"));
+        publishStatus();
+    }
+
     private void startLocationUpdates() {
+        // Before finishSetup the location client doesn't exist yet, it starts updates itself
+        if (fusedLocationClient == null || locationCallback != null) {
+            return;
+        }
         if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION)
                 != PackageManager.PERMISSION_GRANTED &&
                 ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_COARSE_LOCATION)
@@ -242,7 +387,7 @@ public class EmergencyShakeService extends Service {
             @Override
             public void onLocationResult(@NonNull LocationResult locationResult) {
                 if (locationResult != null && locationResult.getLastLocation() != null) {
-                    lastKnownLocation = locationResult.getLastLocation();
+                    setLastKnownLocation(locationResult.getLastLocation());
                 }
                 //lastKnownLocation = locationResult.getLastLocation();
             }
@@ -250,68 +395,92 @@ public class EmergencyShakeService extends Service {
 
         fusedLocationClient.requestLocationUpdates(locationRequest,
                 locationCallback, Looper.getMainLooper());
+        publishStatus();
 
         // Also get last known location immediately
         fusedLocationClient.getLastLocation()
                 .addOnSuccessListener(location -> {
                     if (location != null) {
-                        lastKnownLocation = location;
+                        setLastKnownLocation(location);
                     }
                 });
     }
 
-    private void getLocationAndSendSMS(String emergencyType) {
-        if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION)
-                != PackageManager.PERMISSION_GRANTED &&
-                ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_COARSE_LOCATION)
-                        != PackageManager.PERMISSION_GRANTED) {
-            sendEmergencySMS(null, emergencyType);
+    private void stopLocationUpdates() {
+        if (locationCallback != null) {
+            fusedLocationClient.removeLocationUpdates(locationCallback);
+            locationCallback = null;
+        }
+        // Location sharing was turned off, don't keep the last fix around either
+        lastKnownLocation = null;
+        publishStatus();
+    }
+
+    private void setLastKnownLocation(Location location) {
+        boolean first = lastKnownLocation == null;
+        lastKnownLocation = location;
+        // Subscribers compute the age themselves, later fixes are only pulled with the status
+        if (first) {
+            publishStatus();
+        }
+    }
+
+    /**
+     * Count down before sending, so a false trigger can still be cancelled. The
+     * countdown doubles as warm-up: PendingAlert gets a fresh fix and prepares the
+     * SMS meanwhile. Triggers during a running countdown join it.
+     */
+    private void startAlertCountdown(String emergencyType) {
+        if (pendingAlert != null) {
+            Log.d(TAG, "Alert already counting down");
+            return;
+        }
+        AlertConfig config = AlertConfig.get(this);
+        if (!config.hasEmergencyContact()) {
             return;
         }
 
-        //get current location with timeout
-        fusedLocationClient.getCurrentLocation(Priority.PRIORITY_HIGH_ACCURACY, null)
-                .addOnSuccessListener(location -> {
-                    if (location != null) {
-                        sendEmergencySMS(location, emergencyType);
-                    } else {
-                        tryLastKnownLocation(emergencyType);
-                    }
-                })
-                .addOnFailureListener(e -> {
-                    tryLastKnownLocation(emergencyType);
-                });
+        // Held until the alert is recorded, the countdown must run out with the screen off too
+        dispatchLease = wakeLeases.acquire(WakeLeases.Scope.DISPATCH,
+                config.countdownSeconds * 1000L + DISPATCH_LEASE_MARGIN_MS);
+        pendingAlert = new PendingAlert(this, config, emergencyType, lastKnownLocation);
+        pendingAlert.start(fusedLocationClient, wakeLeases, this::dispatchAlert);
+        showCountdownNotification(pendingAlert);
+        publishStatus();
     }
 
-    private void tryLastKnownLocation(String emergencyType) {
-        if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION)
-                == PackageManager.PERMISSION_GRANTED ||
-                ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_COARSE_LOCATION)
-                        == PackageManager.PERMISSION_GRANTED) {
-
-            fusedLocationClient.getLastLocation()
-                    .addOnSuccessListener(location -> {
-                        if (location != null) {
-                            sendEmergencySMS(location, emergencyType);
-                        } else if (lastKnownLocation != null) {
-                            sendEmergencySMS(lastKnownLocation, emergencyType);
-                        } else {
-                            // No location available at all
-                            sendEmergencySMS(null, emergencyType);
-                        }
-                    })
-                    .addOnFailureListener(e -> {
-                        // Use cached location or send without location
-                        sendEmergencySMS(lastKnownLocation, emergencyType);
-                    });
-        } else {
-            sendEmergencySMS(null, emergencyType);
+    private void cancelAlertCountdown() {
+        if (pendingAlert != null) {
+            pendingAlert.cancel();
+            pendingAlert = null;
+            releaseDispatchLease();
+        }
+        NotificationManager manager = getSystemService(NotificationManager.class);
+        if (manager != null) {
+            manager.cancel(COUNTDOWN_NOTIFICATION_ID);
         }
+        publishStatus();
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
+        destroyed = true;
+        mainHandler.removeCallbacksAndMessages(null);
+        // Stopped on purpose, a kill never gets here
+        setDetectionEnabled(this, false);
+
+        AlertConfig.unsubscribe(configListener);
+        cancelAlertCountdown();
+        // The binding may outlive this instance, tell subscribers it is gone
+        for (Messenger subscriber : statusSubscribers) {
+            try {
+                subscriber.send(Message.obtain(null, MSG_STOPPED));
+            } catch (RemoteException e) {
+                // Gone already
+            }
+        }
+        statusSubscribers.clear();
 
         if (volumeGestureDetector != null) {
             volumeGestureDetector.cleanup();
@@ -327,15 +496,15 @@ public class EmergencyShakeService extends Service {
             fusedLocationClient.removeLocationUpdates(locationCallback);
         }
 
-        // Release wake lock
-        if (wakeLock != null && wakeLock.isHeld()) {
-            wakeLock.release();
-        }
+        wakeLeases.releaseAll();
 
         //unregister broadcast reciever
         if (volumeButtonReceiver != null) {
             unregisterReceiver(volumeButtonReceiver);
         }
+        if (unlockReceiver != null) {
+            unregisterReceiver(unlockReceiver);
+        }
 
         //removes overlay
         if (overlayView != null && windowManager != null) {
@@ -348,9 +517,107 @@ public class EmergencyShakeService extends Service {
         }
     }
 
+    // New lease before the old one runs out, so the CPU never gets a chance to sleep
+    private void renewListeningLease() {
+        WakeLeases.Lease previous = listeningLease;
+        listeningLease = wakeLeases.acquire(WakeLeases.Scope.LISTENING, LISTENING_LEASE_MS);
+        if (previous != null) {
+            previous.release();
+        }
+        mainHandler.postDelayed(renewListeningLease, LISTENING_LEASE_MS - 60_000);
+    }
+
+    private void releaseAnalysisLease() {
+        mainHandler.removeCallbacks(analysisWindowEnd);
+        if (analysisLease != null) {
+            analysisLease.release();
+            analysisLease = null;
+        }
+    }
+
+    private void releaseDispatchLease() {
+        if (dispatchLease != null) {
+            dispatchLease.release();
+            dispatchLease = null;
+        }
+    }
+
+    // adb shell dumpsys activity service com.example.sentinel/com.example.core.EmergencyShakeService
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        writer.println("Shake listening: " + shakeListening);
+        writer.println("Alert counting down: " + (pendingAlert != null));
+        wakeLeases.dump(writer);
+    }
+
     @Override
     public IBinder onBind(Intent intent) {
-        return null;
+        return messenger.getBinder();
+    }
+
+    private boolean handleCommand(Message message) {
+        switch (message.what) {
+            case MSG_GET_STATUS:
+                sendStatus(message.replyTo, status().toBundle());
+                return true;
+            case MSG_SUBSCRIBE:
+                if (!statusSubscribers.contains(message.replyTo)) {
+                    statusSubscribers.add(message.replyTo);
+                }
+                sendStatus(message.replyTo, status().toBundle());
+                return true;
+            case MSG_UNSUBSCRIBE:
+                statusSubscribers.remove(message.replyTo);
+                return true;
+            case MSG_CONFIG:
+                AlertConfig.publishFrom(message.getData());
+                return true;
+            case MSG_CANCEL_ALERT:
+                cancelAlertCountdown();
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private DetectionStatus status() {
+        long[] latencies = new long[dispatchLatencies.size()];
+        int i = 0;
+        for (long latency : dispatchLatencies) {
+            latencies[i++] = latency;
+        }
+        return new DetectionStatus(shakeListening,
+                volumeGestureDetector != null && appliedConfig.volumeButtonsEnabled,
+                locationCallback != null,
+                pendingAlert != null ? pendingAlert.getDeadline() : 0,
+                lastKnownLocation != null ? lastKnownLocation.getElapsedRealtimeNanos() / 1_000_000 : 0,
+                UnrecordedAlerts.names(this).size() + unsavedAlerts.size(),
+                latencies);
+    }
+
+    // Push the current status to every subscriber, dropping those whose process died
+    private void publishStatus() {
+        if (statusSubscribers.isEmpty() || destroyed) {
+            return;
+        }
+        Bundle status = status().toBundle();
+        for (Messenger subscriber : new ArrayList<>(statusSubscribers)) {
+            if (!sendStatus(subscriber, status)) {
+                statusSubscribers.remove(subscriber);
+            }
+        }
+    }
+
+    private boolean sendStatus(Messenger subscriber, Bundle status) {
+        Message message = Message.obtain(null, MSG_STATUS);
+        message.setData(status);
+        try {
+            subscriber.send(message);
+            return true;
+        } catch (RemoteException e) {
+            Log.w(TAG, "Status subscriber gone");
+            return false;
+        }
     }
 
     private void createNotificationChannel() {
@@ -367,91 +634,156 @@ public class EmergencyShakeService extends Service {
         }
     }
 
-    private void sendEmergencySMS(Location location, String emergencyType) {
-        if (!contactManager.hasEmergencyContact()) {
-            return;
+    private void dispatchAlert(PendingAlert alert) {
+        pendingAlert = null;
+        NotificationManager manager = getSystemService(NotificationManager.class);
+        if (manager != null) {
+            manager.cancel(COUNTDOWN_NOTIFICATION_ID);
         }
 
-        String phoneNumber = contactManager.getContactPhone();
-        String message = getMessage(location, emergencyType);
+        // Everything was prepared during the countdown, this only hands it over
+        Location location = alert.getLocation();
         try {
-            SmsManager smsManager;
-            // Handle dual SIM devices
-            int defaultSmsSubscriptionId = SmsManager.getDefaultSmsSubscriptionId();
-            if (defaultSmsSubscriptionId != -1) {
-                smsManager = SmsManager.getSmsManagerForSubscriptionId(defaultSmsSubscriptionId);
-            } else {
-                smsManager = SmsManager.getDefault();
-            }
-
-            //split message if its too long
-            if (message.length() > 160) {
-                ArrayList<String> parts = smsManager.divideMessage(message);
-                smsManager.sendMultipartTextMessage(phoneNumber, null, smsManager.divideMessage(message), null, null);
-            } else {
-                smsManager.sendTextMessage(phoneNumber, null, message, null, null);
-            }
-            //smsManager.sendTextMessage(phoneNumber, null, message, null, null);
+            alert.send();
+            recordDispatchLatency(System.currentTimeMillis() - alert.getDeadline());
 
             // Show notification that SMS was sent
             showSMSSentNotification(location != null);
 
             // Save the alert to the database
-            String alertType = (emergencyType != null) ? emergencyType : "EMERGENCY";
+            String alertType = (alert.emergencyType != null) ? alert.emergencyType : "EMERGENCY";
             long timestamp = System.currentTimeMillis();
             Double latitude = (location != null) ? location.getLatitude() : null;
             Double longitude = (location != null) ? location.getLongitude() : null;
-            String contactName = contactManager.getContactName();
-            String contactPhone = contactManager.getContactPhone();
-            boolean locationAvailable = (location != null);
 
-            AlertEntity alert = new AlertEntity(
+            AlertEntity alertEntity = new AlertEntity(
                     alertType,
                     timestamp,
                     latitude,
                     longitude,
-                    contactName,
-                    contactPhone,
-                    locationAvailable
+                    alert.config.contactName,
+                    alert.config.contactPhone,
+                    location != null
             );
-            alertRepository.insert(alert, success -> {});
+            recordAlert(alertEntity);
 
         } catch (Exception e) {
             e.printStackTrace();
             showSMSFailedNotification();
+            releaseDispatchLease();
         }
+        publishStatus();
     }
 
-    @NonNull
-    private String getMessage(Location location, String emergencyType) {
-        //String message = emergencyType != null ?
-        //        emergencyType + "! This is an automated alert. Please check on me immediately." :
-        //        "EMERGENCY! This is an automated alert. Please check on me immediately.";
+    // From the end of the countdown to the SMS handed off, long when the CPU slept through the deadline
+    private void recordDispatchLatency(long latencyMs) {
+        dispatchLatencies.addLast(latencyMs);
+        if (dispatchLatencies.size() > MAX_LATENCY_SAMPLES) {
+            dispatchLatencies.removeFirst();
+        }
+        Log.d(TAG, "Alert handed off " + latencyMs + " ms after the countdown ended");
+    }
 
-        //gets custom message from contact manager
-        String customMessage = contactManager.getEmergencyMessage();
+    private void recordAlert(AlertEntity alert) {
+        if (!DeviceStorage.isUserUnlocked(this)) {
+            // The alert database lives in credential storage, the alert waits on disk so a
+            // restart of this process before the unlock doesn't lose it
+            try {
+                UnrecordedAlerts.save(this, alert);
+            } catch (IOException e) {
+                Log.e(TAG, "✗ Could not persist alert until unlock, keeping it in memory", e);
+                unsavedAlerts.add(alert);
+            }
+            awaitUnlock();
+            releaseDispatchLease();
+            publishStatus();
+            return;
+        }
+        // Room and Firebase live in the app process, it records the alert
+        AlertRecordReceiver.send(this, alert);
+        releaseDispatchLease();
+    }
 
-        //builds complete message
-        StringBuilder message = new StringBuilder();
+    // Pick up alerts a previous instance persisted, handed off now or after the unlock
+    private void resumeUnrecordedAlerts() {
+        if (UnrecordedAlerts.names(this).isEmpty()) {
+            return;
+        }
+        if (DeviceStorage.isUserUnlocked(this)) {
+            handOffUnrecordedAlerts();
+        } else {
+            awaitUnlock();
+        }
+    }
+
+    private void awaitUnlock() {
+        if (unlockReceiver != null) {
+            return;
+        }
+        unlockReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                handOffUnrecordedAlerts();
+            }
+        };
+        registerReceiver(unlockReceiver, new IntentFilter(Intent.ACTION_USER_UNLOCKED),
+                Context.RECEIVER_NOT_EXPORTED);
+    }
 
-        if (emergencyType != null) {
-            message.append("🚨 ").append(emergencyType).append("!\n\n");
+    // The app process deletes each file once it has recorded the alert, not before
+    private void handOffUnrecordedAlerts() {
+        for (String name : UnrecordedAlerts.names(this)) {
+            // An unreadable file is left in place rather than dropped
+            AlertEntity unrecorded = UnrecordedAlerts.load(this, name);
+            if (unrecorded != null) {
+                AlertRecordReceiver.send(this, unrecorded, name);
+            }
+        }
+        for (AlertEntity unsaved : unsavedAlerts) {
+            AlertRecordReceiver.send(this, unsaved);
         }
+        unsavedAlerts.clear();
+        publishStatus();
+    }
 
-        message.append(customMessage);
+    /**
+     * True while the user wants detection running, BootReceiver restarts the service then
+     */
+    public static boolean isDetectionEnabled(Context context) {
+        // Written and read in the detection process only, the app process asks DetectionClient
+        return DeviceStorage.preferences(context, STATE_PREFS_NAME).getBoolean(KEY_DETECTION_ENABLED, false);
+    }
 
-        if (location != null) {
-            double latitude = location.getLatitude();
-            double longitude = location.getLongitude();
-            message.append("\n\n📍 https://maps.google.com/?q=")
-                    .append(latitude)
-                    .append(",")
-                    .append(longitude);
-            //message += "\n\nMy location:\nLat: " + latitude + "\nLong: " + longitude + "\nMap: " + locationUrl;
-        } else {
-            message.append("\n\n(Location unavalable)");
+    private static void setDetectionEnabled(Context context, boolean enabled) {
+        DeviceStorage.preferences(context, STATE_PREFS_NAME).edit()
+                .putBoolean(KEY_DETECTION_ENABLED, enabled)
+                .apply();
+    }
+
+    private void showCountdownNotification(PendingAlert alert) {
+        Intent cancelIntent = new Intent(this, EmergencyShakeService.class)
+                .setAction(ACTION_CANCEL_ALERT);
+        PendingIntent cancelPendingIntent = PendingIntent.getService(this, 0,
+                cancelIntent, PendingIntent.FLAG_IMMUTABLE);
+
+        String contact = alert.config.contactName != null && !alert.config.contactName.isEmpty()
+                ? alert.config.contactName : alert.config.contactPhone;
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setContentTitle("Sending emergency alert")
+                .setContentText("Alert goes to " + contact + " when the countdown ends")
+                .setSmallIcon(android.R.drawable.ic_dialog_alert)
+                .setPriority(NotificationCompat.PRIORITY_MAX)
+                .setCategory(NotificationCompat.CATEGORY_ALARM)
+                .setOngoing(true)
+                .setWhen(alert.getDeadline())
+                .setUsesChronometer(true)
+                .setChronometerCountDown(true)
+                .addAction(android.R.drawable.ic_menu_close_clear_cancel, "Cancel", cancelPendingIntent);
+
+        NotificationManager manager = getSystemService(NotificationManager.class);
+        if (manager != null) {
+            manager.notify(COUNTDOWN_NOTIFICATION_ID, builder.build());
         }
-        return message.toString();
     }
 
     private void showSMSFailedNotification() {
@@ -0,0 +1,206 @@
+package com.example.core;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.location.Location;
+import android.os.Handler;
+import android.os.Looper;
+import android.telephony.SmsManager;
+import android.telephony.SubscriptionInfo;
+import android.telephony.SubscriptionManager;
+import android.util.Log;
+
+import androidx.core.app.ActivityCompat;
+
+import com.example.data.AlertConfig;
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.Priority;
+import com.google.android.gms.tasks.CancellationTokenSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A triggered alert during its countdown. The countdown is used to get a high
+ * accuracy fix, resolve the SMS subscription and render the message, so once it
+ * runs out sending is a hand-off of parts that are already prepared. Cancelling
+ * stops the countdown and the location request, nothing is sent.
+ * All methods are called on the main thread.
+ */
+public final class PendingAlert {
+
+    private static final String TAG = "PendingAlert";
+
+    public interface Listener {
+        // Countdown over and not cancelled, call send()
+        void onDue(PendingAlert alert);
+    }
+
+    public final AlertConfig config;
+    // Null for a plain emergency
+    public final String emergencyType;
+
+    private final Context context;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final CancellationTokenSource locationRequest = new CancellationTokenSource();
+    private Runnable due;
+    private WakeLeases.Lease locationLease;
+    private long deadline;
+    private boolean cancelled;
+
+    // Prepared during the countdown
+    private SmsManager smsManager;
+    private Location location;
+    private String message;
+    private ArrayList<String> parts;
+
+    public PendingAlert(Context context, AlertConfig config, String emergencyType, Location lastKnownLocation) {
+        this.context = context.getApplicationContext();
+        this.config = config;
+        this.emergencyType = emergencyType;
+        this.location = config.locationSharingEnabled ? lastKnownLocation : null;
+    }
+
+    /**
+     * Start the countdown from config.countdownSeconds. locationClient may be null,
+     * the alert then goes out with the location it was created with.
+     */
+    public void start(FusedLocationProviderClient locationClient, Listener listener) {
+        start(locationClient, null, listener);
+    }
+
+    /**
+     * Same, keeping the CPU awake for the location request with a lease from wakeLeases
+     * (may be null). The caller keeps its own lease for the countdown itself.
+     */
+    public void start(FusedLocationProviderClient locationClient, WakeLeases wakeLeases, Listener listener) {
+        deadline = System.currentTimeMillis() + config.countdownSeconds * 1000L;
+        due = () -> {
+            if (!cancelled) {
+                locationRequest.cancel();
+                releaseLocationLease();
+                listener.onDue(this);
+            }
+        };
+        handler.postDelayed(due, config.countdownSeconds * 1000L);
+
+        smsManager = resolveSmsManager();
+        render();
+
+        if (locationClient != null && config.locationSharingEnabled && hasLocationPermission()) {
+            if (wakeLeases != null) {
+                // A fix arriving after the deadline is of no use
+                locationLease = wakeLeases.acquire(WakeLeases.Scope.LOCATION,
+                        config.countdownSeconds * 1000L + 1000);
+            }
+            locationClient.getCurrentLocation(Priority.PRIORITY_HIGH_ACCURACY, locationRequest.getToken())
+                    .addOnSuccessListener(fix -> {
+                        if (fix != null && !cancelled) {
+                            location = fix;
+                            render();
+                        }
+                    })
+                    .addOnCompleteListener(task -> releaseLocationLease());
+        }
+        Log.d(TAG, "Countdown of " + config.countdownSeconds + "s started for "
+                + (emergencyType != null ? emergencyType : "EMERGENCY"));
+    }
+
+    public void cancel() {
+        cancelled = true;
+        handler.removeCallbacks(due);
+        locationRequest.cancel();
+        releaseLocationLease();
+        Log.d(TAG, "Countdown cancelled");
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public long getDeadline() {
+        return deadline;
+    }
+
+    // Best location known when the countdown ended, null if there was none
+    public Location getLocation() {
+        return location;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Send the prepared SMS, throws when the platform rejects it (e.g. no SMS permission)
+     */
+    public void send() {
+        if (parts.size() > 1) {
+            smsManager.sendMultipartTextMessage(config.contactPhone, null, parts, null, null);
+        } else {
+            smsManager.sendTextMessage(config.contactPhone, null, message, null, null);
+        }
+    }
+
+    private void releaseLocationLease() {
+        if (locationLease != null) {
+            locationLease.release();
+            locationLease = null;
+        }
+    }
+
+    private void render() {
+        message = buildMessage(config.message, location, emergencyType);
+        // Split now, emoji make a part hold 70 characters instead of 160
+        parts = smsManager.divideMessage(message);
+    }
+
+    private static String buildMessage(String customMessage, Location location, String emergencyType) {
+        StringBuilder message = new StringBuilder();
+
+        if (emergencyType != null) {
+            message.append("🚨 ").append(emergencyType).append("!\n\n");
+        }
+
+        message.append(customMessage);
+
+        if (location != null) {
+            message.append("\n\n📍 https://maps.google.com/?q=")
+                    .append(location.getLatitude())
+                    .append(",")
+                    .append(location.getLongitude());
+        } else {
+            message.append("\n\n(Location unavalable)");
+        }
+        return message.toString();
+    }
+
+    // Default SMS SIM, else the first active one, else the platform default
+    private SmsManager resolveSmsManager() {
+        int subscriptionId = SmsManager.getDefaultSmsSubscriptionId();
+        if (subscriptionId == SubscriptionManager.INVALID_SUBSCRIPTION_ID) {
+            try {
+                SubscriptionManager subscriptionManager =
+                        (SubscriptionManager) context.getSystemService(Context.TELEPHONY_SUBSCRIPTION_SERVICE);
+                List<SubscriptionInfo> active = subscriptionManager != null
+                        ? subscriptionManager.getActiveSubscriptionInfoList() : null;
+                if (active != null && !active.isEmpty()) {
+                    subscriptionId = active.get(0).getSubscriptionId();
+                }
+            } catch (SecurityException e) {
+                Log.w(TAG, "No phone state permission, using the default SMS manager");
+            }
+        }
+        return subscriptionId != SubscriptionManager.INVALID_SUBSCRIPTION_ID
+                ? SmsManager.getSmsManagerForSubscriptionId(subscriptionId)
+                : SmsManager.getDefault();
+    }
+
+    private boolean hasLocationPermission() {
+        return ActivityCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION)
+                == PackageManager.PERMISSION_GRANTED
+                || ActivityCompat.checkSelfPermission(context, Manifest.permission.ACCESS_COARSE_LOCATION)
+                == PackageManager.PERMISSION_GRANTED;
+    }
+}
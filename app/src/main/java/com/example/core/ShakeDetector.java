@@ -6,11 +6,13 @@ import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 
 public class ShakeDetector implements SensorEventListener {
-    private static final float SHAKE_THRESHOLD = 15.0f;
-    private static final int SHAKE_TIME_WINDOW = 3000; // 3 seconds
+    // Acceleration above gravity a shake must exceed, per sensitivity level from very low to very high
+    private static final float[] SHAKE_THRESHOLDS = {25.0f, 20.0f, 15.0f, 12.0f, 9.0f};
+    static final int SHAKE_TIME_WINDOW = 3000; // 3 seconds
     private static final int REQUIRED_SHAKES = 3;
 
     private OnShakeListener listener;
+    private volatile float shakeThreshold = SHAKE_THRESHOLDS[2];
     private long lastShakeTime = 0;
     private int shakeCount = 0;
     private long firstShakeTime = 0;
@@ -23,42 +25,51 @@ public class ShakeDetector implements SensorEventListener {
         this.listener = listener;
     }
 
+    /**
+     * Sensitivity level as set in SettingsActivity, 0 (very low) to 4 (very high)
+     */
+    public void setSensitivity(int level) {
+        shakeThreshold = SHAKE_THRESHOLDS[Math.max(0, Math.min(SHAKE_THRESHOLDS.length - 1, level))];
+    }
+
     @Override
     public void onSensorChanged(SensorEvent event) {
         if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
-            float x = event.values[0];
-            float y = event.values[1];
-            float z = event.values[2];
+            // Time of the sample, not of delivery: batched samples arrive together
+            onAcceleration(event.values[0], event.values[1], event.values[2], event.timestamp / 1_000_000);
+        }
+    }
 
-            double acceleration = Math.sqrt(x * x + y * y + z * z) - SensorManager.GRAVITY_EARTH;
+    /**
+     * One accelerometer sample, currentTime in ms on the clock of the sensor timestamps
+     */
+    void onAcceleration(float x, float y, float z, long currentTime) {
+        double acceleration = Math.sqrt(x * x + y * y + z * z) - SensorManager.GRAVITY_EARTH;
+
+        if (acceleration > shakeThreshold) {
+            // Reset if too much time has passed
+            if (currentTime - firstShakeTime > SHAKE_TIME_WINDOW) {
+                shakeCount = 0;
+                firstShakeTime = currentTime;
+            }
 
-            if (acceleration > SHAKE_THRESHOLD) {
-                long currentTime = System.currentTimeMillis();
+            // Debounce: ignore shakes too close together
+            if (currentTime - lastShakeTime > 500) {
+                lastShakeTime = currentTime;
 
-                // Reset if too much time has passed
-                if (currentTime - firstShakeTime > SHAKE_TIME_WINDOW) {
-                    shakeCount = 0;
+                if (shakeCount == 0) {
                     firstShakeTime = currentTime;
                 }
 
-                // Debounce: ignore shakes too close together
-                if (currentTime - lastShakeTime > 500) {
-                    lastShakeTime = currentTime;
-
-                    if (shakeCount == 0) {
-                        firstShakeTime = currentTime;
-                    }
-
-                    shakeCount++;
+                shakeCount++;
 
-                    if (listener != null) {
-                        listener.onShake(shakeCount);
-                    }
+                if (listener != null) {
+                    listener.onShake(shakeCount);
+                }
 
-                    // Reset after reaching required shakes
-                    if (shakeCount >= REQUIRED_SHAKES) {
-                        shakeCount = 0;
-                    }
+                // Reset after reaching required shakes
+                if (shakeCount >= REQUIRED_SHAKES) {
+                    shakeCount = 0;
                 }
             }
         }
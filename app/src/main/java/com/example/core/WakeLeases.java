@@ -0,0 +1,145 @@
+package com.example.core;
+
+import android.content.Context;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Hands out wake lock leases for one scope of work at a time instead of holding the
+ * CPU awake for the life of the service. Every lease has a timeout, so a lease that is
+ * never released (a callback that never comes) only costs its timeout. Held time is
+ * accounted per scope, see dump().
+ */
+public final class WakeLeases {
+
+    private static final String TAG = "WakeLeases";
+
+    public enum Scope {
+        // Listening for shakes on a device without a wake-up accelerometer
+        LISTENING,
+        // A shake gesture in progress, until it completes or its time window runs out
+        ANALYSIS,
+        // A high accuracy fix during the countdown
+        LOCATION,
+        // The countdown, sending the SMS and recording the alert
+        DISPATCH
+    }
+
+    private final PowerManager powerManager;
+    private final Map<Scope, Usage> usage = new EnumMap<>(Scope.class);
+    private final List<Lease> held = new ArrayList<>();
+
+    private static final class Usage {
+        long leases;
+        long timedOut;
+        long totalHeldMs;
+        long longestHeldMs;
+    }
+
+    public WakeLeases(Context context) {
+        powerManager = (PowerManager) context.getApplicationContext().getSystemService(Context.POWER_SERVICE);
+        for (Scope scope : Scope.values()) {
+            usage.put(scope, new Usage());
+        }
+    }
+
+    /**
+     * Keep the CPU awake for scope until the lease is released, at most timeoutMs
+     */
+    public Lease acquire(Scope scope, long timeoutMs) {
+        Lease lease = new Lease(scope, timeoutMs);
+        synchronized (this) {
+            held.add(lease);
+            usage.get(scope).leases++;
+        }
+        return lease;
+    }
+
+    /**
+     * Release every lease still held, e.g. when the service is destroyed
+     */
+    public void releaseAll() {
+        List<Lease> leases;
+        synchronized (this) {
+            leases = new ArrayList<>(held);
+        }
+        for (Lease lease : leases) {
+            lease.release();
+        }
+    }
+
+    private synchronized void account(Lease lease, long heldMs, boolean timedOut) {
+        held.remove(lease);
+        Usage scopeUsage = usage.get(lease.scope);
+        scopeUsage.totalHeldMs += heldMs;
+        scopeUsage.longestHeldMs = Math.max(scopeUsage.longestHeldMs, heldMs);
+        if (timedOut) {
+            scopeUsage.timedOut++;
+        }
+    }
+
+    /**
+     * Held time per scope and the leases held right now, for dumpsys
+     */
+    public synchronized void dump(PrintWriter writer) {
+        long now = SystemClock.elapsedRealtime();
+        writer.println("Wake leases:");
+        for (Map.Entry<Scope, Usage> entry : usage.entrySet()) {
+            Usage scopeUsage = entry.getValue();
+            writer.println(String.format(Locale.US, "  %s: %d leases, %d timed out, held %d ms (longest %d ms)",
+                    entry.getKey(), scopeUsage.leases, scopeUsage.timedOut,
+                    scopeUsage.totalHeldMs, scopeUsage.longestHeldMs));
+        }
+        for (Lease lease : held) {
+            writer.println(String.format(Locale.US, "  held: %s for %d ms of %d ms",
+                    lease.scope, now - lease.acquiredAt, lease.timeoutMs));
+        }
+    }
+
+    public final class Lease {
+        final Scope scope;
+        final long timeoutMs;
+        final long acquiredAt;
+        private final PowerManager.WakeLock wakeLock;
+        private boolean released;
+
+        private Lease(Scope scope, long timeoutMs) {
+            this.scope = scope;
+            this.timeoutMs = timeoutMs;
+            // One lock per lease, not reference counted, so a release after the timeout is harmless
+            wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "Sentinel::" + scope);
+            wakeLock.setReferenceCounted(false);
+            wakeLock.acquire(timeoutMs);
+            acquiredAt = SystemClock.elapsedRealtime();
+        }
+
+        /**
+         * End the lease, calling it again is a no-op
+         */
+        public void release() {
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+            }
+            long heldMs = SystemClock.elapsedRealtime() - acquiredAt;
+            boolean timedOut = heldMs >= timeoutMs;
+            if (wakeLock.isHeld()) {
+                wakeLock.release();
+            }
+            if (timedOut) {
+                Log.w(TAG, "✗ " + scope + " lease ran into its " + timeoutMs + " ms timeout");
+            }
+            account(this, Math.min(heldMs, timeoutMs), timedOut);
+        }
+    }
+}
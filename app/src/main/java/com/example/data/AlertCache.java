@@ -0,0 +1,85 @@
+package com.example.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded in-memory copy of the newest alerts, newest first. Serves the history list
+ * instantly while Room re-reads in the background (stale-while-revalidate).
+ * Entries stay readable after invalidation, they are only dropped under memory pressure.
+ */
+final class AlertCache {
+
+    private final int maxEntries;
+    private List<AlertEntity> alerts;
+    // True when alerts holds every row, not only the newest maxEntries
+    private boolean complete;
+    // Cleared by any write to alert_history until the next full read
+    private boolean valid;
+    // Bumped by every invalidation, a read that started before one can't validate the cache
+    private long generation;
+
+    AlertCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Generation to capture before a full read and pass to put()
+     */
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Store a fresh full read of the table, newest first. A no-op when the table was
+     * invalidated since generation was captured, the read may have missed that write.
+     */
+    synchronized void put(List<AlertEntity> allAlerts, long readGeneration) {
+        if (readGeneration != generation) {
+            return;
+        }
+        store(allAlerts);
+        valid = true;
+    }
+
+    /**
+     * Refresh a stale copy with a full read whose start isn't known, e.g. one Room ran
+     * for a LiveData. Never makes the cache valid, and a valid cache is already current.
+     */
+    synchronized void offer(List<AlertEntity> allAlerts) {
+        if (!valid) {
+            store(allAlerts);
+        }
+    }
+
+    private void store(List<AlertEntity> allAlerts) {
+        complete = allAlerts.size() <= maxEntries;
+        alerts = new ArrayList<>(complete ? allAlerts : allAlerts.subList(0, maxEntries));
+    }
+
+    /**
+     * Newest cached alerts, possibly stale or truncated, null when nothing is cached
+     */
+    synchronized List<AlertEntity> peek() {
+        return alerts != null ? new ArrayList<>(alerts) : null;
+    }
+
+    /**
+     * The whole history, only if it is cached and nothing was written since
+     */
+    synchronized List<AlertEntity> getIfValid() {
+        return alerts != null && valid && complete ? new ArrayList<>(alerts) : null;
+    }
+
+    synchronized void invalidate() {
+        valid = false;
+        generation++;
+    }
+
+    synchronized void clear() {
+        alerts = null;
+        complete = false;
+        valid = false;
+        generation++;
+    }
+}
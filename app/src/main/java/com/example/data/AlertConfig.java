@@ -0,0 +1,178 @@
+package com.example.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Bundle;
+
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Immutable snapshot of everything an alert needs: contact, message and detection
+ * settings. The current snapshot is published through an atomic reference and only
+ * rebuilt when the contact or settings preferences change, so reading it on the
+ * dispatch path costs no I/O, no lock and no Firebase setup. Subscribers are told
+ * about every new snapshot, so running components can apply settings live.
+ */
+public final class AlertConfig {
+
+    // Same file and keys SettingsActivity writes to
+    private static final String SETTINGS_PREFS_NAME = "sentinel_prefs";
+    private static final String KEY_SHAKE_DETECTION = "shake_detection_enabled";
+    private static final String KEY_VOLUME_BUTTONS = "volume_buttons_enabled";
+    private static final String KEY_VIBRATION = "vibration_enabled";
+    private static final String KEY_SOUND = "sound_enabled";
+    private static final String KEY_LOCATION_SHARING = "location_sharing_enabled";
+    private static final String KEY_SHAKE_SENSITIVITY = "shake_sensitivity";
+    private static final String KEY_COUNTDOWN_SECONDS = "countdown_seconds";
+
+    public static final int DEFAULT_SHAKE_SENSITIVITY = 2;
+    public static final int DEFAULT_COUNTDOWN_SECONDS = 5;
+
+    private static final AtomicReference<AlertConfig> current = new AtomicReference<>();
+    private static final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    // Preferences only hold their listeners weakly
+    private static SharedPreferences.OnSharedPreferenceChangeListener changeListener;
+
+    // Null when no contact is set
+    public final String contactName;
+    public final String contactPhone;
+    public final String message;
+    public final boolean shakeDetectionEnabled;
+    public final boolean volumeButtonsEnabled;
+    public final boolean vibrationEnabled;
+    public final boolean soundEnabled;
+    public final boolean locationSharingEnabled;
+    // 0 (very low) to 4 (very high)
+    public final int shakeSensitivity;
+    public final int countdownSeconds;
+
+    private AlertConfig(SharedPreferences contactPrefs, SharedPreferences settingsPrefs) {
+        contactName = contactPrefs.getString(EmergencyContactManager.KEY_CONTACT_NAME, null);
+        contactPhone = contactPrefs.getString(EmergencyContactManager.KEY_CONTACT_PHONE, null);
+        message = contactPrefs.getString(EmergencyContactManager.KEY_EMERGENCY_MESSAGE,
+                EmergencyContactManager.DEFAULT_MESSAGE);
+        shakeDetectionEnabled = settingsPrefs.getBoolean(KEY_SHAKE_DETECTION, true);
+        volumeButtonsEnabled = settingsPrefs.getBoolean(KEY_VOLUME_BUTTONS, true);
+        vibrationEnabled = settingsPrefs.getBoolean(KEY_VIBRATION, true);
+        soundEnabled = settingsPrefs.getBoolean(KEY_SOUND, true);
+        locationSharingEnabled = settingsPrefs.getBoolean(KEY_LOCATION_SHARING, true);
+        shakeSensitivity = settingsPrefs.getInt(KEY_SHAKE_SENSITIVITY, DEFAULT_SHAKE_SENSITIVITY);
+        countdownSeconds = settingsPrefs.getInt(KEY_COUNTDOWN_SECONDS, DEFAULT_COUNTDOWN_SECONDS);
+    }
+
+    // Same keys as the preferences
+    private AlertConfig(Bundle bundle) {
+        contactName = bundle.getString(EmergencyContactManager.KEY_CONTACT_NAME);
+        contactPhone = bundle.getString(EmergencyContactManager.KEY_CONTACT_PHONE);
+        message = bundle.getString(EmergencyContactManager.KEY_EMERGENCY_MESSAGE,
+                EmergencyContactManager.DEFAULT_MESSAGE);
+        shakeDetectionEnabled = bundle.getBoolean(KEY_SHAKE_DETECTION, true);
+        volumeButtonsEnabled = bundle.getBoolean(KEY_VOLUME_BUTTONS, true);
+        vibrationEnabled = bundle.getBoolean(KEY_VIBRATION, true);
+        soundEnabled = bundle.getBoolean(KEY_SOUND, true);
+        locationSharingEnabled = bundle.getBoolean(KEY_LOCATION_SHARING, true);
+        shakeSensitivity = bundle.getInt(KEY_SHAKE_SENSITIVITY, DEFAULT_SHAKE_SENSITIVITY);
+        countdownSeconds = bundle.getInt(KEY_COUNTDOWN_SECONDS, DEFAULT_COUNTDOWN_SECONDS);
+    }
+
+    /**
+     * This snapshot for another process, see publishFrom()
+     */
+    public Bundle toBundle() {
+        Bundle bundle = new Bundle();
+        bundle.putString(EmergencyContactManager.KEY_CONTACT_NAME, contactName);
+        bundle.putString(EmergencyContactManager.KEY_CONTACT_PHONE, contactPhone);
+        bundle.putString(EmergencyContactManager.KEY_EMERGENCY_MESSAGE, message);
+        bundle.putBoolean(KEY_SHAKE_DETECTION, shakeDetectionEnabled);
+        bundle.putBoolean(KEY_VOLUME_BUTTONS, volumeButtonsEnabled);
+        bundle.putBoolean(KEY_VIBRATION, vibrationEnabled);
+        bundle.putBoolean(KEY_SOUND, soundEnabled);
+        bundle.putBoolean(KEY_LOCATION_SHARING, locationSharingEnabled);
+        bundle.putInt(KEY_SHAKE_SENSITIVITY, shakeSensitivity);
+        bundle.putInt(KEY_COUNTDOWN_SECONDS, countdownSeconds);
+        return bundle;
+    }
+
+    public boolean hasEmergencyContact() {
+        return contactPhone != null && !contactPhone.isEmpty();
+    }
+
+    /**
+     * Receives each new snapshot on the main thread
+     */
+    public interface Listener {
+        void onConfigChanged(AlertConfig config);
+    }
+
+    /**
+     * Follow config changes. Returns the current snapshot, later ones go to the listener.
+     */
+    public static AlertConfig subscribe(Context context, Listener listener) {
+        listeners.add(listener);
+        return get(context);
+    }
+
+    public static void unsubscribe(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Current snapshot. The first call reads the preferences and starts following
+     * them, later calls are a single volatile read.
+     */
+    public static AlertConfig get(Context context) {
+        AlertConfig config = current.get();
+        return config != null ? config : load(context.getApplicationContext());
+    }
+
+    /**
+     * Publish a snapshot the app process sent with toBundle(). Preferences are only
+     * coherent within one process, so the detection process takes the app process's
+     * in-memory snapshot instead of re-reading files whose writes may still be pending.
+     */
+    public static void publishFrom(Bundle bundle) {
+        publish(new AlertConfig(bundle));
+    }
+
+    private static synchronized AlertConfig load(Context context) {
+        AlertConfig config = current.get();
+        if (config != null) {
+            return config;
+        }
+        SharedPreferences contactPrefs = DeviceStorage.preferences(context, EmergencyContactManager.PREFS_NAME);
+        SharedPreferences settingsPrefs = DeviceStorage.preferences(context, SETTINGS_PREFS_NAME);
+        changeListener = (prefs, key) -> publish(new AlertConfig(contactPrefs, settingsPrefs));
+        contactPrefs.registerOnSharedPreferenceChangeListener(changeListener);
+        settingsPrefs.registerOnSharedPreferenceChangeListener(changeListener);
+
+        // A change that landed after registering already published a newer snapshot
+        current.compareAndSet(null, new AlertConfig(contactPrefs, settingsPrefs));
+        return current.get();
+    }
+
+    // Other keys share these files (e.g. the profile cache stamps), those don't reach subscribers
+    private static void publish(AlertConfig config) {
+        AlertConfig previous = current.getAndSet(config);
+        if (previous != null && previous.sameAs(config)) {
+            return;
+        }
+        for (Listener listener : listeners) {
+            listener.onConfigChanged(config);
+        }
+    }
+
+    private boolean sameAs(AlertConfig other) {
+        return Objects.equals(contactName, other.contactName)
+                && Objects.equals(contactPhone, other.contactPhone)
+                && Objects.equals(message, other.message)
+                && shakeDetectionEnabled == other.shakeDetectionEnabled
+                && volumeButtonsEnabled == other.volumeButtonsEnabled
+                && vibrationEnabled == other.vibrationEnabled
+                && soundEnabled == other.soundEnabled
+                && locationSharingEnabled == other.locationSharingEnabled
+                && shakeSensitivity == other.shakeSensitivity
+                && countdownSeconds == other.countdownSeconds;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.data;
 
+import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Insert;
 import androidx.room.Query;
@@ -13,7 +14,10 @@ import java.util.List;
 public interface AlertDao {
 
     @Insert(onConflict = OnConflictStrategy.REPLACE)
-    void insert(AlertEntity alert);
+    long insert(AlertEntity alert);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertAll(List<AlertEntity> alerts);
 
     @Update
     void update(AlertEntity alert);
@@ -27,11 +31,15 @@ public interface AlertDao {
     @Query("SELECT * FROM alert_history ORDER BY timestamp DESC")
     List<AlertEntity> getAllAlerts();
 
+    // Observable variant backed by Room's invalidation tracker, re-queried only when alert_history changes
+    @Query("SELECT * FROM alert_history ORDER BY timestamp DESC")
+    LiveData<List<AlertEntity>> observeAllAlerts();
+
     @Query("SELECT * FROM alert_history WHERE timestamp >= :startTime AND timestamp <= :endTime ORDER BY timestamp DESC")
     List<AlertEntity> getAlertsByDateRange(long startTime, long endTime);
 
-    @Query("SELECT * FROM alert_history WHERE alertType = :type ORDER BY timestamp DESC")
-    List<AlertEntity> getAlertsByType(String type);
+    @Query("SELECT * FROM alert_history WHERE alertTypeCode = :typeCode ORDER BY timestamp DESC")
+    List<AlertEntity> getAlertsByType(int typeCode);
 
     @Query("SELECT COUNT(*) FROM alert_history")
     int getAlertCount();
@@ -39,6 +47,42 @@ public interface AlertDao {
     @Query("SELECT * FROM alert_history WHERE locationAvailable = 1 ORDER BY timestamp DESC")
     List<AlertEntity> getAlertsWithLocation();
 
+    // One geohash prefix range scan, bounds on the E7 columns trim the cell to the requested box
+    @Query("SELECT * FROM alert_history WHERE geohash >= :lowerHash AND geohash < :upperHash "
+            + "AND latitudeE7 BETWEEN :minLatE7 AND :maxLatE7 "
+            + "AND longitudeE7 BETWEEN :minLonE7 AND :maxLonE7")
+    List<AlertEntity> getAlertsInGeohashRange(String lowerHash, String upperHash,
+                                              int minLatE7, int maxLatE7,
+                                              int minLonE7, int maxLonE7);
+
+    // Full-text match over type label and contact, ranked in Java from the matchinfo blob
+    @Query("SELECT alert_history.*, matchinfo(alert_search, 'pcx') AS matchInfo "
+            + "FROM alert_history JOIN alert_search ON alert_history.id = alert_search.rowid "
+            + "WHERE alert_search MATCH :match")
+    List<AlertSearchResult> searchAlerts(String match);
+
+    // 0 when no local row matches, a key-less row with the same timestamp is a local insert awaiting its key
+    @Query("SELECT id FROM alert_history WHERE firebaseKey = :firebaseKey "
+            + "OR (firebaseKey IS NULL AND timestamp = :timestamp) LIMIT 1")
+    int findLocalId(String firebaseKey, long timestamp);
+
+    // Local inserts that never reached Firebase, oldest first so uploads keep their order
+    @Query("SELECT * FROM alert_history WHERE firebaseKey IS NULL ORDER BY timestamp ASC")
+    List<AlertEntity> getUnsyncedAlerts();
+
+    @Query("DELETE FROM alert_history WHERE firebaseKey IS NOT NULL")
+    void deleteSyncedAlerts();
+
+    @Query("DELETE FROM alert_history WHERE firebaseKey IN (:firebaseKeys)")
+    int deleteByFirebaseKeys(List<String> firebaseKeys);
+
     @Query("DELETE FROM alert_history WHERE timestamp < :timestamp")
     void deleteOlderThan(long timestamp);
+
+    // Oldest first so a compaction run can page through aged rows in fixed size batches
+    @Query("SELECT * FROM alert_history WHERE timestamp < :timestamp ORDER BY timestamp ASC LIMIT :limit")
+    List<AlertEntity> getAlertsOlderThan(long timestamp, int limit);
+
+    @Query("DELETE FROM alert_history WHERE id IN (:ids)")
+    int deleteByIds(List<Integer> ids);
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.example.data;
 
 import android.content.Context;
+import android.database.Cursor;
 
 import androidx.annotation.NonNull;
 import androidx.room.Database;
@@ -9,11 +10,16 @@ import androidx.room.RoomDatabase;
 import androidx.room.migration.Migration;
 import androidx.sqlite.db.SupportSQLiteDatabase;
 
-@Database(entities = {AlertEntity.class}, version = 5, exportSchema = false)
+@Database(entities = {AlertEntity.class, ContactEntity.class, DailySummaryEntity.class,
+        AlertSearchEntity.class}, version = 11, exportSchema = false)
 public abstract class AlertDatabase extends RoomDatabase {
 
     public abstract AlertDao alertDao();
 
+    public abstract ContactDao contactDao();
+
+    public abstract AlertSummaryDao alertSummaryDao();
+
     private static volatile AlertDatabase INSTANCE;
 
     // Migration from version 1 to 2 - adding firebaseKey field
@@ -24,12 +30,141 @@ public abstract class AlertDatabase extends RoomDatabase {
         }
     };
 
+    // Migration from version 5 to 6 - persisting firebaseKey (it was @Ignore'd in version 5)
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE alert_history ADD COLUMN firebaseKey TEXT");
+        }
+    };
+
+    // Migration from version 6 to 7 - compact alert rows: integer alert type, E7 coordinates
+    // and a reference into the contacts table instead of name/phone on every row
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS contacts (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "name TEXT NOT NULL, phone TEXT NOT NULL)");
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS index_contacts_name_phone ON contacts (name, phone)");
+            database.execSQL("INSERT OR IGNORE INTO contacts (name, phone) "
+                    + "SELECT DISTINCT IFNULL(contactName, ''), IFNULL(contactPhone, '') FROM alert_history");
+
+            StringBuilder typeCase = new StringBuilder("CASE a.alertType");
+            for (AlertType type : AlertType.values()) {
+                typeCase.append(" WHEN '").append(type.getLabel()).append("' THEN ").append(type.getCode());
+            }
+            typeCase.append(" ELSE ").append(AlertType.EMERGENCY.getCode()).append(" END");
+
+            database.execSQL("CREATE TABLE alert_history_new (id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "alertTypeCode INTEGER NOT NULL, timestamp INTEGER NOT NULL, "
+                    + "latitudeE7 INTEGER NOT NULL, longitudeE7 INTEGER NOT NULL, "
+                    + "contactId INTEGER NOT NULL, locationAvailable INTEGER NOT NULL, firebaseKey TEXT)");
+            database.execSQL("INSERT INTO alert_history_new (id, alertTypeCode, timestamp, latitudeE7, longitudeE7, "
+                    + "contactId, locationAvailable, firebaseKey) "
+                    + "SELECT a.id, " + typeCase + ", a.timestamp, "
+                    + "CAST(ROUND(IFNULL(a.latitude, 0) * 10000000) AS INTEGER), "
+                    + "CAST(ROUND(IFNULL(a.longitude, 0) * 10000000) AS INTEGER), "
+                    + "IFNULL(c.id, 0), a.locationAvailable, a.firebaseKey "
+                    + "FROM alert_history a LEFT JOIN contacts c "
+                    + "ON c.name = IFNULL(a.contactName, '') AND c.phone = IFNULL(a.contactPhone, '')");
+            database.execSQL("DROP TABLE alert_history");
+            database.execSQL("ALTER TABLE alert_history_new RENAME TO alert_history");
+        }
+    };
+
+    // Migration from version 7 to 8 - daily roll-up table for retention and a timestamp index
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS alert_daily_summary (day INTEGER NOT NULL, "
+                    + "alertTypeCode INTEGER NOT NULL, alertCount INTEGER NOT NULL, "
+                    + "locationCount INTEGER NOT NULL, firstTimestamp INTEGER NOT NULL, "
+                    + "lastTimestamp INTEGER NOT NULL, PRIMARY KEY(day, alertTypeCode))");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_alert_history_timestamp ON alert_history (timestamp)");
+        }
+    };
+
+    // Migration from version 8 to 9 - geohash spatial index, backfilled for rows with a location
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE alert_history ADD COLUMN geohash TEXT");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_alert_history_geohash ON alert_history (geohash)");
+
+            try (Cursor cursor = database.query(
+                    "SELECT id, latitudeE7, longitudeE7 FROM alert_history WHERE locationAvailable = 1")) {
+                while (cursor.moveToNext()) {
+                    String hash = GeoHash.encode(cursor.getInt(1) / 1e7, cursor.getInt(2) / 1e7,
+                            GeoHash.STORED_PRECISION);
+                    database.execSQL("UPDATE alert_history SET geohash = ? WHERE id = ?",
+                            new Object[]{hash, cursor.getInt(0)});
+                }
+            }
+        }
+    };
+
+    // Migration from version 9 to 10 - full-text search index, filled from existing alerts
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS alert_search "
+                    + "USING FTS4(alertType TEXT, contactName TEXT, contactPhone TEXT)");
+            database.execSQL("INSERT INTO alert_search (rowid, alertType, contactName, contactPhone) "
+                    + "SELECT a.id, " + typeLabelSql("a.alertTypeCode") + ", c.name, c.phone "
+                    + "FROM alert_history a LEFT JOIN contacts c ON c.id = a.contactId");
+        }
+    };
+
+    // Migration from version 10 to 11 - index used to match remote deltas to local rows
+    static final Migration MIGRATION_10_11 = new Migration(10, 11) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_alert_history_firebaseKey ON alert_history (firebaseKey)");
+        }
+    };
+
+    // SQL expression mapping an alert type code column to its label
+    private static String typeLabelSql(String codeColumn) {
+        StringBuilder sql = new StringBuilder("CASE ").append(codeColumn);
+        for (AlertType type : AlertType.values()) {
+            sql.append(" WHEN ").append(type.getCode()).append(" THEN '").append(type.getLabel()).append("'");
+        }
+        return sql.append(" END").toString();
+    }
+
+    /**
+     * Keeps alert_search in step with alert_history. Idempotent, runs on every open so
+     * it also covers freshly created and destructively migrated databases.
+     */
+    static void createSearchTriggers(SupportSQLiteDatabase database) {
+        String insertRow = "INSERT INTO alert_search (rowid, alertType, contactName, contactPhone) "
+                + "SELECT new.id, " + typeLabelSql("new.alertTypeCode") + ", c.name, c.phone "
+                + "FROM (SELECT 1) LEFT JOIN contacts c ON c.id = new.contactId; ";
+
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS alert_search_ai AFTER INSERT ON alert_history BEGIN "
+                + insertRow + "END");
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS alert_search_ad AFTER DELETE ON alert_history BEGIN "
+                + "DELETE FROM alert_search WHERE rowid = old.id; END");
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS alert_search_au AFTER UPDATE ON alert_history BEGIN "
+                + "DELETE FROM alert_search WHERE rowid = old.id; " + insertRow + "END");
+    }
+
+    private static final RoomDatabase.Callback SEARCH_TRIGGERS = new RoomDatabase.Callback() {
+        @Override
+        public void onOpen(@NonNull SupportSQLiteDatabase db) {
+            createSearchTriggers(db);
+        }
+    };
+
     public static AlertDatabase getDatabase(final Context context) {
         if (INSTANCE == null) {
             synchronized (AlertDatabase.class) {
                 if (INSTANCE == null) {
                     INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
                                     AlertDatabase.class, "alert_database")
+                            .addMigrations(MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8, MIGRATION_8_9,
+                                    MIGRATION_9_10, MIGRATION_10_11)
+                            .addCallback(SEARCH_TRIGGERS)
                             // fallbackToDestructiveMigration will handle all migration failures
                             // by recreating the database from scratch
                             .fallbackToDestructiveMigration()
@@ -40,6 +175,14 @@ public abstract class AlertDatabase extends RoomDatabase {
         return INSTANCE;
     }
 
+    // For testing, a private database per simulated device
+    static AlertDatabase inMemory(Context context) {
+        return Room.inMemoryDatabaseBuilder(context.getApplicationContext(), AlertDatabase.class)
+                .addCallback(SEARCH_TRIGGERS)
+                .allowMainThreadQueries()
+                .build();
+    }
+
     // For testing
     public static void closeDatabase() {
         if (INSTANCE != null) {
@@ -4,41 +4,62 @@ import android.annotation.SuppressLint;
 
 import androidx.room.Entity;
 import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
 import com.google.firebase.database.Exclude;
 import com.google.firebase.database.IgnoreExtraProperties;
 
+/**
+ * Alert row. Room stores the compact form (alert type code, E7 fixed point
+ * coordinates, contact id) while Firebase keeps the readable form through the
+ * label/degree/name getters, so the remote layout is unchanged.
+ */
 @IgnoreExtraProperties
-@Entity(tableName = "alert_history")
+@Entity(tableName = "alert_history", indices = {@Index("timestamp"), @Index("geohash"),
+        @Index("firebaseKey")})
 public class AlertEntity {
 
+    // Fixed point scale for coordinates, 1e-7 degrees is ~1cm at the equator
+    private static final double E7 = 1e7;
+
     @PrimaryKey(autoGenerate = true)
     private int id;
 
-    private String alertType;
+    private int alertTypeCode;
     private long timestamp;
-    private Double latitude;
-    private Double longitude;
-    private String contactName;
-    private String contactPhone;
+    private int latitudeE7;
+    private int longitudeE7;
+    // Row id in the contacts table, 0 when not resolved yet
+    private long contactId;
     private boolean locationAvailable;
+    // Spatial index key, null when there is no location
+    private String geohash;
 
-    //firebase key for syncing  not stored in room
-    @Ignore
+    //firebase key for syncing, stored in room so local rows can be matched to remote nodes
     private String firebaseKey;
 
+    // Resolved from the contacts table by the repository, not stored per alert
+    @Ignore
+    private String contactName;
+    @Ignore
+    private String contactPhone;
+    // Server time the remote node was last written, 0 for rows not read from Firebase
+    @Ignore
+    private long syncedAt;
+
     public AlertEntity() {
         // Default constructor required for calls to DataSnapshot.getValue(AlertEntity.class) and for firebase
     }
 
+    @Ignore
     public AlertEntity(String alertType, long timestamp, Double latitude,
                        Double longitude, String contactName, String contactPhone,
                        boolean locationAvailable) {
-        this.alertType = alertType;
+        this.alertTypeCode = AlertType.fromLabel(alertType).getCode();
         this.timestamp = timestamp;
-        this.latitude = latitude;
-        this.longitude = longitude;
+        setLatitude(latitude);
+        setLongitude(longitude);
         this.contactName = contactName;
         this.contactPhone = contactPhone;
         this.locationAvailable = locationAvailable;
@@ -53,13 +74,27 @@ public class AlertEntity {
         this.id = id;
     }
 
-    public String getAlertType() {
-        return alertType;
+    @Exclude
+    public int getAlertTypeCode() {
+        return alertTypeCode;
+    }
+
+    @Exclude
+    public void setAlertTypeCode(int alertTypeCode) {
+        this.alertTypeCode = alertTypeCode;
     }
 
+    @Exclude
+    public AlertType getType() {
+        return AlertType.fromCode(alertTypeCode);
+    }
+
+    public String getAlertType() {
+        return AlertType.fromCode(alertTypeCode).getLabel();
+    }
 
     public void setAlertType(String alertType) {
-        this.alertType = alertType;
+        this.alertTypeCode = AlertType.fromLabel(alertType).getCode();
     }
 
     public long getTimestamp() {
@@ -70,20 +105,62 @@ public class AlertEntity {
         this.timestamp = timestamp;
     }
 
+    @Exclude
+    public int getLatitudeE7() {
+        return latitudeE7;
+    }
+
+    @Exclude
+    public void setLatitudeE7(int latitudeE7) {
+        this.latitudeE7 = latitudeE7;
+    }
+
+    @Exclude
+    public int getLongitudeE7() {
+        return longitudeE7;
+    }
+
+    @Exclude
+    public void setLongitudeE7(int longitudeE7) {
+        this.longitudeE7 = longitudeE7;
+    }
+
+    // Primitive accessors for hot paths, only meaningful when locationAvailable is true
+    @Exclude
+    public double getLatitudeDegrees() {
+        return latitudeE7 / E7;
+    }
+
+    @Exclude
+    public double getLongitudeDegrees() {
+        return longitudeE7 / E7;
+    }
+
+    // Boxed accessors kept for the Firebase bean mapper and the remote layout
     public Double getLatitude() {
-        return latitude;
+        return locationAvailable ? getLatitudeDegrees() : null;
     }
 
     public void setLatitude(Double latitude) {
-        this.latitude = latitude;
+        this.latitudeE7 = toE7(latitude);
     }
 
     public Double getLongitude() {
-        return longitude;
+        return locationAvailable ? getLongitudeDegrees() : null;
     }
 
     public void setLongitude(Double longitude) {
-        this.longitude = longitude;
+        this.longitudeE7 = toE7(longitude);
+    }
+
+    @Exclude
+    public long getContactId() {
+        return contactId;
+    }
+
+    @Exclude
+    public void setContactId(long contactId) {
+        this.contactId = contactId;
     }
 
     public String getContactName() {
@@ -102,6 +179,16 @@ public class AlertEntity {
         this.contactPhone = contactPhone;
     }
 
+    @Exclude
+    public long getSyncedAt() {
+        return syncedAt;
+    }
+
+    @Exclude
+    public void setSyncedAt(long syncedAt) {
+        this.syncedAt = syncedAt;
+    }
+
     public boolean isLocationAvailable() {
         return locationAvailable;
     }
@@ -110,6 +197,23 @@ public class AlertEntity {
         this.locationAvailable = locationAvailable;
     }
 
+    @Exclude
+    public String getGeohash() {
+        return geohash;
+    }
+
+    @Exclude
+    public void setGeohash(String geohash) {
+        this.geohash = geohash;
+    }
+
+    // Recompute the spatial index key from the current coordinates
+    public void updateGeohash() {
+        geohash = locationAvailable
+                ? GeoHash.encode(getLatitudeDegrees(), getLongitudeDegrees(), GeoHash.STORED_PRECISION)
+                : null;
+    }
+
     public String getFirebaseKey() {
         return firebaseKey;
     }
@@ -118,12 +222,20 @@ public class AlertEntity {
         this.firebaseKey = firebaseKey;
     }
 
+    static int toE7(Double degrees) {
+        return degrees != null ? toE7(degrees.doubleValue()) : 0;
+    }
+
+    static int toE7(double degrees) {
+        return (int) Math.round(degrees * E7);
+    }
+
     // Helper method to get formatted location string
     @SuppressLint("DefaultLocale")
     @Exclude
     public String getLocationString() {
-        if (locationAvailable && latitude != null && longitude != null) {
-            return String.format("%.6f, %.6f", latitude, longitude);
+        if (locationAvailable) {
+            return String.format("%.6f, %.6f", getLatitudeDegrees(), getLongitudeDegrees());
         }
         return "Location not available";
     }
@@ -131,9 +243,9 @@ public class AlertEntity {
     // Helper method to get Google Maps URL
     @Exclude
     public String getGoogleMapsUrl() {
-        if (locationAvailable && latitude != null && longitude != null) {
-            return "https://maps.google.com/?q=" + latitude + "," + longitude;
+        if (locationAvailable) {
+            return "https://maps.google.com/?q=" + getLatitudeDegrees() + "," + getLongitudeDegrees();
         }
         return null;
     }
-}
\ No newline at end of file
+}
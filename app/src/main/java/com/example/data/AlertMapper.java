@@ -0,0 +1,87 @@
+package com.example.data;
+
+import com.google.firebase.database.DataSnapshot;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hand-written conversion between AlertEntity and the Firebase node layout, used
+ * instead of the reflective bean mapper behind getValue(AlertEntity.class) and
+ * setValue(alert). Field names match what the bean mapper wrote, so existing
+ * nodes read back unchanged.
+ */
+public final class AlertMapper {
+    static final String FIELD_ALERT_TYPE = "alertType";
+    static final String FIELD_TIMESTAMP = "timestamp";
+    static final String FIELD_LATITUDE = "latitude";
+    static final String FIELD_LONGITUDE = "longitude";
+    static final String FIELD_CONTACT_NAME = "contactName";
+    static final String FIELD_CONTACT_PHONE = "contactPhone";
+    static final String FIELD_LOCATION_AVAILABLE = "locationAvailable";
+    // Server time of the last upload, written by AlertShards.putAlert, never by toMap
+    static final String FIELD_SYNCED_AT = "syncedAt";
+
+    private AlertMapper() {
+    }
+
+    /**
+     * Node value for setValue/updateChildren. Local ids and the node key are not
+     * written, they are meaningless to other devices.
+     */
+    public static Map<String, Object> toMap(AlertEntity alert) {
+        Map<String, Object> map = new HashMap<>(12);
+        map.put(FIELD_ALERT_TYPE, alert.getAlertType());
+        map.put(FIELD_TIMESTAMP, alert.getTimestamp());
+        if (alert.isLocationAvailable()) {
+            map.put(FIELD_LATITUDE, alert.getLatitudeDegrees());
+            map.put(FIELD_LONGITUDE, alert.getLongitudeDegrees());
+        }
+        map.put(FIELD_CONTACT_NAME, alert.getContactName());
+        map.put(FIELD_CONTACT_PHONE, alert.getContactPhone());
+        map.put(FIELD_LOCATION_AVAILABLE, alert.isLocationAvailable());
+        return map;
+    }
+
+    /**
+     * Parse a snapshot of one alert node, or null if it is not an object node.
+     */
+    public static AlertEntity fromSnapshot(DataSnapshot snapshot) {
+        // getValue() without a class builds plain maps and boxed primitives, no bean reflection
+        Object value = snapshot.getValue();
+        if (!(value instanceof Map)) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Object> map = (Map<String, Object>) value;
+        return fromMap(snapshot.getKey(), map);
+    }
+
+    public static AlertEntity fromMap(String firebaseKey, Map<String, Object> map) {
+        AlertEntity alert = new AlertEntity();
+        alert.setFirebaseKey(firebaseKey);
+
+        Object type = map.get(FIELD_ALERT_TYPE);
+        alert.setAlertTypeCode(AlertType.fromLabel(type instanceof String ? (String) type : null).getCode());
+        alert.setTimestamp(asLong(map.get(FIELD_TIMESTAMP)));
+
+        Object latitude = map.get(FIELD_LATITUDE);
+        Object longitude = map.get(FIELD_LONGITUDE);
+        if (latitude instanceof Number && longitude instanceof Number) {
+            alert.setLatitudeE7(AlertEntity.toE7(((Number) latitude).doubleValue()));
+            alert.setLongitudeE7(AlertEntity.toE7(((Number) longitude).doubleValue()));
+        }
+
+        Object contactName = map.get(FIELD_CONTACT_NAME);
+        Object contactPhone = map.get(FIELD_CONTACT_PHONE);
+        alert.setContactName(contactName instanceof String ? (String) contactName : null);
+        alert.setContactPhone(contactPhone instanceof String ? (String) contactPhone : null);
+        alert.setLocationAvailable(Boolean.TRUE.equals(map.get(FIELD_LOCATION_AVAILABLE)));
+        alert.setSyncedAt(asLong(map.get(FIELD_SYNCED_AT)));
+        return alert;
+    }
+
+    private static long asLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.data;
+
+import android.app.Application;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Records an alert sent by the detection service. The service runs in its own process
+ * without Room or Firebase, so it hands each sent alert to the app process through this
+ * receiver, which is declared in the app process. An alert sent before the first unlock
+ * comes from UnrecordedAlerts and its file is deleted here once the Room row is written.
+ */
+public class AlertRecordReceiver extends BroadcastReceiver {
+
+    private static final String TAG = "AlertRecordReceiver";
+    private static final String EXTRA_TYPE = "alert_type";
+    private static final String EXTRA_TIMESTAMP = "timestamp";
+    private static final String EXTRA_LATITUDE = "latitude";
+    private static final String EXTRA_LONGITUDE = "longitude";
+    private static final String EXTRA_CONTACT_NAME = "contact_name";
+    private static final String EXTRA_CONTACT_PHONE = "contact_phone";
+    private static final String EXTRA_LOCATION_AVAILABLE = "location_available";
+    private static final String EXTRA_UNRECORDED_NAME = "unrecorded_name";
+    // Stay within the broadcast timeout when the remote write doesn't complete (offline)
+    private static final long MAX_WAIT_MS = 8000;
+
+    // Unrecorded alerts being inserted, a repeated handoff of the same file is dropped.
+    // Main thread only.
+    private static final Set<String> recording = new HashSet<>();
+
+    /**
+     * Hand alert over to the app process, starting it if needed
+     */
+    public static void send(Context context, AlertEntity alert) {
+        context.sendBroadcast(intent(context, alert));
+    }
+
+    /**
+     * Hand over an alert persisted in UnrecordedAlerts, its file is deleted once recorded
+     */
+    public static void send(Context context, AlertEntity alert, String unrecordedName) {
+        context.sendBroadcast(intent(context, alert).putExtra(EXTRA_UNRECORDED_NAME, unrecordedName));
+    }
+
+    private static Intent intent(Context context, AlertEntity alert) {
+        Intent intent = new Intent(context, AlertRecordReceiver.class)
+                .putExtra(EXTRA_TYPE, alert.getAlertType())
+                .putExtra(EXTRA_TIMESTAMP, alert.getTimestamp())
+                .putExtra(EXTRA_CONTACT_NAME, alert.getContactName())
+                .putExtra(EXTRA_CONTACT_PHONE, alert.getContactPhone())
+                .putExtra(EXTRA_LOCATION_AVAILABLE, alert.isLocationAvailable());
+        if (alert.getLatitude() != null && alert.getLongitude() != null) {
+            intent.putExtra(EXTRA_LATITUDE, alert.getLatitude().doubleValue())
+                    .putExtra(EXTRA_LONGITUDE, alert.getLongitude().doubleValue());
+        }
+        return intent;
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String unrecordedName = intent.getStringExtra(EXTRA_UNRECORDED_NAME);
+        if (unrecordedName != null) {
+            // Handed off again after the service restarted, or already recorded
+            if (recording.contains(unrecordedName) || !UnrecordedAlerts.exists(context, unrecordedName)) {
+                return;
+            }
+            recording.add(unrecordedName);
+        }
+
+        boolean located = intent.hasExtra(EXTRA_LATITUDE) && intent.hasExtra(EXTRA_LONGITUDE);
+        AlertEntity alert = new AlertEntity(
+                intent.getStringExtra(EXTRA_TYPE),
+                intent.getLongExtra(EXTRA_TIMESTAMP, System.currentTimeMillis()),
+                located ? intent.getDoubleExtra(EXTRA_LATITUDE, 0) : null,
+                located ? intent.getDoubleExtra(EXTRA_LONGITUDE, 0) : null,
+                intent.getStringExtra(EXTRA_CONTACT_NAME),
+                intent.getStringExtra(EXTRA_CONTACT_PHONE),
+                intent.getBooleanExtra(EXTRA_LOCATION_AVAILABLE, false));
+
+        PendingResult result = goAsync();
+        AtomicBoolean finished = new AtomicBoolean();
+        Runnable finish = () -> {
+            if (finished.compareAndSet(false, true)) {
+                result.finish();
+            }
+        };
+        // The Room row is written well before this, only the remote write may still be running
+        new Handler(Looper.getMainLooper()).postDelayed(finish, MAX_WAIT_MS);
+
+        // Only once the row is written can the persisted copy go, a crash before this hands it off again
+        Runnable onStored = unrecordedName != null ? () -> UnrecordedAlerts.delete(context, unrecordedName) : null;
+        AlertRepository.getInstance((Application) context.getApplicationContext())
+                .insert(alert, onStored, firebaseKey -> {
+                    Log.d(TAG, firebaseKey != null ? "✓ Alert recorded and synced" : "Alert recorded locally");
+                    // A file still present after a failed insert may be handed off again
+                    recording.remove(unrecordedName);
+                    finish.run();
+                });
+    }
+}
@@ -2,47 +2,156 @@ package com.example.data;
 
 
 import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.SharedPreferences;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.Process;
 import android.util.Log;
+import android.util.LongSparseArray;
 
 import androidx.annotation.NonNull;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
+import androidx.room.InvalidationTracker;
 
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.Query;
-import com.google.firebase.database.ValueEventListener;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.Objects;
 
 public class AlertRepository {
 
     private static final String TAG = "AlertRepository";
+
+    // Incremental sync state, per user
+    private static final String SYNC_PREFS_NAME = "alert_sync";
+    private static final String KEY_SYNCED_USER = "synced_user";
+    // Newest server write time merged; renamed from "watermark_", which held alert
+    // timestamps and missed late uploads, so every user gets one full fetch
+    private static final String KEY_WATERMARK = "synced_watermark_";
+    private static final String KEY_TOMBSTONE_WATERMARK = "tombstone_watermark_";
+    private static final String KEY_CLEARED_AT = "cleared_at_";
+    // Re-fetch this far behind the watermark, a write committing while a delta is read
+    // can carry a slightly older server time than writes already returned
+    private static final long SYNC_SKEW_MARGIN_MS = 10 * 60 * 1000;
+
+    // Remote writes are coalesced for this long, or until this many paths are queued
+    private static final long WRITE_BATCH_WINDOW_MS = 100;
+    private static final int WRITE_BATCH_MAX_PATHS = 200;
+    // Upper bound for a remote store call chained in sync lane work
+    private static final long REMOTE_TIMEOUT_SECONDS = 30;
+    // Newest alerts kept in memory for instant history loads
+    private static final int CACHE_MAX_ALERTS = 500;
+    // Threads serving local queries
+    private static final int READ_POOL_SIZE = 2;
+    // Remote merges commit in chunks so an emergency insert waits for at most one chunk
+    private static final int MERGE_CHUNK_SIZE = 200;
+    // Alerts moved per commit when migrating the flat remote layout to month shards
+    private static final int MIGRATION_BATCH_SIZE = 200;
+
+    private final AlertDatabase database;
     private final AlertDao alertDao;
-    private final ExecutorService executorService;
+    private final ContactDao contactDao;
+    private final AlertSummaryDao summaryDao;
+    // Contacts are few and rarely change, so they are cached by id and by (name, phone), guarded by contactsById
+    private final LongSparseArray<ContactEntity> contactsById = new LongSparseArray<>();
+    private final Map<String, Long> contactIdsByKey = new HashMap<>();
+    // Emergency persistence never queues behind reads or housekeeping
+    private final MeteredExecutor writeExecutor;
+    private final MeteredExecutor readExecutor;
+    private final MeteredExecutor syncExecutor;
     private final Handler mainHandler;
-    private DatabaseReference databaseReference;
+    private final SharedPreferences syncPrefs;
+    private final AlertCache alertCache = new AlertCache(CACHE_MAX_ALERTS);
+    private final RemoteWriteBatcher writeBatcher;
+    // Local ids of alerts queued for upload, guarded by itself
+    private final Set<Integer> uploadingIds = new HashSet<>();
+    private final RemoteAlertStore remoteStore;
     private final FirebaseAuth firebaseAuth;
     private static AlertRepository instance;
     private String currentUserId;
 
+    // Active realtime subscription, see startRealtimeUpdates
+    private RemoteAlertStore.Subscription realtimeSubscription;
+    private AlertChangeListener realtimeListener;
+    private LoadHandle realtimeSync;
+    // Callbacks waiting on the sync in flight, per user, guarded by itself
+    private final Map<String, List<RepositoryCallback<Boolean>>> syncWaiters = new HashMap<>();
+    // Users whose flat remote alerts were moved to month shards in this process, sync lane only
+    private final Set<String> migratedUsers = new HashSet<>();
+
     private AlertRepository(Application application) {
-        AlertDatabase db = AlertDatabase.getDatabase(application);
-        alertDao = db.alertDao();
-        executorService = Executors.newSingleThreadExecutor();
+        this(AlertDatabase.getDatabase(application),
+                application.getSharedPreferences(SYNC_PREFS_NAME, Context.MODE_PRIVATE),
+                RemoteStores.alerts(), FirebaseAuth.getInstance());
+        initializeFirebaseReference();
+    }
+
+    /**
+     * For testing: one repository per simulated device, signed in as userId for its lifetime
+     */
+    AlertRepository(AlertDatabase database, SharedPreferences syncPrefs, RemoteAlertStore remoteStore,
+                    String userId) {
+        this(database, syncPrefs, remoteStore, (FirebaseAuth) null);
+        currentUserId = userId;
+    }
+
+    private AlertRepository(AlertDatabase database, SharedPreferences syncPrefs, RemoteAlertStore remoteStore,
+                            FirebaseAuth firebaseAuth) {
+        this.database = database;
+        alertDao = database.alertDao();
+        contactDao = database.contactDao();
+        summaryDao = database.alertSummaryDao();
+        writeExecutor = new MeteredExecutor("write", 1, Process.THREAD_PRIORITY_FOREGROUND);
+        readExecutor = new MeteredExecutor("read", READ_POOL_SIZE, Process.THREAD_PRIORITY_DEFAULT);
+        syncExecutor = new MeteredExecutor("sync", 1, Process.THREAD_PRIORITY_BACKGROUND);
         mainHandler = new Handler(Looper.getMainLooper());
-        firebaseAuth = FirebaseAuth.getInstance();
+        this.syncPrefs = syncPrefs;
+        this.remoteStore = remoteStore;
+        writeBatcher = new RemoteWriteBatcher(remoteStore, WRITE_BATCH_WINDOW_MS, WRITE_BATCH_MAX_PATHS);
+        this.firebaseAuth = firebaseAuth;
 
-        initializeFirebaseReference();
+        // Any write to alert_history (this repository, the service, a sync) makes the cache stale
+        database.getInvalidationTracker().addObserver(new InvalidationTracker.Observer("alert_history") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                alertCache.invalidate();
+            }
+        });
+    }
+
+    /**
+     * Release cached alerts when the system is short on memory. Called from
+     * Application.onTrimMemory, a no-op before the repository is first used.
+     */
+    public static synchronized void trimMemory(int level) {
+        if (instance == null) {
+            return;
+        }
+        // Keep the cache when only the UI was hidden, reopening history is what it is for
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            instance.alertCache.clear();
+            Log.d(TAG, "Alert cache released (trim level " + level + ")");
+        }
     }
 
     //singleton getter
@@ -63,9 +172,14 @@ public class AlertRepository {
     }
 
     private void initializeFirebaseReference() {
+        if (firebaseAuth == null) {
+            // A test repository keeps the user it was created for
+            return;
+        }
         Log.d(TAG, "=== INITIALIZING FIREBASE ===");
         FirebaseUser currentUser = firebaseAuth.getCurrentUser();
 
+        String previousUserId = currentUserId;
         if (currentUser != null) {
             currentUserId = currentUser.getUid();
             Log.d(TAG, "Current user ID: " + currentUserId);
@@ -82,76 +196,75 @@ public class AlertRepository {
                 }
             });
 
-            String databaseUrl = "https://sentinel-7b6b4-default-rtdb.asia-southeast1.firebasedatabase.app";
-
-            try {
-                FirebaseDatabase database = FirebaseDatabase.getInstance(databaseUrl);
-                databaseReference = database.getReference("users")
-                        .child(currentUserId)
-                        .child("alerts");
-
-                Log.d(TAG, "✓ Firebase path: users/" + currentUserId + "/alerts");
-                Log.d(TAG, "✓ Firebase initialized successfully");
-            } catch (Exception e) {
-                Log.e(TAG, "✗ Error initializing Firebase Database: " + e.getMessage(), e);
-                e.printStackTrace();
-            }
+            Log.d(TAG, "✓ Remote path: users/" + currentUserId + "/" + RemoteAlertStore.NODE_ALERT_SHARDS);
         } else {
             currentUserId = null;
-            databaseReference = null;
             Log.w(TAG, "⚠ No user logged in, Firebase sync disabled");
         }
+
+        if (!Objects.equals(previousUserId, currentUserId)) {
+            alertCache.clear();
+        }
     }
 
     /**
      * Insert alert to both local Room database and Firebase
      */
     public void insert(AlertEntity alert, RepositoryCallback<String> callback) {
+        insert(alert, null, callback);
+    }
+
+    /**
+     * Insert alert to both local Room database and Firebase. onStored runs on the write
+     * lane once the Room row is written, before the remote write completes.
+     */
+    public void insert(AlertEntity alert, Runnable onStored, RepositoryCallback<String> callback) {
         Log.d(TAG, "=== INSERT ALERT START ===");
         Log.d(TAG, "Alert type: " + alert.getAlertType());
         Log.d(TAG, "Timestamp: " + alert.getTimestamp());
         Log.d(TAG, "Contact: " + alert.getContactName() + " - " + alert.getContactPhone());
 
-        executorService.execute(() -> {
+        writeExecutor.execute(() -> {
             try {
                 Log.d(TAG, "Inserting to Room database...");
                 // Insert to local database first (on background thread)
-                alertDao.insert(alert);
+                alert.setContactId(resolveContactId(alert.getContactName(), alert.getContactPhone()));
+                alert.updateGeohash();
+                String userId = currentUserId;
+                synchronized (uploadingIds) {
+                    alert.setId((int) alertDao.insert(alert));
+                    // Claimed before the sync lane can pick the key-less row up as unsynced
+                    if (userId != null) {
+                        uploadingIds.add(alert.getId());
+                    }
+                }
                 Log.d(TAG, "✓ Room insert successful");
+                if (onStored != null) {
+                    onStored.run();
+                }
 
-                // Sync to Firebase (callbacks will run on main thread automatically)
-                if (databaseReference != null) {
-                    Log.d(TAG, "Firebase reference exists, pushing to Firebase...");
-                    DatabaseReference newAlertRef = databaseReference.push();
-                    String firebaseKey = newAlertRef.getKey();
+                // Queue for the next batched Firebase write (callbacks will run on main thread)
+                if (userId != null) {
+                    String firebaseKey = remoteStore.newAlertKey(userId);
                     Log.d(TAG, "Generated Firebase key: " + firebaseKey);
 
                     alert.setFirebaseKey(firebaseKey);
-
-                    newAlertRef.setValue(alert)
-                            .addOnSuccessListener(aVoid -> {
-                                Log.d(TAG, "Alert synced to Firebase successfully" + firebaseKey);
-                                // Update local database with Firebase key
-                                //executorService.execute(() -> {
-                                //    try {
-                                //        alertDao.update(alert);
-                                //    } catch (Exception e) {
-                                //        Log.e(TAG, "Failed to update alert with Firebase key", e);
-                                //    }
-                                //});
-
-                                if (callback != null) {
-                                    mainHandler.post(() -> callback.onComplete(firebaseKey));
+                    Map<String, Object> updates = new HashMap<>();
+                    AlertShards.putAlert(updates, firebaseKey, alert, remoteStore.serverTimestamp());
+                    writeBatcher.enqueue(userId, updates,
+                            AlertSummary.increments(Collections.singletonList(alert), 1),
+                            success -> {
+                                onAlertUploaded(alert, success);
+                                if (success) {
+                                    raiseLastAlertAt(userId, alert.getTimestamp());
+                                    Log.d(TAG, "Alert synced to Firebase successfully" + firebaseKey);
+                                } else {
+                                    Log.e(TAG, "x Failed to sync alert to Firebase, path: users/" + userId + "/"
+                                            + AlertShards.alertPath(firebaseKey, alert.getTimestamp()));
+                                    Log.e(TAG, "User ID: " + userId);
                                 }
-                            })
-                            .addOnFailureListener(e -> {
-                                Log.e(TAG, "x Failed to sync alert to Firebase: " + e.getMessage(), e);
-                                Log.e(TAG, "Firebase path: " + newAlertRef.toString());
-                                Log.e(TAG, "User ID: " + (firebaseAuth.getCurrentUser() != null ? firebaseAuth.getCurrentUser().getUid() : "NULL"));
-                                Log.e(TAG, "User authenticated: " + (firebaseAuth.getCurrentUser() != null));
-
                                 if (callback != null) {
-                                    mainHandler.post(() -> callback.onComplete(null));
+                                    mainHandler.post(() -> callback.onComplete(success ? firebaseKey : null));
                                 }
                             });
                 } else {
@@ -170,11 +283,129 @@ public class AlertRepository {
         });
     }
 
+    // Write the Firebase key back on success, a failed row keeps no key and is uploaded again on next sync
+    private void onAlertUploaded(AlertEntity alert, boolean success) {
+        syncExecutor.execute(() -> {
+            synchronized (uploadingIds) {
+                uploadingIds.remove(alert.getId());
+            }
+            if (!success) {
+                return;
+            }
+            try {
+                alertDao.update(alert);
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to update alert with Firebase key", e);
+            }
+        });
+    }
+
     /**
-     * Get all alerts from Firebase (primary) or local database (fallback)
+     * Queue every local alert that never reached Firebase (saved while logged out, or
+     * whose upload failed) into batched multi-path writes. Runs on the sync lane.
      */
-    public void getAllAlerts(RepositoryCallback<List<AlertEntity>> callback) {
-        if (databaseReference != null) {
+    private void uploadUnsyncedAlerts() {
+        String userId = currentUserId;
+        if (userId == null) {
+            return;
+        }
+
+        List<AlertEntity> unsynced = new ArrayList<>();
+        synchronized (uploadingIds) {
+            for (AlertEntity alert : alertDao.getUnsyncedAlerts()) {
+                if (uploadingIds.add(alert.getId())) {
+                    unsynced.add(alert);
+                }
+            }
+        }
+        attachContacts(unsynced);
+        // One last-alert transaction for the whole backlog, once every upload completed
+        AtomicInteger remaining = new AtomicInteger(unsynced.size());
+        AtomicLong newestUploaded = new AtomicLong();
+        int queued = 0;
+        for (AlertEntity alert : unsynced) {
+            String firebaseKey = remoteStore.newAlertKey(userId);
+            alert.setFirebaseKey(firebaseKey);
+            Map<String, Object> updates = new HashMap<>();
+            AlertShards.putAlert(updates, firebaseKey, alert, remoteStore.serverTimestamp());
+            writeBatcher.enqueue(userId, updates, AlertSummary.increments(Collections.singletonList(alert), 1),
+                    success -> {
+                        onAlertUploaded(alert, success);
+                        if (success) {
+                            newestUploaded.accumulateAndGet(alert.getTimestamp(), Math::max);
+                        }
+                        if (remaining.decrementAndGet() == 0 && newestUploaded.get() > 0) {
+                            raiseLastAlertAt(userId, newestUploaded.get());
+                        }
+                    });
+            queued++;
+        }
+        if (queued > 0) {
+            Log.d(TAG, "Queued " + queued + " unsynced alerts for upload");
+        }
+    }
+
+    // Best effort, a missed raise is corrected by the next summary repair
+    private void raiseLastAlertAt(String userId, long timestamp) {
+        remoteStore.raiseLastAlertAt(userId, timestamp, success -> {
+            if (!success) {
+                Log.w(TAG, "Last alert time not raised, left to the summary repair");
+            }
+        });
+    }
+
+    /**
+     * Observe all alerts in the local database. Room re-runs the query only when
+     * alert_history is invalidated, so inserts from the service and Firebase syncs
+     * reach the UI without a manual reload. Cached alerts, even stale ones, are
+     * emitted right away and replaced once Room delivers. Call on the main thread.
+     */
+    public LiveData<List<AlertEntity>> observeAllAlerts() {
+        MediatorLiveData<List<AlertEntity>> result = new MediatorLiveData<>();
+        List<AlertEntity> cached = alertCache.peek();
+        if (cached != null) {
+            result.setValue(cached);
+        }
+        // The read pool may finish two emissions out of order, an older list never replaces a newer one
+        AtomicLong emitted = new AtomicLong();
+        long[] posted = {0};
+        result.addSource(alertDao.observeAllAlerts(), alerts -> {
+            long emission = emitted.incrementAndGet();
+            readExecutor.execute(() -> {
+                attachContacts(alerts);
+                synchronized (posted) {
+                    if (emission < posted[0]) {
+                        return;
+                    }
+                    posted[0] = emission;
+                    // Room ran this read, when it started is unknown, so it can't validate the cache
+                    alertCache.offer(alerts);
+                    result.postValue(alerts);
+                }
+            });
+        });
+        return result;
+    }
+
+    /**
+     * Get all alerts after an incremental Firebase sync, or from the local database
+     * if Firebase is unavailable or slow. A valid cached history is returned at once
+     * and the sync then runs in the background.
+     */
+    public LoadHandle getAllAlerts(RepositoryCallback<List<AlertEntity>> callback) {
+        LoadHandle handle = new LoadHandle();
+        List<AlertEntity> cached = alertCache.getIfValid();
+        if (cached != null) {
+            Log.d(TAG, "✓ Serving " + cached.size() + " alerts from cache");
+            handle.deliver(mainHandler, callback, cached);
+            // Revalidate, the merge invalidates the cache and live observers see the new rows
+            if (currentUserId != null) {
+                syncFromFirebase(null);
+            }
+            return handle;
+        }
+
+        if (currentUserId != null) {
             Log.d(TAG, "Attempting to fetch from Firebase...");
             //timeout fallback
             final boolean[] callbackInvoked = {false};
@@ -183,148 +414,319 @@ public class AlertRepository {
                 if (!callbackInvoked[0]) {
                     Log.w(TAG, "Firebase timeout, falling back to local database");
                     callbackInvoked[0] = true;
-                    getAlertsFromLocal(callback);
+                    getAlertsFromLocal(handle, callback);
                 }
             }, 5000);
 
-            getAlertsFromFirebase(new RepositoryCallback<List<AlertEntity>>() {
-                @Override
-                public void onComplete(List<AlertEntity> result) {
-                    if (!callbackInvoked[0]) {
-                        callbackInvoked[0] = true;
-                        if (callback != null) {
-                            callback.onComplete(result);
-                        }
-                    }
+            // Pull only the remote delta into Room, then serve the merged local list
+            syncFromFirebase(success -> {
+                if (!callbackInvoked[0]) {
+                    callbackInvoked[0] = true;
+                    getAlertsFromLocal(handle, callback);
                 }
             });
         } else {
             Log.d(TAG, "Firebase reference is null, using local database");
-            getAlertsFromLocal(callback);
+            getAlertsFromLocal(handle, callback);
         }
+        return handle;
     }
 
     /**
-     * Get alerts from Firebase (single fetch, not real-time)
+     * Incremental sync: fetch only alerts written (server time) at or after the persisted
+     * watermark, whatever their own timestamp, plus tombstones and the clear marker, and
+     * merge that delta into Room. The first sync for a user (or after a user switch) is a
+     * full fetch that replaces local rows. Completes with true when the delta was applied.
+     * A sync requested while one is already running for the same user joins it instead
+     * of fetching again.
      */
-    private void getAlertsFromFirebase(RepositoryCallback<List<AlertEntity>> callback) {
-        Log.d(TAG, "=== FETCHING FROM FIREBASE ===");
-        Log.d(TAG, "Database reference: " + (databaseReference != null ? databaseReference.toString() : "NULL"));
+    private LoadHandle syncFromFirebase(RepositoryCallback<Boolean> callback) {
+        LoadHandle handle = new LoadHandle();
+        String userId = currentUserId;
+
+        if (userId == null) {
+            Log.w(TAG, "No user logged in, skipping sync");
+            handle.deliver(mainHandler, callback, false);
+            return handle;
+        }
 
-        if (databaseReference == null) {
-            Log.w(TAG, "Database reference is null, falling back to local");
-            getAlertsFromLocal(callback);
-            return;
+        synchronized (syncWaiters) {
+            List<RepositoryCallback<Boolean>> waiters = syncWaiters.get(userId);
+            boolean inFlight = waiters != null;
+            if (!inFlight) {
+                waiters = new ArrayList<>();
+                syncWaiters.put(userId, waiters);
+            }
+            waiters.add(success -> handle.deliver(mainHandler, callback, success));
+            if (inFlight) {
+                Log.d(TAG, "Sync already in flight, joining it");
+                return handle;
+            }
         }
 
-        Query query = databaseReference.orderByChild("timestamp");
+        boolean fullFetch = !userId.equals(syncPrefs.getString(KEY_SYNCED_USER, null))
+                || !syncPrefs.contains(KEY_WATERMARK + userId);
+        long watermark = fullFetch ? 0 : syncPrefs.getLong(KEY_WATERMARK + userId, 0);
+        long tombstoneWatermark = fullFetch ? 0 : syncPrefs.getLong(KEY_TOMBSTONE_WATERMARK + userId, 0);
+        long clearedAt = fullFetch ? 0 : syncPrefs.getLong(KEY_CLEARED_AT + userId, 0);
 
-        // Firebase listeners run on main thread by default, which is fine for async operations
-        query.addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                Log.d(TAG, "Firebase onDataChange triggered");
-                Log.d(TAG, "DataSnapshot exists: " + dataSnapshot.exists());
-                Log.d(TAG, "Children count: " + dataSnapshot.getChildrenCount());
-
-                // Parse data on background thread to avoid blocking main thread
-                executorService.execute(() -> {
-                    List<AlertEntity> alerts = new ArrayList<>();
-
-                    for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
-                        try {
-                            Log.d(TAG, "Processing snapshot key: " + snapshot.getKey());
-                            AlertEntity alert = snapshot.getValue(AlertEntity.class);
-                            if (alert != null) {
-                                alert.setFirebaseKey(snapshot.getKey());
-                                alerts.add(alert);
-                                Log.d(TAG, "✓ Parsed alert: " + alert.getAlertType() + " at " + alert.getTimestamp());
-                            } else {
-                                Log.w(TAG, "⚠ Alert is null for key: " + snapshot.getKey());
-                            }
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error parsing alert from Firebase" + e.getMessage(), e);
-                            Log.e(TAG, "Snapshot data: " + snapshot.toString());
-                        }
-                    }
+        Log.d(TAG, "=== SYNCING FROM FIREBASE (" + (fullFetch ? "full" : "since " + watermark) + ") ===");
 
-                    // Sort by timestamp descending (newest first)
-                    Collections.sort(alerts, (a1, a2) ->
-                            Long.compare(a2.getTimestamp(), a1.getTimestamp()));
+        // Shards must hold everything before they are read
+        syncExecutor.execute(() -> migrateLegacyAlerts(userId).addOnCompleteListener(syncExecutor, migrated ->
+                fetchAndMerge(userId, fullFetch, watermark, tombstoneWatermark, clearedAt)));
+        return handle;
+    }
 
-                    Log.d(TAG, "Loaded " + alerts.size() + " alerts from Firebase");
+    private void fetchAndMerge(String userId, boolean fullFetch, long watermark,
+                               long tombstoneWatermark, long clearedAt) {
+        remoteStore.fetchDelta(userId, fullFetch, watermark - SYNC_SKEW_MARGIN_MS, tombstoneWatermark,
+                delta -> syncExecutor.execute(() -> {
+                    if (delta == null) {
+                        Log.e(TAG, "✗ Firebase sync failed, keeping local data");
+                        finishSync(userId, false);
+                        return;
+                    }
 
-                    // Return results on main thread
-                    if (callback != null) {
-                        mainHandler.post(() -> callback.onComplete(alerts));
+                    // Applied even if every caller cancelled, the merged rows are still current
+                    try {
+                        applyRemoteDelta(userId, fullFetch, watermark, tombstoneWatermark, clearedAt, delta);
+                        uploadUnsyncedAlerts();
+                        finishSync(userId, true);
+                    } catch (Exception e) {
+                        Log.e(TAG, "✗ Error merging Firebase delta: " + e.getMessage(), e);
+                        finishSync(userId, false);
                     }
+                }));
+    }
+
+    /**
+     * Move alerts left in the flat pre-sharding node into month shards. Each batch is one
+     * atomic commit that writes the shard copies and removes the flat nodes, so an alert
+     * is never lost or duplicated, and devices migrating at the same time converge: a
+     * batch that overlaps one another device committed first is rejected whole, and its
+     * alerts are gone from the flat node on the next read.
+     * Checked once per user per process; a failure is retried on the next sync.
+     * Call on the sync lane, the returned task never fails.
+     */
+    private Task<Void> migrateLegacyAlerts(String userId) {
+        if (migratedUsers.contains(userId)) {
+            return Tasks.forResult(null);
+        }
+        AtomicInteger moved = new AtomicInteger();
+        return migrateNextBatch(userId, moved).continueWith(syncExecutor, done -> {
+            if (done.isSuccessful()) {
+                migratedUsers.add(userId);
+                if (moved.get() > 0) {
+                    Log.d(TAG, "✓ Migrated " + moved.get() + " alerts to month shards");
+                }
+            } else {
+                Exception e = done.getException();
+                Log.e(TAG, "✗ Alert shard migration stopped after " + moved.get() + " alerts: "
+                        + e.getMessage(), e);
+            }
+            return null;
+        });
+    }
 
-                    // Sync to local database in background
-                    syncToLocalDatabase(alerts);
+    // One batch per round trip, chained until the flat node is empty
+    private Task<Void> migrateNextBatch(String userId, AtomicInteger moved) {
+        return this.<List<AlertEntity>>remote(callback ->
+                        remoteStore.fetchLegacyAlerts(userId, MIGRATION_BATCH_SIZE, callback))
+                .onSuccessTask(syncExecutor, legacy -> {
+                    if (legacy.isEmpty()) {
+                        return Tasks.<Void>forResult(null);
+                    }
+                    Map<String, Object> updates = new HashMap<>();
+                    for (AlertEntity alert : legacy) {
+                        updates.put(RemoteAlertStore.NODE_ALERTS + "/" + alert.getFirebaseKey(), null);
+                        AlertShards.putAlert(updates, alert.getFirebaseKey(), alert, remoteStore.serverTimestamp());
+                        // Write-once in the rules: a device migrating the same alert concurrently
+                        // has its whole commit rejected, so the increments below apply once
+                        updates.put(RemoteAlertStore.NODE_MIGRATED + "/" + alert.getFirebaseKey(), true);
+                    }
+                    // Flat alerts were never counted
+                    for (Map.Entry<String, Long> increment : AlertSummary.increments(legacy, 1).entrySet()) {
+                        updates.put(increment.getKey(), remoteStore.increment(increment.getValue()));
+                    }
+                    return commitOrFail(userId, updates).onSuccessTask(syncExecutor, committed -> {
+                        moved.addAndGet(legacy.size());
+                        return migrateNextBatch(userId, moved);
+                    });
                 });
+    }
+
+    private void finishSync(String userId, boolean success) {
+        List<RepositoryCallback<Boolean>> waiters;
+        synchronized (syncWaiters) {
+            waiters = syncWaiters.remove(userId);
+        }
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            // A sync is the heaviest use of the lanes, queueing behind it shows up here
+            for (MeteredExecutor.Stats stats : getExecutorStats()) {
+                Log.d(TAG, "Lane " + stats);
             }
+        }
+        if (waiters != null) {
+            for (RepositoryCallback<Boolean> waiter : waiters) {
+                waiter.onComplete(success);
+            }
+        }
+    }
 
-            @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
-                Log.e(TAG, "✗ Firebase query cancelled: " + databaseError.getMessage());
-                Log.e(TAG, "Error code: " + databaseError.getCode());
-                Log.e(TAG, "Error details: " + databaseError.getDetails());
-                Log.e(TAG, "Firebase query cancelled", databaseError.toException());
-                databaseError.toException().printStackTrace();
+    private void applyRemoteDelta(String userId, boolean fullFetch, long watermark,
+                                  long tombstoneWatermark, long clearedAt,
+                                  RemoteAlertStore.Delta delta) {
+        List<AlertEntity> alerts = delta.alerts;
+        long newWatermark = watermark;
+        for (AlertEntity alert : alerts) {
+            newWatermark = Math.max(newWatermark, alert.getSyncedAt());
+        }
 
-                Log.w(TAG, "Falling back to local database due to Firebase error");
-                getAlertsFromLocal(callback);
+        List<String> deletedKeys = new ArrayList<>(delta.tombstones.keySet());
+        long newTombstoneWatermark = tombstoneWatermark;
+        for (long deletedAt : delta.tombstones.values()) {
+            newTombstoneWatermark = Math.max(newTombstoneWatermark, deletedAt);
+        }
+
+        long newClearedAt = delta.clearedAt;
+        boolean replaceAll = fullFetch || newClearedAt > clearedAt;
+
+        if (replaceAll) {
+            // One transaction, observers must never see the history emptied or half refilled
+            database.runInTransaction(() -> {
+                // Rows that never reached Firebase are kept and uploaded after the merge
+                alertDao.deleteSyncedAlerts();
+                for (AlertEntity alert : alerts) {
+                    upsertRemoteAlert(alert);
+                }
+            });
+        } else if (!deletedKeys.isEmpty()) {
+            database.runInTransaction(() -> alertDao.deleteByFirebaseKeys(deletedKeys));
+        }
+        // A delta only adds or updates rows, short transactions release the write lock
+        // between chunks for the write lane
+        for (int start = 0; !replaceAll && start < alerts.size(); start += MERGE_CHUNK_SIZE) {
+            List<AlertEntity> chunk = alerts.subList(start, Math.min(alerts.size(), start + MERGE_CHUNK_SIZE));
+            database.runInTransaction(() -> {
+                for (AlertEntity alert : chunk) {
+                    upsertRemoteAlert(alert);
+                }
+            });
+        }
+
+        syncPrefs.edit()
+                .putString(KEY_SYNCED_USER, userId)
+                .putLong(KEY_WATERMARK + userId, newWatermark)
+                .putLong(KEY_TOMBSTONE_WATERMARK + userId, newTombstoneWatermark)
+                .putLong(KEY_CLEARED_AT + userId, newClearedAt)
+                .apply();
+
+        Log.d(TAG, "✓ Merged " + alerts.size() + " changed and " + deletedKeys.size()
+                + " deleted alerts" + (replaceAll ? " (replaced local data)" : ""));
+    }
+
+    /**
+     * Insert or replace a remote alert, matched to an existing local row by Firebase key
+     * (or by timestamp for a local insert whose key has not been written back yet).
+     * The remote id belongs to whichever device created the alert and is never reused.
+     */
+    private void upsertRemoteAlert(AlertEntity alert) {
+        alert.setContactId(resolveContactId(alert.getContactName(), alert.getContactPhone()));
+        alert.updateGeohash();
+        alert.setId(alertDao.findLocalId(alert.getFirebaseKey(), alert.getTimestamp()));
+        alert.setId((int) alertDao.insert(alert));
+    }
+
+    /**
+     * Start realtime sync for the current user. Runs an incremental sync first, then
+     * listens for writes from the new watermark on, so only alerts uploaded after that
+     * point are delivered, including late uploads of old alerts. Each event is applied to
+     * Room as a single row upsert or delete and then reported to the listener on the
+     * main thread.
+     * Only one realtime listener is active at a time. Call on the main thread.
+     */
+    public void startRealtimeUpdates(AlertChangeListener listener) {
+        stopRealtimeUpdates();
+        realtimeListener = listener;
+
+        realtimeSync = syncFromFirebase(synced -> {
+            String userId = currentUserId;
+            if (userId == null || realtimeListener != listener) {
+                return;
             }
+
+            long watermark = syncPrefs.getLong(KEY_WATERMARK + userId, 0);
+            realtimeSubscription = remoteStore.subscribe(userId, watermark - SYNC_SKEW_MARGIN_MS,
+                    new RemoteAlertStore.ChangeListener() {
+                        @Override
+                        public void onAlertUpserted(AlertEntity alert, boolean added) {
+                            applyRealtimeUpsert(userId, alert, listener, added);
+                        }
+
+                        @Override
+                        public void onAlertRemoved(String firebaseKey) {
+                            syncExecutor.execute(() -> {
+                                try {
+                                    alertDao.deleteByFirebaseKeys(Collections.singletonList(firebaseKey));
+                                    mainHandler.post(() -> listener.onAlertRemoved(firebaseKey));
+                                } catch (Exception e) {
+                                    Log.e(TAG, "Error applying realtime delete for " + firebaseKey, e);
+                                }
+                            });
+                        }
+                    });
+            Log.d(TAG, "✓ Realtime updates started from " + watermark);
         });
     }
 
     /**
-     * Get alerts from Firebase with real-time updates (use only when needed)
+     * Stop the realtime listener started by startRealtimeUpdates, including a
+     * catch-up sync it is still waiting on
      */
-    public void getAlertsWithRealtimeUpdates(RepositoryCallback<List<AlertEntity>> callback) {
-        if (databaseReference == null) {
-            getAlertsFromLocal(callback);
-            return;
+    public void stopRealtimeUpdates() {
+        if (realtimeSync != null) {
+            realtimeSync.cancel();
         }
+        if (realtimeSubscription != null) {
+            realtimeSubscription.cancel();
+        }
+        realtimeSync = null;
+        realtimeSubscription = null;
+        realtimeListener = null;
+    }
 
-        Query query = databaseReference.orderByChild("timestamp");
-
-        query.addValueEventListener(new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                // Process data on background thread
-                executorService.execute(() -> {
-                    List<AlertEntity> alerts = new ArrayList<>();
-
-                    for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
-                        try {
-                            AlertEntity alert = snapshot.getValue(AlertEntity.class);
-                            if (alert != null) {
-                                alert.setFirebaseKey(snapshot.getKey());
-                                alerts.add(alert);
-                            }
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error parsing alert from Firebase", e);
-                        }
-                    }
+    /**
+     * Stop realtime updates only if the listener is still the active one
+     */
+    public void stopRealtimeUpdates(AlertChangeListener listener) {
+        if (realtimeListener == listener) {
+            stopRealtimeUpdates();
+        }
+    }
 
-                    Collections.sort(alerts, (a1, a2) ->
-                            Long.compare(a2.getTimestamp(), a1.getTimestamp()));
+    private void applyRealtimeUpsert(String userId, AlertEntity alert,
+                                     AlertChangeListener listener, boolean added) {
+        syncExecutor.execute(() -> {
+            try {
+                // A child we already hold (e.g. our own insert) is a change, not an addition
+                boolean known = alertDao.findLocalId(alert.getFirebaseKey(), alert.getTimestamp()) != 0;
+                upsertRemoteAlert(alert);
 
-                    Log.d(TAG, "Real-time update: " + alerts.size() + " alerts");
+                if (alert.getSyncedAt() > syncPrefs.getLong(KEY_WATERMARK + userId, 0)) {
+                    syncPrefs.edit().putLong(KEY_WATERMARK + userId, alert.getSyncedAt()).apply();
+                }
 
-                    if (callback != null) {
-                        mainHandler.post(() -> callback.onComplete(alerts));
+                boolean isNew = added && !known;
+                mainHandler.post(() -> {
+                    if (isNew) {
+                        listener.onAlertAdded(alert);
+                    } else {
+                        listener.onAlertChanged(alert);
                     }
-
-                    syncToLocalDatabase(alerts);
                 });
-            }
-
-            @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
-                Log.e(TAG, "Firebase query cancelled", databaseError.toException());
-                getAlertsFromLocal(callback);
+            } catch (Exception e) {
+                Log.e(TAG, "Error applying realtime change for " + alert.getFirebaseKey(), e);
             }
         });
     }
@@ -332,11 +734,16 @@ public class AlertRepository {
     /**
      * Get alerts from local Room database
      */
-    private void getAlertsFromLocal(RepositoryCallback<List<AlertEntity>> callback) {
+    private void getAlertsFromLocal(LoadHandle handle, RepositoryCallback<List<AlertEntity>> callback) {
         Log.d(TAG, "=== FETCHING FROM LOCAL DATABASE ===");
-        executorService.execute(() -> {
+        readExecutor.execute(() -> {
+            if (handle.isCancelled()) {
+                return;
+            }
             try {
+                long generation = alertCache.generation();
                 List<AlertEntity> alerts = alertDao.getAllAlerts();
+                attachContacts(alerts);
                 Log.d(TAG, "✓ Retrieved " + alerts.size() + " alerts from Room");
 
                 for (AlertEntity alert : alerts) {
@@ -345,78 +752,108 @@ public class AlertRepository {
 
                 Collections.sort(alerts, (a1, a2) ->
                         Long.compare(a2.getTimestamp(), a1.getTimestamp()));
+                alertCache.put(alerts, generation);
 
-                if (callback != null) {
-                    mainHandler.post(() -> callback.onComplete(alerts));
-                }
+                handle.deliver(mainHandler, callback, alerts);
             } catch (Exception e) {
                 Log.e(TAG, "✗ Error loading alerts from local database: " + e.getMessage(), e);
                 e.printStackTrace();
-                if (callback != null) {
-                    mainHandler.post(() -> callback.onComplete(new ArrayList<>()));
-                }
+                handle.deliver(mainHandler, callback, new ArrayList<>());
             }
         });
     }
 
     /**
-     * Sync Firebase alerts to local database for offline access
+     * Find or create the contacts row for a name/phone pair. Must run off the main thread.
      */
-    private void syncToLocalDatabase(List<AlertEntity> alerts) {
-        Log.d(TAG, "=== SYNCING TO LOCAL DATABASE ===");
-        Log.d(TAG, "Alerts to sync: " + alerts.size());
+    private long resolveContactId(String name, String phone) {
+        String safeName = name != null ? name : "";
+        String safePhone = phone != null ? phone : "";
+        String key = safeName + '\n' + safePhone;
+
+        synchronized (contactsById) {
+            Long cachedId = contactIdsByKey.get(key);
+            if (cachedId != null) {
+                return cachedId;
+            }
+        }
 
-        executorService.execute(() -> {
-            try {
-                Log.d(TAG, "Deleting all existing local alerts...");
-                alertDao.deleteAll();
-                Log.d(TAG, "✓ Local database cleared");
+        // Database calls stay outside the lock, a lane inside a transaction may be waiting for it.
+        // Insert-or-find is idempotent, so two lanes resolving the same contact agree on the id.
+        ContactEntity contact = new ContactEntity(safeName, safePhone);
+        long id = contactDao.insert(contact);
+        if (id == -1) {
+            id = contactDao.findId(safeName, safePhone);
+        }
+        contact.setId(id);
+        synchronized (contactsById) {
+            contactsById.put(id, contact);
+            contactIdsByKey.put(key, id);
+        }
+        return id;
+    }
 
-                int successCount = 0;
-                for (AlertEntity alert : alerts) {
-                    try {
-                        alertDao.insert(alert);
-                        successCount++;
-                        Log.d(TAG, "✓ Synced alert " + successCount + "/" + alerts.size() + ": " + alert.getAlertType());
-                    } catch (Exception e) {
-                        Log.e(TAG, "✗ Error inserting alert to local DB: " + e.getMessage(), e);
-                        Log.e(TAG, "Failed alert data: Type=" + alert.getAlertType() + ", Time=" + alert.getTimestamp());
+    /**
+     * Fill contact name/phone on alerts read from Room. Must run off the main thread.
+     */
+    private void attachContacts(List<AlertEntity> alerts) {
+        boolean reloaded = false;
+        for (AlertEntity alert : alerts) {
+            long contactId = alert.getContactId();
+            if (contactId == 0) {
+                continue;
+            }
+            ContactEntity contact;
+            synchronized (contactsById) {
+                contact = contactsById.get(contactId);
+            }
+            if (contact == null && !reloaded) {
+                List<ContactEntity> all = contactDao.getAllContacts();
+                synchronized (contactsById) {
+                    for (ContactEntity loaded : all) {
+                        contactsById.put(loaded.getId(), loaded);
+                        contactIdsByKey.put(loaded.getName() + '\n' + loaded.getPhone(), loaded.getId());
                     }
+                    contact = contactsById.get(contactId);
                 }
-
-                Log.d(TAG, "✓ Synced " + successCount + "/" + alerts.size() + " alerts to local database");
-            } catch (Exception e) {
-                Log.e(TAG, "✗ Error syncing to local database: " + e.getMessage(), e);
-                e.printStackTrace();
+                reloaded = true;
             }
-        });
+            if (contact != null) {
+                alert.setContactName(contact.getName());
+                alert.setContactPhone(contact.getPhone());
+            }
+        }
     }
 
     /**
      * Delete a single alert from both Firebase and local database
      */
     public void deleteAlert(AlertEntity alert, RepositoryCallback<Boolean> callback) {
-        executorService.execute(() -> {
+        writeExecutor.execute(() -> {
             try {
                 // Delete from local database
                 alertDao.delete(alert);
 
                 // Delete from Firebase if available
-                if (databaseReference != null && alert.getFirebaseKey() != null) {
-                    databaseReference.child(alert.getFirebaseKey())
-                            .removeValue()
-                            .addOnSuccessListener(aVoid -> {
-                                Log.d(TAG, "Alert deleted from Firebase");
-                                if (callback != null) {
-                                    mainHandler.post(() -> callback.onComplete(true));
-                                }
-                            })
-                            .addOnFailureListener(e -> {
-                                Log.e(TAG, "Failed to delete alert from Firebase", e);
-                                if (callback != null) {
-                                    mainHandler.post(() -> callback.onComplete(false));
-                                }
-                            });
+                String userId = currentUserId;
+                if (userId != null && alert.getFirebaseKey() != null) {
+                    // Remove the node and leave a tombstone so other devices' incremental syncs see the delete
+                    // Queued with other pending writes, the pair is always committed together
+                    Map<String, Object> updates = new HashMap<>();
+                    AlertShards.removeAlert(updates, alert.getFirebaseKey(), alert.getTimestamp());
+                    updates.put(RemoteAlertStore.NODE_TOMBSTONES + "/" + alert.getFirebaseKey(),
+                            remoteStore.serverTimestamp());
+                    writeBatcher.enqueue(userId, updates,
+                            AlertSummary.increments(Collections.singletonList(alert), -1), success -> {
+                        if (success) {
+                            Log.d(TAG, "Alert deleted from Firebase");
+                        } else {
+                            Log.e(TAG, "Failed to delete alert from Firebase");
+                        }
+                        if (callback != null) {
+                            mainHandler.post(() -> callback.onComplete(success));
+                        }
+                    });
                 } else {
                     if (callback != null) {
                         mainHandler.post(() -> callback.onComplete(true));
@@ -435,26 +872,38 @@ public class AlertRepository {
      * Delete all alerts from both Firebase and local database
      */
     public void deleteAllAlerts(RepositoryCallback<Boolean> callback) {
-        executorService.execute(() -> {
+        writeExecutor.execute(() -> {
             try {
-                // Delete from local database
-                alertDao.deleteAll();
+                // Delete from local database, including rolled up history
+                database.runInTransaction(() -> {
+                    alertDao.deleteAll();
+                    summaryDao.deleteAll();
+                });
 
                 // Delete from Firebase if available
-                if (databaseReference != null) {
-                    databaseReference.removeValue()
-                            .addOnSuccessListener(aVoid -> {
-                                Log.d(TAG, "All alerts deleted from Firebase");
-                                if (callback != null) {
-                                    mainHandler.post(() -> callback.onComplete(true));
-                                }
-                            })
-                            .addOnFailureListener(e -> {
-                                Log.e(TAG, "Failed to delete all alerts from Firebase", e);
-                                if (callback != null) {
-                                    mainHandler.post(() -> callback.onComplete(false));
-                                }
-                            });
+                String userId = currentUserId;
+                if (userId != null) {
+                    // Commit queued writes first so none of them lands after the clear
+                    writeBatcher.flush();
+                    // Clear marker tells other devices to drop their local copies on next sync
+                    Map<String, Object> updates = new HashMap<>();
+                    updates.put(RemoteAlertStore.NODE_ALERT_SHARDS, null);
+                    updates.put(RemoteAlertStore.NODE_ALERT_MONTHS, null);
+                    updates.put(RemoteAlertStore.NODE_ALERT_WRITES, null);
+                    updates.put(RemoteAlertStore.NODE_ALERTS, null);
+                    updates.put(RemoteAlertStore.NODE_TOMBSTONES, null);
+                    updates.put(RemoteAlertStore.NODE_SUMMARY, null);
+                    updates.put(RemoteAlertStore.NODE_CLEARED_AT, remoteStore.serverTimestamp());
+                    remoteStore.commit(userId, updates, success -> {
+                        if (success) {
+                            Log.d(TAG, "All alerts deleted from Firebase");
+                        } else {
+                            Log.e(TAG, "Failed to delete all alerts from Firebase");
+                        }
+                        if (callback != null) {
+                            mainHandler.post(() -> callback.onComplete(success));
+                        }
+                    });
                 } else {
                     if (callback != null) {
                         mainHandler.post(() -> callback.onComplete(true));
@@ -472,78 +921,367 @@ public class AlertRepository {
     /**
      * Get alerts within a date range
      */
-    public void getAlertsByDateRange(long startTime, long endTime,
-                                     RepositoryCallback<List<AlertEntity>> callback) {
-        if (databaseReference != null) {
-            Query query = databaseReference
-                    .orderByChild("timestamp")
-                    .startAt(startTime)
-                    .endAt(endTime);
-
-            query.addListenerForSingleValueEvent(new ValueEventListener() {
-                @Override
-                public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                    executorService.execute(() -> {
-                        List<AlertEntity> alerts = new ArrayList<>();
-
-                        for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
-                            AlertEntity alert = snapshot.getValue(AlertEntity.class);
-                            if (alert != null) {
-                                alert.setFirebaseKey(snapshot.getKey());
-                                alerts.add(alert);
-                            }
-                        }
-
-                        Collections.sort(alerts, (a1, a2) ->
-                                Long.compare(a2.getTimestamp(), a1.getTimestamp()));
-
-                        if (callback != null) {
-                            mainHandler.post(() -> callback.onComplete(alerts));
-                        }
-                    });
+    public LoadHandle getAlertsByDateRange(long startTime, long endTime,
+                                           RepositoryCallback<List<AlertEntity>> callback) {
+        LoadHandle handle = new LoadHandle();
+        String userId = currentUserId;
+        if (userId != null) {
+            remoteStore.fetchRange(userId, startTime, endTime, fetched -> {
+                if (fetched == null) {
+                    Log.e(TAG, "Date range query failed");
                 }
+                List<AlertEntity> alerts = fetched != null ? fetched : new ArrayList<>();
+                Collections.sort(alerts, (a1, a2) ->
+                        Long.compare(a2.getTimestamp(), a1.getTimestamp()));
 
-                @Override
-                public void onCancelled(@NonNull DatabaseError databaseError) {
-                    Log.e(TAG, "Query cancelled", databaseError.toException());
-                    if (callback != null) {
-                        mainHandler.post(() -> callback.onComplete(new ArrayList<>()));
-                    }
-                }
+                handle.deliver(mainHandler, callback, alerts);
             });
         } else {
-            if (callback != null) {
-                mainHandler.post(() -> callback.onComplete(new ArrayList<>()));
+            handle.deliver(mainHandler, callback, new ArrayList<>());
+        }
+        return handle;
+    }
+
+    /**
+     * Roll alerts older than the policy cutoff into daily summaries, delete them from
+     * Room in batched transactions and apply the same cutoff to Firebase. Runs on the
+     * sync lane, which is free for other work while remote calls are in flight.
+     *
+     * @return task resolving to the number of local rows compacted
+     */
+    public Task<Integer> compactOldAlerts(RetentionPolicy policy) {
+        long cutoff = policy.getCutoff(System.currentTimeMillis());
+        int batchSize = policy.getBatchSize();
+        // Housekeeping belongs on the low priority sync lane, also so it never overlaps a merge
+        return Tasks.call(syncExecutor, () -> compactLocal(cutoff, batchSize))
+                .onSuccessTask(syncExecutor, compacted -> deleteRemoteOlderThan(cutoff, batchSize)
+                        .continueWith(syncExecutor, remoteDeleted -> {
+                            Log.d(TAG, "✓ Retention run: " + compacted + " local rows compacted, "
+                                    + remoteDeleted.getResult() + " remote nodes removed");
+                            return compacted;
+                        }));
+    }
+
+    private int compactLocal(long cutoff, int batchSize) {
+        int compacted = 0;
+
+        while (true) {
+            List<AlertEntity> batch = alertDao.getAlertsOlderThan(cutoff, batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            database.runInTransaction(() -> rollUpAndDelete(batch));
+            compacted += batch.size();
+            Log.d(TAG, "Compacted batch of " + batch.size() + " alerts");
+
+            if (batch.size() < batchSize) {
+                break;
+            }
+        }
+        return compacted;
+    }
+
+    private void rollUpAndDelete(List<AlertEntity> batch) {
+        Map<String, DailySummaryEntity> buckets = new HashMap<>();
+        List<Integer> ids = new ArrayList<>(batch.size());
+
+        for (AlertEntity alert : batch) {
+            long day = RetentionPolicy.toDay(alert.getTimestamp());
+            String key = day + ":" + alert.getAlertTypeCode();
+            DailySummaryEntity bucket = buckets.get(key);
+            if (bucket == null) {
+                bucket = new DailySummaryEntity();
+                bucket.setDay(day);
+                bucket.setAlertTypeCode(alert.getAlertTypeCode());
+                buckets.put(key, bucket);
             }
+            bucket.add(alert);
+            ids.add(alert.getId());
+        }
+
+        for (DailySummaryEntity bucket : buckets.values()) {
+            bucket.merge(summaryDao.getSummary(bucket.getDay(), bucket.getAlertTypeCode()));
+            summaryDao.insert(bucket);
+        }
+        alertDao.deleteByIds(ids);
+    }
+
+    // Removes aged remote nodes with one multi-path update per batch, resolves to nodes
+    // removed; never fails, an error stops the run and is retried on the next one
+    private Task<Integer> deleteRemoteOlderThan(long cutoff, int batchSize) {
+        String userId = currentUserId;
+        if (userId == null) {
+            return Tasks.forResult(0);
+        }
+
+        AtomicInteger removed = new AtomicInteger();
+        return deleteNextAgedBatch(userId, cutoff, batchSize, removed)
+                .onSuccessTask(syncExecutor, done -> deleteOldTombstones(userId, cutoff, batchSize))
+                .continueWith(syncExecutor, done -> {
+                    if (!done.isSuccessful()) {
+                        Exception e = done.getException();
+                        Log.e(TAG, "✗ Failed to apply retention to Firebase: " + e.getMessage(), e);
+                    }
+                    return removed.get();
+                });
+    }
+
+    private Task<Void> deleteNextAgedBatch(String userId, long cutoff, int batchSize, AtomicInteger removed) {
+        // Whole months past the cutoff come back as one shard path each
+        return this.<RemoteAlertStore.AgedAlerts>remote(callback ->
+                        remoteStore.fetchAgedAlerts(userId, cutoff, batchSize, callback))
+                .onSuccessTask(syncExecutor, aged -> {
+                    Map<String, Object> deletes = new HashMap<>();
+                    for (String path : aged.paths) {
+                        deletes.put(path, null);
+                    }
+                    if (deletes.isEmpty()) {
+                        return Tasks.<Void>forResult(null);
+                    }
+                    for (AlertEntity alert : aged.alerts) {
+                        deletes.put(AlertShards.writeIndexPath(alert.getFirebaseKey()), null);
+                    }
+                    // Counters drop in the same commit, so they never count deleted alerts
+                    for (Map.Entry<String, Long> decrement : AlertSummary.increments(aged.alerts, -1).entrySet()) {
+                        deletes.put(decrement.getKey(), remoteStore.increment(decrement.getValue()));
+                    }
+
+                    return commitOrFail(userId, deletes).onSuccessTask(syncExecutor, committed -> {
+                        removed.addAndGet(aged.paths.size());
+                        return aged.paths.size() < batchSize
+                                ? Tasks.<Void>forResult(null)
+                                : deleteNextAgedBatch(userId, cutoff, batchSize, removed);
+                    });
+                });
+    }
+
+    // Tombstones older than the cutoff can no longer matter to any device's delta
+    private Task<Void> deleteOldTombstones(String userId, long cutoff, int batchSize) {
+        return this.<List<String>>remote(callback ->
+                        remoteStore.fetchTombstoneKeysBefore(userId, cutoff, batchSize, callback))
+                .onSuccessTask(syncExecutor, oldTombstones -> {
+                    Map<String, Object> deletes = new HashMap<>();
+                    for (String key : oldTombstones) {
+                        deletes.put(RemoteAlertStore.NODE_TOMBSTONES + "/" + key, null);
+                    }
+                    return deletes.isEmpty() ? Tasks.<Void>forResult(null) : commitOrFail(userId, deletes);
+                });
+    }
+
+    /**
+     * Recount the remote summary from the alert shards and rewrite it if it drifted
+     * (a lost increment, concurrent retention runs, a last alert that was deleted).
+     * Writes landing during the recount can leave a small drift for the next run.
+     *
+     * @return task resolving to true when the summary was corrected, never fails
+     */
+    public Task<Boolean> repairRemoteSummary() {
+        String userId = currentUserId;
+        if (userId == null) {
+            return Tasks.forResult(false);
         }
+        Task<List<AlertEntity>> alertsTask = remote(callback ->
+                remoteStore.fetchRange(userId, 0, Long.MAX_VALUE, callback));
+        Task<AlertSummary> storedTask = remote(callback -> remoteStore.fetchSummary(userId, callback));
+        return Tasks.whenAll(alertsTask, storedTask)
+                .onSuccessTask(syncExecutor, fetched -> {
+                    AlertSummary stored = storedTask.getResult();
+                    AlertSummary actual = AlertSummary.of(alertsTask.getResult());
+                    if (stored.matches(actual)) {
+                        return Tasks.forResult(false);
+                    }
+                    Log.w(TAG, "Remote summary drifted: " + stored + ", recounted " + actual);
+                    return commitOrFail(userId, Collections.<String, Object>singletonMap(
+                            RemoteAlertStore.NODE_SUMMARY, actual.toMap()))
+                            .onSuccessTask(syncExecutor, committed -> Tasks.forResult(true));
+                })
+                .continueWith(syncExecutor, repaired -> {
+                    if (!repaired.isSuccessful()) {
+                        Exception e = repaired.getException();
+                        Log.e(TAG, "✗ Summary repair failed: " + e.getMessage(), e);
+                        return false;
+                    }
+                    return repaired.getResult();
+                });
+    }
+
+    private Task<Void> commitOrFail(String userId, Map<String, Object> updates) {
+        return this.<Boolean>remote(callback -> remoteStore.commit(userId, updates, callback))
+                .onSuccessTask(syncExecutor, committed -> committed
+                        ? Tasks.<Void>forResult(null)
+                        : Tasks.<Void>forException(new IllegalStateException("Remote commit failed")));
     }
 
     /**
-     * Get count of alerts
+     * A remote store call as a Task, failed when the store reports failure or does not
+     * answer in time. No thread waits while it is in flight, continuations are chained.
      */
-    public void getAlertCount(RepositoryCallback<Integer> callback) {
-        getAllAlerts(alerts -> {
-            if (callback != null) {
-                callback.onComplete(alerts != null ? alerts.size() : 0);
+    private <T> Task<T> remote(RemoteCall<T> call) {
+        TaskCompletionSource<T> source = new TaskCompletionSource<>();
+        Runnable timeout = () -> source.trySetException(new TimeoutException("Remote store call timed out"));
+        mainHandler.postDelayed(timeout, TimeUnit.SECONDS.toMillis(REMOTE_TIMEOUT_SECONDS));
+        call.start(value -> {
+            mainHandler.removeCallbacks(timeout);
+            if (value != null) {
+                source.trySetResult(value);
+            } else {
+                source.trySetException(new IllegalStateException("Remote store call failed"));
             }
         });
+        return source.getTask();
+    }
+
+    private interface RemoteCall<T> {
+        void start(RepositoryCallback<T> callback);
     }
 
     /**
-     * Force sync from Firebase to local database
+     * Full-text prefix search over alert type and contact, best matches first.
+     * An empty query completes with an empty list.
      */
-    public void forceSyncFromFirebase(RepositoryCallback<Boolean> callback) {
-        if (databaseReference != null) {
-            getAlertsFromFirebase(alerts -> {
-                if (callback != null) {
-                    callback.onComplete(true);
+    public LoadHandle searchAlerts(String text, RepositoryCallback<List<AlertEntity>> callback) {
+        LoadHandle handle = new LoadHandle();
+        readExecutor.execute(() -> {
+            // Superseded by a newer query before it got a thread
+            if (handle.isCancelled()) {
+                return;
+            }
+            List<AlertEntity> alerts = new ArrayList<>();
+            String match = AlertSearchResult.toMatchQuery(text);
+
+            if (match != null) {
+                try {
+                    List<AlertSearchResult> results = alertDao.searchAlerts(match);
+                    Map<AlertSearchResult, Double> scores = new HashMap<>();
+                    for (AlertSearchResult result : results) {
+                        scores.put(result, result.score());
+                    }
+                    Collections.sort(results, (r1, r2) -> {
+                        int byScore = Double.compare(scores.get(r2), scores.get(r1));
+                        return byScore != 0 ? byScore
+                                : Long.compare(r2.alert.getTimestamp(), r1.alert.getTimestamp());
+                    });
+                    for (AlertSearchResult result : results) {
+                        alerts.add(result.alert);
+                    }
+                    attachContacts(alerts);
+                } catch (Exception e) {
+                    Log.e(TAG, "✗ Search failed for '" + text + "': " + e.getMessage(), e);
                 }
-            });
-        } else {
-            if (callback != null) {
-                callback.onComplete(false);
             }
+
+            handle.deliver(mainHandler, callback, alerts);
+        });
+        return handle;
+    }
+
+    /**
+     * Get local alerts within radiusMeters of a point, using the geohash index
+     */
+    public LoadHandle getAlertsWithinRadius(double latitude, double longitude, double radiusMeters,
+                                            RepositoryCallback<List<AlertEntity>> callback) {
+        return runSpatialQuery(() -> AlertSpatialQuery.withinRadius(alertDao, latitude, longitude, radiusMeters),
+                callback);
+    }
+
+    /**
+     * Get local alerts inside a map viewport, using the geohash index
+     */
+    public LoadHandle getAlertsInBounds(double minLatitude, double minLongitude,
+                                        double maxLatitude, double maxLongitude,
+                                        RepositoryCallback<List<AlertEntity>> callback) {
+        return runSpatialQuery(() -> AlertSpatialQuery.inBounds(alertDao,
+                minLatitude, minLongitude, maxLatitude, maxLongitude), callback);
+    }
+
+    private LoadHandle runSpatialQuery(Callable<List<AlertEntity>> query,
+                                       RepositoryCallback<List<AlertEntity>> callback) {
+        LoadHandle handle = new LoadHandle();
+        readExecutor.execute(() -> {
+            if (handle.isCancelled()) {
+                return;
+            }
+            List<AlertEntity> alerts;
+            try {
+                alerts = query.call();
+                attachContacts(alerts);
+                Collections.sort(alerts, (a1, a2) ->
+                        Long.compare(a2.getTimestamp(), a1.getTimestamp()));
+            } catch (Exception e) {
+                Log.e(TAG, "✗ Spatial query failed: " + e.getMessage(), e);
+                alerts = new ArrayList<>();
+            }
+
+            handle.deliver(mainHandler, callback, alerts);
+        });
+        return handle;
+    }
+
+    /**
+     * Alert totals without loading the history: the remote summary when signed in,
+     * otherwise (or when it cannot be read) counted from the local database
+     */
+    public LoadHandle getAlertSummary(RepositoryCallback<AlertSummary> callback) {
+        LoadHandle handle = new LoadHandle();
+        String userId = currentUserId;
+        if (userId == null) {
+            summarizeLocal(handle, callback);
+            return handle;
         }
+        remoteStore.fetchSummary(userId, summary -> {
+            if (summary != null) {
+                handle.deliver(mainHandler, callback, summary);
+            } else {
+                summarizeLocal(handle, callback);
+            }
+        });
+        return handle;
+    }
+
+    private void summarizeLocal(LoadHandle handle, RepositoryCallback<AlertSummary> callback) {
+        readExecutor.execute(() -> {
+            if (handle.isCancelled()) {
+                return;
+            }
+            List<AlertEntity> alerts;
+            try {
+                alerts = alertDao.getAllAlerts();
+            } catch (Exception e) {
+                Log.e(TAG, "✗ Error counting local alerts: " + e.getMessage(), e);
+                alerts = new ArrayList<>();
+            }
+            handle.deliver(mainHandler, callback, AlertSummary.of(alerts));
+        });
+    }
+
+    /**
+     * Get count of alerts, read from the summary
+     */
+    public LoadHandle getAlertCount(RepositoryCallback<Integer> callback) {
+        return getAlertSummary(summary -> {
+            if (callback != null) {
+                callback.onComplete((int) summary.total);
+            }
+        });
+    }
+
+    /**
+     * Sync remote changes since the last sync into the local database
+     */
+    public LoadHandle forceSyncFromFirebase(RepositoryCallback<Boolean> callback) {
+        return syncFromFirebase(callback);
+    }
+
+    /**
+     * Queue depth and wait time of the write, read and sync lanes
+     */
+    public List<MeteredExecutor.Stats> getExecutorStats() {
+        List<MeteredExecutor.Stats> stats = new ArrayList<>(3);
+        stats.add(writeExecutor.getStats());
+        stats.add(readExecutor.getStats());
+        stats.add(syncExecutor.getStats());
+        return stats;
     }
 
     /**
@@ -553,15 +1291,20 @@ public class AlertRepository {
         void onComplete(T result);
     }
 
+    /**
+     * Granular realtime changes, delivered on the main thread after Room is updated
+     */
+    public interface AlertChangeListener {
+        void onAlertAdded(AlertEntity alert);
+        void onAlertChanged(AlertEntity alert);
+        void onAlertRemoved(String firebaseKey);
+    }
+
     /**
      * Clean up resources
      */
     public void cleanup() {
-        // if (executorService != null && !executorService.isShutdown()) {
-           // executorService.shutdown();
-        //}
-
-         Log.d(TAG, "Cleanup called (executor remains active for singleton)");
+         Log.d(TAG, "Cleanup called (executor lanes remain active for singleton)");
     }
 
     //initializes firebase reference
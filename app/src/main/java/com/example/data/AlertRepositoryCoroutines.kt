@@ -0,0 +1,93 @@
+package com.example.data
+
+import androidx.lifecycle.Observer
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.channels.awaitClose
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.callbackFlow
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.suspendCancellableCoroutine
+import kotlinx.coroutines.tasks.await
+import kotlin.coroutines.resume
+
+// Suspend and Flow views of AlertRepository for coroutine callers. Cancelling the calling
+// coroutine (e.g. a lifecycleScope being torn down) cancels the underlying LoadHandle,
+// so a stale load stops before its query runs and never delivers. Housekeeping returns
+// Tasks, awaited without blocking a thread.
+
+/**
+ * Incremental sync, joining one already in flight. True when the delta was applied.
+ */
+suspend fun AlertRepository.sync(): Boolean =
+    awaitLoad { callback -> forceSyncFromFirebase(callback) }
+
+/**
+ * Whole history, newest first, see AlertRepository.getAllAlerts
+ */
+suspend fun AlertRepository.loadAlerts(): List<AlertEntity> =
+    awaitLoad { callback -> getAllAlerts(callback) }
+
+suspend fun AlertRepository.search(text: String): List<AlertEntity> =
+    awaitLoad { callback -> searchAlerts(text, callback) }
+
+suspend fun AlertRepository.loadAlertsByDateRange(startTime: Long, endTime: Long): List<AlertEntity> =
+    awaitLoad { callback -> getAlertsByDateRange(startTime, endTime, callback) }
+
+/**
+ * Retention run, see AlertRepository.compactOldAlerts. Number of local rows compacted.
+ */
+suspend fun AlertRepository.compact(policy: RetentionPolicy): Int =
+    compactOldAlerts(policy).await()
+
+/**
+ * True when the remote summary had drifted and was rewritten
+ */
+suspend fun AlertRepository.repairSummary(): Boolean =
+    repairRemoteSummary().await()
+
+/**
+ * Local history, re-emitted whenever alert_history changes. Observes on the main
+ * thread, collection can happen anywhere.
+ */
+fun AlertRepository.alerts(): Flow<List<AlertEntity>> = callbackFlow {
+    val liveData = observeAllAlerts()
+    val observer = Observer<List<AlertEntity>> { trySend(it) }
+    liveData.observeForever(observer)
+    awaitClose { liveData.removeObserver(observer) }
+}.flowOn(Dispatchers.Main.immediate)
+
+/**
+ * Realtime changes, already written to Room. Collecting starts realtime updates,
+ * cancelling the collector stops them.
+ */
+fun AlertRepository.alertChanges(): Flow<AlertChange> = callbackFlow {
+    val listener = object : AlertRepository.AlertChangeListener {
+        override fun onAlertAdded(alert: AlertEntity) {
+            trySend(AlertChange.Added(alert))
+        }
+
+        override fun onAlertChanged(alert: AlertEntity) {
+            trySend(AlertChange.Changed(alert))
+        }
+
+        override fun onAlertRemoved(firebaseKey: String) {
+            trySend(AlertChange.Removed(firebaseKey))
+        }
+    }
+    startRealtimeUpdates(listener)
+    awaitClose { stopRealtimeUpdates(listener) }
+}.flowOn(Dispatchers.Main.immediate)
+
+sealed class AlertChange {
+    data class Added(val alert: AlertEntity) : AlertChange()
+    data class Changed(val alert: AlertEntity) : AlertChange()
+    data class Removed(val firebaseKey: String) : AlertChange()
+}
+
+// Suspends on the repository callback itself, no thread is parked while waiting
+private suspend inline fun <T> awaitLoad(
+    crossinline start: (AlertRepository.RepositoryCallback<T>) -> LoadHandle
+): T = suspendCancellableCoroutine { continuation ->
+    val handle = start(AlertRepository.RepositoryCallback { result -> continuation.resume(result) })
+    continuation.invokeOnCancellation { handle.cancel() }
+}
@@ -0,0 +1,77 @@
+package com.example.data;
+
+import android.app.Application;
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.google.android.gms.tasks.Tasks;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Daily background job that applies the alert RetentionPolicy locally and remotely,
+ * then repairs drift in the remote alert summary.
+ */
+public class AlertRetentionWorker extends Worker {
+    private static final String TAG = "AlertRetentionWorker";
+    private static final String WORK_NAME = "alert_retention";
+    public static final String KEY_ROWS_COMPACTED = "rows_compacted";
+    public static final String KEY_SUMMARY_REPAIRED = "summary_repaired";
+
+    public AlertRetentionWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Schedule the daily retention run, keeping an already scheduled one.
+     */
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresBatteryNotLow(true)
+                .setRequiresDeviceIdle(true)
+                .build();
+
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(
+                AlertRetentionWorker.class, 1, TimeUnit.DAYS)
+                .setConstraints(constraints)
+                .build();
+
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+                WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        try {
+            RetentionPolicy policy = RetentionPolicy.fromPreferences(getApplicationContext());
+            AlertRepository repository =
+                    AlertRepository.getInstance((Application) getApplicationContext());
+
+            // Waits on the worker's own thread, the repository lanes stay free meanwhile
+            int compacted = Tasks.await(repository.compactOldAlerts(policy));
+            Log.d(TAG, "✓ Retention (" + policy.getRetentionDays() + " days) compacted "
+                    + compacted + " alerts");
+
+            // Two devices running retention at once both decrement, so recount after it
+            boolean repaired = Tasks.await(repository.repairRemoteSummary());
+
+            return Result.success(new Data.Builder()
+                    .putInt(KEY_ROWS_COMPACTED, compacted)
+                    .putBoolean(KEY_SUMMARY_REPAIRED, repaired)
+                    .build());
+        } catch (Exception e) {
+            Log.e(TAG, "✗ Retention run failed: " + e.getMessage(), e);
+            return Result.retry();
+        }
+    }
+}
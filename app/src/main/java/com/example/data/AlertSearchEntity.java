@@ -0,0 +1,56 @@
+package com.example.data;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.PrimaryKey;
+
+/**
+ * Full-text index over alert_history. The rowid is the alert id; rows are kept in
+ * sync by triggers on alert_history (see AlertDatabase.createSearchTriggers) because
+ * the type label and contact fields are not stored on the alert row itself.
+ */
+@Fts4
+@Entity(tableName = "alert_search")
+public class AlertSearchEntity {
+
+    @PrimaryKey
+    @ColumnInfo(name = "rowid")
+    private int rowId;
+
+    private String alertType;
+    private String contactName;
+    private String contactPhone;
+
+    public int getRowId() {
+        return rowId;
+    }
+
+    public void setRowId(int rowId) {
+        this.rowId = rowId;
+    }
+
+    public String getAlertType() {
+        return alertType;
+    }
+
+    public void setAlertType(String alertType) {
+        this.alertType = alertType;
+    }
+
+    public String getContactName() {
+        return contactName;
+    }
+
+    public void setContactName(String contactName) {
+        this.contactName = contactName;
+    }
+
+    public String getContactPhone() {
+        return contactPhone;
+    }
+
+    public void setContactPhone(String contactPhone) {
+        this.contactPhone = contactPhone;
+    }
+}
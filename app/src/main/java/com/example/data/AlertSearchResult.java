@@ -0,0 +1,74 @@
+package com.example.data;
+
+import androidx.room.Embedded;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+
+/**
+ * An alert matched by full-text search with its relevance score.
+ */
+public class AlertSearchResult {
+
+    // Relative weight of each alert_search column: alertType, contactName, contactPhone
+    private static final double[] COLUMN_WEIGHTS = {1.0, 2.0, 1.0};
+
+    @Embedded
+    public AlertEntity alert;
+
+    // Raw matchinfo(alert_search, 'pcx') blob
+    public byte[] matchInfo;
+
+    /**
+     * Term-frequency score from matchinfo, the same weighting as the rank function in
+     * the SQLite FTS4 documentation: each phrase hit in a column counts in proportion
+     * to how rare that phrase is in that column across all rows.
+     */
+    public double score() {
+        if (matchInfo == null || matchInfo.length < 8) {
+            return 0;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder());
+        int phrases = buffer.getInt(0);
+        int columns = buffer.getInt(4);
+        double score = 0;
+
+        for (int phrase = 0; phrase < phrases; phrase++) {
+            for (int column = 0; column < columns; column++) {
+                int offset = 4 * (2 + 3 * (phrase * columns + column));
+                int hitsThisRow = buffer.getInt(offset);
+                int hitsAllRows = buffer.getInt(offset + 4);
+                if (hitsThisRow > 0 && hitsAllRows > 0) {
+                    double weight = column < COLUMN_WEIGHTS.length ? COLUMN_WEIGHTS[column] : 1.0;
+                    score += weight * hitsThisRow / hitsAllRows;
+                }
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Turn free text into an FTS prefix query: every word must match the start of a
+     * token, so "jo 0712" finds "John" with phone "0712...".
+     */
+    public static String toMatchQuery(String text) {
+        if (text == null) {
+            return null;
+        }
+
+        StringBuilder match = new StringBuilder();
+        for (String token : text.trim().split("[^\\p{L}\\p{N}]+")) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            // Lower case so words like "or" are never read as FTS operators
+            match.append(token.toLowerCase(Locale.ROOT)).append('*');
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
+}
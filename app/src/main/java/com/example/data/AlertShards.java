@@ -0,0 +1,117 @@
+package com.example.data;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Month sharded layout of the remote alert history. Each alert lives under
+ * alerts_by_month/{yyyyMM}/{key}, the month taken in UTC from the alert timestamp, and
+ * alert_months/{yyyyMM} lists the months that hold alerts so readers can find shards
+ * without downloading them. alert_writes/{key} records when the server last wrote each
+ * alert, and in which month shard, so devices sync by write time: an alert uploaded late
+ * (queued offline, or unsynced until a login) keeps its old timestamp and month but is
+ * still newer than every watermark. Paths are relative to the user's node.
+ */
+final class AlertShards {
+
+    // Children of a write index entry; "at" is indexed in database.rules.json
+    static final String FIELD_WRITTEN_AT = "at";
+    static final String FIELD_MONTH = "month";
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    // Firebase push keys start with their creation time, 8 characters of this alphabet
+    private static final String PUSH_CHARS =
+            "-0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz";
+    private static final int PUSH_TIME_CHARS = 8;
+
+    private AlertShards() {
+    }
+
+    static String monthOf(long timestamp) {
+        return monthKey(monthIndex(timestamp));
+    }
+
+    static String alertPath(String firebaseKey, long timestamp) {
+        return RemoteAlertStore.NODE_ALERT_SHARDS + "/" + monthOf(timestamp) + "/" + firebaseKey;
+    }
+
+    static String shardPath(String month) {
+        return RemoteAlertStore.NODE_ALERT_SHARDS + "/" + month;
+    }
+
+    static String monthIndexPath(String month) {
+        return RemoteAlertStore.NODE_ALERT_MONTHS + "/" + month;
+    }
+
+    static String writeIndexPath(String firebaseKey) {
+        return RemoteAlertStore.NODE_ALERT_WRITES + "/" + firebaseKey;
+    }
+
+    /**
+     * Add the writes for one alert node, its month to the month index and its entry in
+     * the write index to a multi-path update. writtenAt is the store's server timestamp
+     * placeholder, stored on the node as syncedAt and in the write index.
+     */
+    static void putAlert(Map<String, Object> updates, String firebaseKey, AlertEntity alert, Object writtenAt) {
+        String month = monthOf(alert.getTimestamp());
+        Map<String, Object> node = AlertMapper.toMap(alert);
+        node.put(AlertMapper.FIELD_SYNCED_AT, writtenAt);
+        updates.put(alertPath(firebaseKey, alert.getTimestamp()), node);
+        updates.put(monthIndexPath(month), true);
+
+        Map<String, Object> written = new HashMap<>(4);
+        written.put(FIELD_WRITTEN_AT, writtenAt);
+        written.put(FIELD_MONTH, month);
+        updates.put(writeIndexPath(firebaseKey), written);
+    }
+
+    /**
+     * Add the deletes for one alert node and its write index entry to a multi-path update
+     */
+    static void removeAlert(Map<String, Object> updates, String firebaseKey, long timestamp) {
+        updates.put(alertPath(firebaseKey, timestamp), null);
+        updates.put(writeIndexPath(firebaseKey), null);
+    }
+
+    /**
+     * Months from the one holding startTime to the one holding endTime, inclusive
+     */
+    static List<String> monthsBetween(long startTime, long endTime) {
+        List<String> months = new ArrayList<>();
+        for (int index = monthIndex(startTime); index <= monthIndex(endTime); index++) {
+            months.add(monthKey(index));
+        }
+        return months;
+    }
+
+    /**
+     * Lowest push key created at time or later. An alert's key is created when it is
+     * uploaded, never before it happened, so a shard read can start at the key of the
+     * oldest alert wanted instead of downloading the whole month.
+     */
+    static String firstKeyAt(long time) {
+        char[] prefix = new char[PUSH_TIME_CHARS];
+        long remaining = Math.max(time, 0);
+        for (int i = PUSH_TIME_CHARS - 1; i >= 0; i--) {
+            prefix[i] = PUSH_CHARS.charAt((int) (remaining % PUSH_CHARS.length()));
+            remaining /= PUSH_CHARS.length();
+        }
+        return new String(prefix);
+    }
+
+    // Months since year 0, so consecutive months differ by one
+    private static int monthIndex(long timestamp) {
+        Calendar calendar = Calendar.getInstance(UTC, Locale.US);
+        calendar.setTimeInMillis(timestamp);
+        return calendar.get(Calendar.YEAR) * 12 + calendar.get(Calendar.MONTH);
+    }
+
+    private static String monthKey(int monthIndex) {
+        return String.format(Locale.US, "%04d%02d", monthIndex / 12, monthIndex % 12 + 1);
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Radius and bounding box lookups over alert_history using the geohash index.
+ * Blocking, call off the main thread.
+ */
+final class AlertSpatialQuery {
+    private static final double EARTH_RADIUS_METERS = 6_371_000;
+    private static final double METERS_PER_DEGREE_LAT = 111_320;
+    private static final double E7 = 1e7;
+
+    // Upper bound on prefix range scans issued per lookup
+    static final int MAX_CELLS = 16;
+
+    private AlertSpatialQuery() {
+    }
+
+    static List<AlertEntity> inBounds(AlertDao dao, double minLat, double minLon,
+                                      double maxLat, double maxLon) {
+        int minLatE7 = (int) Math.floor(minLat * E7);
+        int maxLatE7 = (int) Math.ceil(maxLat * E7);
+        int minLonE7 = (int) Math.floor(minLon * E7);
+        int maxLonE7 = (int) Math.ceil(maxLon * E7);
+
+        List<AlertEntity> results = new ArrayList<>();
+        for (String prefix : GeoHash.coveringCells(minLat, minLon, maxLat, maxLon, MAX_CELLS)) {
+            results.addAll(dao.getAlertsInGeohashRange(prefix, prefix + GeoHash.PREFIX_END,
+                    minLatE7, maxLatE7, minLonE7, maxLonE7));
+        }
+        return results;
+    }
+
+    static List<AlertEntity> withinRadius(AlertDao dao, double latitude, double longitude,
+                                          double radiusMeters) {
+        double latDelta = radiusMeters / METERS_PER_DEGREE_LAT;
+        double lonDelta = radiusMeters
+                / (METERS_PER_DEGREE_LAT * Math.max(0.01, Math.cos(Math.toRadians(latitude))));
+
+        List<AlertEntity> candidates = inBounds(dao,
+                Math.max(-90, latitude - latDelta), Math.max(-180, longitude - lonDelta),
+                Math.min(90, latitude + latDelta), Math.min(180, longitude + lonDelta));
+
+        // The box over-selects its corners, trim to the circle
+        List<AlertEntity> results = new ArrayList<>(candidates.size());
+        for (AlertEntity alert : candidates) {
+            if (distanceMeters(latitude, longitude,
+                    alert.getLatitudeDegrees(), alert.getLongitudeDegrees()) <= radiusMeters) {
+                results.add(alert);
+            }
+        }
+        return results;
+    }
+
+    static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
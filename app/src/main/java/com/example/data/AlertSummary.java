@@ -0,0 +1,128 @@
+package com.example.data;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-user totals kept remotely next to the alert shards, at alert_summary: total count,
+ * count per AlertType and the newest alert timestamp. Counts move with atomic increments
+ * committed together with the alert writes. lastAlertAt is only ever raised, so after a
+ * delete it can name a removed alert until the next repair.
+ */
+public final class AlertSummary {
+
+    // Children of the summary node
+    static final String FIELD_TOTAL = "total";
+    static final String FIELD_BY_TYPE = "by_type";
+    static final String FIELD_LAST_ALERT_AT = "last_alert_at";
+
+    public final long total;
+    public final Map<AlertType, Long> countsByType;
+    // 0 when there are no alerts
+    public final long lastAlertAt;
+
+    public AlertSummary(long total, Map<AlertType, Long> countsByType, long lastAlertAt) {
+        this.total = total;
+        this.countsByType = countsByType;
+        this.lastAlertAt = lastAlertAt;
+    }
+
+    public long getCount(AlertType type) {
+        Long count = countsByType.get(type);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Summary computed from a complete list of alerts
+     */
+    static AlertSummary of(List<AlertEntity> alerts) {
+        Map<AlertType, Long> counts = new EnumMap<>(AlertType.class);
+        long lastAlertAt = 0;
+        for (AlertEntity alert : alerts) {
+            Long count = counts.get(alert.getType());
+            counts.put(alert.getType(), count != null ? count + 1 : 1);
+            lastAlertAt = Math.max(lastAlertAt, alert.getTimestamp());
+        }
+        return new AlertSummary(alerts.size(), counts, lastAlertAt);
+    }
+
+    /**
+     * Counter paths, relative to the user's node, and how much adding (sign 1) or
+     * removing (sign -1) the alerts changes them
+     */
+    static Map<String, Long> increments(List<AlertEntity> alerts, int sign) {
+        Map<String, Long> increments = new LinkedHashMap<>();
+        for (AlertEntity alert : alerts) {
+            add(increments, RemoteAlertStore.NODE_SUMMARY + "/" + FIELD_TOTAL, sign);
+            add(increments, RemoteAlertStore.NODE_SUMMARY + "/" + FIELD_BY_TYPE + "/"
+                    + alert.getType().name(), sign);
+        }
+        return increments;
+    }
+
+    private static void add(Map<String, Long> increments, String path, long delta) {
+        Long current = increments.get(path);
+        increments.put(path, current != null ? current + delta : delta);
+    }
+
+    Map<String, Object> toMap() {
+        Map<String, Object> byType = new HashMap<>();
+        for (Map.Entry<AlertType, Long> count : countsByType.entrySet()) {
+            if (count.getValue() != 0) {
+                byType.put(count.getKey().name(), count.getValue());
+            }
+        }
+        Map<String, Object> map = new HashMap<>();
+        map.put(FIELD_TOTAL, total);
+        map.put(FIELD_BY_TYPE, byType);
+        map.put(FIELD_LAST_ALERT_AT, lastAlertAt);
+        return map;
+    }
+
+    /**
+     * Parse the summary node, null (no node yet) reads as an empty summary
+     */
+    static AlertSummary fromMap(Map<?, ?> map) {
+        Map<AlertType, Long> counts = new EnumMap<>(AlertType.class);
+        if (map == null) {
+            return new AlertSummary(0, counts, 0);
+        }
+        Object byType = map.get(FIELD_BY_TYPE);
+        if (byType instanceof Map) {
+            for (AlertType type : AlertType.values()) {
+                Object count = ((Map<?, ?>) byType).get(type.name());
+                if (count != null) {
+                    counts.put(type, asLong(count));
+                }
+            }
+        }
+        return new AlertSummary(asLong(map.get(FIELD_TOTAL)), counts, asLong(map.get(FIELD_LAST_ALERT_AT)));
+    }
+
+    /**
+     * True when both hold the same counts and last alert time, zero counts ignored
+     */
+    boolean matches(AlertSummary other) {
+        if (total != other.total || lastAlertAt != other.lastAlertAt) {
+            return false;
+        }
+        for (AlertType type : AlertType.values()) {
+            if (getCount(type) != other.getCount(type)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long asLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "AlertSummary{total=" + total + ", byType=" + countsByType + ", lastAlertAt=" + lastAlertAt + "}";
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.data;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface AlertSummaryDao {
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(DailySummaryEntity summary);
+
+    @Query("SELECT * FROM alert_daily_summary WHERE day = :day AND alertTypeCode = :alertTypeCode")
+    DailySummaryEntity getSummary(long day, int alertTypeCode);
+
+    @Query("SELECT * FROM alert_daily_summary ORDER BY day DESC")
+    List<DailySummaryEntity> getAllSummaries();
+
+    @Query("DELETE FROM alert_daily_summary")
+    void deleteAll();
+}
@@ -0,0 +1,51 @@
+package com.example.data;
+
+/**
+ * Alert types raised by the detection service. Stored in Room as a stable integer
+ * code and sent to Firebase as the human readable label.
+ */
+public enum AlertType {
+    EMERGENCY(0, "EMERGENCY"),
+    SILENT_EMERGENCY(1, "SILENT EMERGENCY"),
+    POLICE_NEEDED(2, "POLICE NEEDED"),
+    MEDICAL_EMERGENCY(3, "MEDICAL EMERGENCY"),
+    PANIC_ALERT(4, "PANIC ALERT");
+
+    private static final AlertType[] BY_CODE = values();
+
+    private final int code;
+    private final String label;
+
+    AlertType(int code, String label) {
+        this.code = code;
+        this.label = label;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    // Codes are persisted, never reorder or reuse them
+    public static AlertType fromCode(int code) {
+        if (code >= 0 && code < BY_CODE.length) {
+            return BY_CODE[code];
+        }
+        return EMERGENCY;
+    }
+
+    // Unknown or legacy labels fall back to the generic emergency type
+    public static AlertType fromLabel(String label) {
+        if (label != null) {
+            for (AlertType type : BY_CODE) {
+                if (type.label.equals(label)) {
+                    return type;
+                }
+            }
+        }
+        return EMERGENCY;
+    }
+}
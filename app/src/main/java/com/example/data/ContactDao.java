@@ -0,0 +1,22 @@
+package com.example.data;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface ContactDao {
+
+    // Returns -1 when the (name, phone) pair already exists
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long insert(ContactEntity contact);
+
+    @Query("SELECT id FROM contacts WHERE name = :name AND phone = :phone LIMIT 1")
+    long findId(String name, String phone);
+
+    @Query("SELECT * FROM contacts")
+    List<ContactEntity> getAllContacts();
+}
@@ -0,0 +1,58 @@
+package com.example.data;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Emergency contact referenced by alert_history rows, so name and phone are
+ * stored once instead of on every alert.
+ */
+@Entity(tableName = "contacts", indices = {@Index(value = {"name", "phone"}, unique = true)})
+public class ContactEntity {
+
+    @PrimaryKey(autoGenerate = true)
+    private long id;
+
+    @NonNull
+    private String name = "";
+
+    @NonNull
+    private String phone = "";
+
+    public ContactEntity() {
+        // Default constructor required by Room
+    }
+
+    public ContactEntity(String name, String phone) {
+        this.name = name != null ? name : "";
+        this.phone = phone != null ? phone : "";
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    public void setName(@NonNull String name) {
+        this.name = name;
+    }
+
+    @NonNull
+    public String getPhone() {
+        return phone;
+    }
+
+    public void setPhone(@NonNull String phone) {
+        this.phone = phone;
+    }
+}
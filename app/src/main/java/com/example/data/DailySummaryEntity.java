@@ -0,0 +1,100 @@
+package com.example.data;
+
+import androidx.room.Entity;
+
+/**
+ * Per day, per alert type roll-up of alerts that aged out of alert_history.
+ */
+@Entity(tableName = "alert_daily_summary", primaryKeys = {"day", "alertTypeCode"})
+public class DailySummaryEntity {
+
+    // UTC day number, see RetentionPolicy.toDay
+    private long day;
+    private int alertTypeCode;
+    private int alertCount;
+    private int locationCount;
+    private long firstTimestamp;
+    private long lastTimestamp;
+
+    public DailySummaryEntity() {
+        // Default constructor required by Room
+    }
+
+    public long getDay() {
+        return day;
+    }
+
+    public void setDay(long day) {
+        this.day = day;
+    }
+
+    public int getAlertTypeCode() {
+        return alertTypeCode;
+    }
+
+    public void setAlertTypeCode(int alertTypeCode) {
+        this.alertTypeCode = alertTypeCode;
+    }
+
+    public int getAlertCount() {
+        return alertCount;
+    }
+
+    public void setAlertCount(int alertCount) {
+        this.alertCount = alertCount;
+    }
+
+    public int getLocationCount() {
+        return locationCount;
+    }
+
+    public void setLocationCount(int locationCount) {
+        this.locationCount = locationCount;
+    }
+
+    public long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    public void setFirstTimestamp(long firstTimestamp) {
+        this.firstTimestamp = firstTimestamp;
+    }
+
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    public void setLastTimestamp(long lastTimestamp) {
+        this.lastTimestamp = lastTimestamp;
+    }
+
+    // Fold one raw alert into this bucket
+    public void add(AlertEntity alert) {
+        if (alertCount == 0 || alert.getTimestamp() < firstTimestamp) {
+            firstTimestamp = alert.getTimestamp();
+        }
+        if (alertCount == 0 || alert.getTimestamp() > lastTimestamp) {
+            lastTimestamp = alert.getTimestamp();
+        }
+        alertCount++;
+        if (alert.isLocationAvailable()) {
+            locationCount++;
+        }
+    }
+
+    // Fold an existing stored bucket for the same day and type into this one
+    public void merge(DailySummaryEntity other) {
+        if (other == null || other.alertCount == 0) {
+            return;
+        }
+        if (alertCount == 0) {
+            firstTimestamp = other.firstTimestamp;
+            lastTimestamp = other.lastTimestamp;
+        } else {
+            firstTimestamp = Math.min(firstTimestamp, other.firstTimestamp);
+            lastTimestamp = Math.max(lastTimestamp, other.lastTimestamp);
+        }
+        alertCount += other.alertCount;
+        locationCount += other.locationCount;
+    }
+}
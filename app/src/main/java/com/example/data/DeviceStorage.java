@@ -0,0 +1,44 @@
+package com.example.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.UserManager;
+import android.util.Log;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Preferences the detection service needs before the first unlock after a reboot,
+ * kept in device protected storage. Files an older version wrote to credential
+ * storage are moved over the first time they are opened while the user is unlocked.
+ */
+public final class DeviceStorage {
+
+    private static final String TAG = "DeviceStorage";
+
+    private static final Set<String> moved = new HashSet<>();
+
+    private DeviceStorage() {
+    }
+
+    public static synchronized SharedPreferences preferences(Context context, String name) {
+        Context deviceContext = context.createDeviceProtectedStorageContext();
+        if (!moved.contains(name) && isUserUnlocked(context)) {
+            if (!deviceContext.moveSharedPreferencesFrom(context, name)) {
+                Log.w(TAG, "✗ Could not move " + name + " to device protected storage");
+            }
+            moved.add(name);
+        }
+        return deviceContext.getSharedPreferences(name, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * False between a reboot and the first unlock, credential storage (Room, Firebase,
+     * WorkManager) can't be used then
+     */
+    public static boolean isUserUnlocked(Context context) {
+        UserManager userManager = context.getSystemService(UserManager.class);
+        return userManager == null || userManager.isUserUnlocked();
+    }
+}
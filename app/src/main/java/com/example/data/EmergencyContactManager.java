@@ -6,29 +6,34 @@ import android.util.Log;
 
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
-
-import androidx.annotation.NonNull;
 
 public class EmergencyContactManager {
     private static final String TAG = "EmergencyContactManager";
-    private static final String PREFS_NAME = "EmergencyContactPrefs";
-    private static final String KEY_CONTACT_NAME = "emergency_contact_name";
-    private static final String KEY_CONTACT_PHONE = "emergency_contact_phone";
-    private static final String KEY_EMERGENCY_MESSAGE = "emergency_message";
-    private static final String DEFAULT_MESSAGE = "🚨 EMERGENCY! I need help! Please check on me immediately.";
+    static final String PREFS_NAME = "EmergencyContactPrefs";
+    static final String KEY_CONTACT_NAME = "emergency_contact_name";
+    static final String KEY_CONTACT_PHONE = "emergency_contact_phone";
+    static final String KEY_EMERGENCY_MESSAGE = "emergency_message";
+    // Version stamp and age of the cached remote profile
+    private static final String KEY_PROFILE_USER = "profile_user";
+    private static final String KEY_PROFILE_VERSION = "profile_version";
+    private static final String KEY_PROFILE_FETCHED_AT = "profile_fetched_at";
+    // A cached profile younger than this is used without asking Firebase
+    private static final long PROFILE_CACHE_TTL_MS = 60 * 60 * 1000;
+    static final String DEFAULT_MESSAGE = "🚨 EMERGENCY! I need help! Please check on me immediately.";
 
     private final SharedPreferences prefs;
     private final FirebaseAuth firebaseAuth;
-    private DatabaseReference databaseReference;
+    private final RemoteProfileStore remoteStore;
+    private final ProfileWriteCoalescer profileWrites;
+    // Null when signed out, remote sync is then disabled
+    private String userId;
 
     public EmergencyContactManager(Context context) {
-        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        // Device protected, the detection service reads the contact before the first unlock
+        prefs = DeviceStorage.preferences(context, PREFS_NAME);
         firebaseAuth = FirebaseAuth.getInstance();
+        remoteStore = RemoteStores.profiles();
+        profileWrites = ProfileWriteCoalescer.get(context);
         initializeFirebaseReference();
     }
 
@@ -36,22 +41,11 @@ public class EmergencyContactManager {
         FirebaseUser currentUser = firebaseAuth.getCurrentUser();
 
         if (currentUser != null) {
-            String userId = currentUser.getUid();
-            String databaseUrl = "https://sentinel-7b6b4-default-rtdb.asia-southeast1.firebasedatabase.app";
-
-            try {
-                FirebaseDatabase database = FirebaseDatabase.getInstance(databaseUrl);
-                databaseReference = database.getReference("users")
-                        .child(userId)
-                        .child("emergency_contact");
-
-                Log.d(TAG, "Firebase reference initialized for user: " + userId);
-            } catch (Exception e) {
-                Log.e(TAG, "Error initializing Firebase: " + e.getMessage(), e);
-                databaseReference = null;
-            }
+            userId = currentUser.getUid();
+            profileWrites.retainUser(userId);
+            Log.d(TAG, "Remote profile initialized for user: " + userId);
         } else {
-            databaseReference = null;
+            userId = null;
             Log.w(TAG, "No user logged in, Firebase sync disabled");
         }
     }
@@ -70,94 +64,136 @@ public class EmergencyContactManager {
     }
 
     private void syncContactToFirebase(String name, String phoneNumber) {
-        if (databaseReference != null) {
-            EmergencyContact contact = new EmergencyContact(name, phoneNumber);
-
-            databaseReference.setValue(contact)
-                    .addOnSuccessListener(aVoid ->
-                            Log.d(TAG, "✓ Contact synced to Firebase"))
-                    .addOnFailureListener(e ->
-                            Log.e(TAG, "✗ Failed to sync contact to Firebase: " + e.getMessage(), e));
+        if (userId != null) {
+            // Merged with other edits made shortly after into one remote write
+            profileWrites.setContact(userId, new EmergencyContact(name, phoneNumber));
+            Log.d(TAG, "Contact queued for Firebase");
         } else {
             Log.w(TAG, "Firebase not initialized, contact saved locally only");
         }
     }
 
     /**
-     * Loads contact from Firebase and syncs with local storage.
-     * If Firebase has data, it updates local storage.
-     * If Firebase is empty but local storage has data, it syncs local data to Firebase.
-     * This ensures data is never lost.
+     * Load the contact and message with one read of the remote profile node and cache
+     * them locally together with the remote version stamp. A profile cached for this
+     * user within PROFILE_CACHE_TTL_MS is used without any request. The remote copy
+     * wins where it has data; parts missing remotely are written back from local
+     * storage so they are never lost. The callback gets the resulting local profile.
      */
-    public void loadFromFirebase(ContactLoadCallback callback) {
-        // First, get local data
-        String localName = getContactName();
-        String localPhone = getContactPhone();
-        boolean hasLocalData = localPhone != null && !localPhone.isEmpty();
-
-        if (databaseReference == null) {
-            Log.w(TAG, "Firebase not initialized, using local data only");
-            if (callback != null) {
-                callback.onLoaded(localName, localPhone);
-            }
+    public void loadProfile(ProfileLoadCallback callback) {
+        if (userId == null) {
+            Log.w(TAG, "Firebase not initialized, using local profile only");
+            deliverProfile(callback);
+            return;
+        }
+        if (isProfileCacheFresh()) {
+            Log.d(TAG, "Using cached profile (version " + prefs.getLong(KEY_PROFILE_VERSION, 0) + ")");
+            deliverProfile(callback);
             return;
         }
 
-        Log.d(TAG, "Loading contact from Firebase...");
-
-        databaseReference.addListenerForSingleValueEvent(new ValueEventListener() {
+        Log.d(TAG, "Loading profile from Firebase...");
+        String loadingUserId = userId;
+        remoteStore.loadProfile(loadingUserId, new RemoteProfileStore.ValueCallback<EmergencyProfile>() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-                if (snapshot.exists()) {
-                    EmergencyContact contact = snapshot.getValue(EmergencyContact.class);
-
-                    if (contact != null && contact.phoneNumber != null && !contact.phoneNumber.isEmpty()) {
-                        // Firebase has data - update local storage
-                        prefs.edit()
-                                .putString(KEY_CONTACT_NAME, contact.name)
-                                .putString(KEY_CONTACT_PHONE, contact.phoneNumber)
-                                .apply();
-
-                        Log.d(TAG, "✓ Contact loaded from Firebase and saved locally: " + contact.name);
-
-                        if (callback != null) {
-                            callback.onLoaded(contact.name, contact.phoneNumber);
-                        }
-                    } else {
-                        // Firebase data is invalid - use local data
-                        Log.d(TAG, "Firebase data invalid, using local data");
-                        handleLocalData(localName, localPhone, hasLocalData, callback);
+            public void onValue(EmergencyProfile remote) {
+                if (!loadingUserId.equals(userId)) {
+                    // Signed out or switched user while loading
+                    return;
+                }
+                if (remote == null) {
+                    Log.d(TAG, "No profile found in Firebase");
+                    markProfileFetched(0);
+                    EmergencyProfile local = getLocalProfile();
+                    if (local.hasContact() || local.message != null) {
+                        Log.d(TAG, "Syncing local profile to Firebase");
+                        syncProfileToFirebase(local);
                     }
                 } else {
-                    // No data in Firebase - use local data and optionally sync to Firebase
-                    Log.d(TAG, "No contact found in Firebase");
-                    handleLocalData(localName, localPhone, hasLocalData, callback);
+                    applyRemoteProfile(remote);
+                    Log.d(TAG, "✓ Profile loaded from Firebase (version " + remote.version + ")");
+                    if (remote.version == 0) {
+                        // Old layout, rewrite it as one profile node
+                        syncProfileToFirebase(getLocalProfile());
+                    } else {
+                        if (!remote.hasContact() && hasEmergencyContact()) {
+                            syncContactToFirebase(getContactName(), getContactPhone());
+                        }
+                        String localMessage = prefs.getString(KEY_EMERGENCY_MESSAGE, null);
+                        if ((remote.message == null || remote.message.isEmpty()) && localMessage != null) {
+                            syncMessageToFirebase(localMessage);
+                        }
+                    }
                 }
+                deliverProfile(callback);
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                Log.e(TAG, "✗ Failed to load contact from Firebase: " + error.getMessage());
-                // Fallback to local data
-                if (callback != null) {
-                    callback.onLoaded(localName, localPhone);
-                }
+            public void onError(Exception error) {
+                // Cache stamp untouched, the next load asks again
+                Log.e(TAG, "✗ Failed to load profile from Firebase: " + error.getMessage());
+                deliverProfile(callback);
             }
         });
     }
 
-    private void handleLocalData(String localName, String localPhone, boolean hasLocalData, ContactLoadCallback callback) {
-        if (hasLocalData) {
-            // We have local data but Firebase is empty - sync local data to Firebase
-            Log.d(TAG, "Syncing local data to Firebase: " + localName);
-            syncContactToFirebase(localName, localPhone);
+    private boolean isProfileCacheFresh() {
+        long age = System.currentTimeMillis() - prefs.getLong(KEY_PROFILE_FETCHED_AT, 0);
+        return userId.equals(prefs.getString(KEY_PROFILE_USER, null))
+                && age >= 0 && age < PROFILE_CACHE_TTL_MS;
+    }
+
+    private void markProfileFetched(long version) {
+        prefs.edit()
+                .putString(KEY_PROFILE_USER, userId)
+                .putLong(KEY_PROFILE_VERSION, version)
+                .putLong(KEY_PROFILE_FETCHED_AT, System.currentTimeMillis())
+                .apply();
+    }
+
+    private void applyRemoteProfile(EmergencyProfile remote) {
+        // Local edits not written yet are newer than the remote copy
+        SharedPreferences.Editor editor = prefs.edit();
+        if (remote.hasContact() && !profileWrites.hasPendingContact(userId)) {
+            editor.putString(KEY_CONTACT_NAME, remote.contact.name)
+                    .putString(KEY_CONTACT_PHONE, remote.contact.phoneNumber);
+        }
+        if (remote.message != null && !remote.message.isEmpty() && !profileWrites.hasPendingMessage(userId)) {
+            editor.putString(KEY_EMERGENCY_MESSAGE, remote.message);
         }
+        editor.putString(KEY_PROFILE_USER, userId)
+                .putLong(KEY_PROFILE_VERSION, remote.version)
+                .putLong(KEY_PROFILE_FETCHED_AT, System.currentTimeMillis())
+                .apply();
+    }
 
+    /**
+     * The locally stored profile, message null when only the default is in use
+     */
+    public EmergencyProfile getLocalProfile() {
+        EmergencyContact contact = hasEmergencyContact()
+                ? new EmergencyContact(getContactName(), getContactPhone())
+                : null;
+        return new EmergencyProfile(contact, prefs.getString(KEY_EMERGENCY_MESSAGE, null),
+                prefs.getLong(KEY_PROFILE_VERSION, 0));
+    }
+
+    private void deliverProfile(ProfileLoadCallback callback) {
         if (callback != null) {
-            callback.onLoaded(localName, localPhone);
+            callback.onLoaded(getLocalProfile());
         }
     }
 
+    private void syncProfileToFirebase(EmergencyProfile profile) {
+        remoteStore.saveProfile(userId, profile, success -> {
+            if (success) {
+                Log.d(TAG, "✓ Profile synced to Firebase");
+            } else {
+                Log.e(TAG, "✗ Failed to sync profile to Firebase");
+            }
+        });
+    }
+
     public String getContactName() {
         return prefs.getString(KEY_CONTACT_NAME, null);
     }
@@ -185,11 +221,17 @@ public class EmergencyContactManager {
      * Use this when signing out - keeps Firebase data intact for next login.
      */
     public void clearEmergencyContactLocal() {
+        // Edits not written yet still belong to the signed in user
+        profileWrites.flush();
+
         // Clear from SharedPreferences only
         prefs.edit()
                 .remove(KEY_CONTACT_NAME)
                 .remove(KEY_CONTACT_PHONE)
                 .remove(KEY_EMERGENCY_MESSAGE)
+                .remove(KEY_PROFILE_USER)
+                .remove(KEY_PROFILE_VERSION)
+                .remove(KEY_PROFILE_FETCHED_AT)
                 .apply();
 
         Log.d(TAG, "Contact cleared locally (Firebase data preserved)");
@@ -200,20 +242,26 @@ public class EmergencyContactManager {
      * Use with caution - this permanently deletes user data from the cloud.
      */
     public void clearEmergencyContactFromFirebase() {
-        if (databaseReference != null) {
-            DatabaseReference userRef = databaseReference.getParent();
-            if (userRef != null) {
-                userRef.removeValue()
-                        .addOnSuccessListener(aVoid ->
-                                Log.d(TAG, "✓ All user data cleared from Firebase"))
-                        .addOnFailureListener(e ->
-                                Log.e(TAG, "✗ Failed to clear data from Firebase: " + e.getMessage(), e));
-            }
+        if (userId != null) {
+            remoteStore.clearUser(userId, success -> {
+                if (success) {
+                    Log.d(TAG, "✓ All user data cleared from Firebase");
+                } else {
+                    Log.e(TAG, "✗ Failed to clear data from Firebase");
+                }
+            });
         } else {
             Log.w(TAG, "Firebase not initialized, cannot clear from cloud");
         }
     }
 
+    /**
+     * Write queued profile edits now, e.g. when the app goes to the background
+     */
+    public static void flushPendingWrites() {
+        ProfileWriteCoalescer.flushIfCreated();
+    }
+
     public void reinitializeFirebase() {
         Log.d(TAG, "Reinitializing Firebase for new user");
         initializeFirebaseReference();
@@ -237,8 +285,8 @@ public class EmergencyContactManager {
     }
 
     // Callback interface for async loading
-    public interface ContactLoadCallback {
-        void onLoaded(String name, String phoneNumber);
+    public interface ProfileLoadCallback {
+        void onLoaded(EmergencyProfile profile);
     }
 
     public void saveEmergencyMessage(String message) {
@@ -254,15 +302,9 @@ public class EmergencyContactManager {
     }
 
     private void syncMessageToFirebase(String message) {
-        if (databaseReference != null) {
-            DatabaseReference userRef = databaseReference.getParent();
-            if (userRef != null) {
-                userRef.child("emergency_message").setValue(message)
-                        .addOnSuccessListener(aVoid ->
-                                Log.d(TAG, "✓ Emergency message synced to Firebase"))
-                        .addOnFailureListener(e ->
-                                Log.e(TAG, "✗ Failed to sync message to Firebase: " + e.getMessage(), e));
-            }
+        if (userId != null) {
+            profileWrites.setMessage(userId, message);
+            Log.d(TAG, "Emergency message queued for Firebase");
         } else {
             Log.w(TAG, "Firebase not initialized, message saved locally only");
         }
@@ -272,80 +314,7 @@ public class EmergencyContactManager {
         return prefs.getString(KEY_EMERGENCY_MESSAGE, DEFAULT_MESSAGE);
     }
 
-    public void loadEmergencyMessageFromFirebase(MessageLoadCallback callback) {
-        // First, get local data
-        String localMessage = getEmergencyMessage();
-
-        if (databaseReference == null) {
-            Log.w(TAG, "Firebase not initialized, using local message only");
-            if (callback != null) {
-                callback.onLoaded(localMessage);
-            }
-            return;
-        }
-
-        Log.d(TAG, "Loading emergency message from Firebase...");
-
-        DatabaseReference userRef = databaseReference.getParent();
-        if (userRef != null) {
-            userRef.child("emergency_message").addListenerForSingleValueEvent(new ValueEventListener() {
-                @Override
-                public void onDataChange(@NonNull DataSnapshot snapshot) {
-                    if (snapshot.exists()) {
-                        String message = snapshot.getValue(String.class);
-
-                        if (message != null && !message.isEmpty()) {
-                            // Firebase has data - update local storage
-                            prefs.edit()
-                                    .putString(KEY_EMERGENCY_MESSAGE, message)
-                                    .apply();
-
-                            Log.d(TAG, "✓ Emergency message loaded from Firebase");
-
-                            if (callback != null) {
-                                callback.onLoaded(message);
-                            }
-                        } else {
-                            // Firebase data is invalid - use local
-                            handleLocalMessage(localMessage, callback);
-                        }
-                    } else {
-                        // No data in Firebase - use local and sync
-                        Log.d(TAG, "No message found in Firebase");
-                        handleLocalMessage(localMessage, callback);
-                    }
-                }
-
-                @Override
-                public void onCancelled(@NonNull DatabaseError error) {
-                    Log.e(TAG, "✗ Failed to load message from Firebase: " + error.getMessage());
-                    // Fallback to local data
-                    if (callback != null) {
-                        callback.onLoaded(localMessage);
-                    }
-                }
-            });
-        }
-    }
-
-    private void handleLocalMessage(String localMessage, MessageLoadCallback callback) {
-        // If we have a non-default local message and Firebase is empty, sync it
-        if (!localMessage.equals(DEFAULT_MESSAGE)) {
-            Log.d(TAG, "Syncing local message to Firebase");
-            syncMessageToFirebase(localMessage);
-        }
-
-        if (callback != null) {
-            callback.onLoaded(localMessage);
-        }
-    }
-
     public void resetEmergencyMessage() {
         saveEmergencyMessage(DEFAULT_MESSAGE);
     }
-
-    // Callback interface
-    public interface MessageLoadCallback {
-        void onLoaded(String message);
-    }
 }
\ No newline at end of file
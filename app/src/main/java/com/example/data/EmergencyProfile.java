@@ -0,0 +1,50 @@
+package com.example.data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The user's emergency profile as one unit, stored remotely at users/{uid}/profile
+ * and read with a single request.
+ */
+public final class EmergencyProfile {
+
+    // Children of the profile node
+    static final String FIELD_CONTACT = "contact";
+    static final String FIELD_MESSAGE = "message";
+    static final String FIELD_VERSION = "updated_at";
+
+    // Null when no contact is set
+    public final EmergencyContactManager.EmergencyContact contact;
+    // Null when no message is stored
+    public final String message;
+    // Server time of the last remote write, 0 when read from the pre-profile layout
+    public final long version;
+
+    public EmergencyProfile(EmergencyContactManager.EmergencyContact contact, String message, long version) {
+        this.contact = contact;
+        this.message = message;
+        this.version = version;
+    }
+
+    public boolean hasContact() {
+        return contact != null && contact.phoneNumber != null && !contact.phoneNumber.isEmpty();
+    }
+
+    static Map<String, Object> contactToMap(EmergencyContactManager.EmergencyContact contact) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("name", contact.name);
+        map.put("phoneNumber", contact.phoneNumber);
+        map.put("lastUpdated", contact.lastUpdated);
+        return map;
+    }
+
+    static EmergencyContactManager.EmergencyContact contactFromMap(Map<?, ?> map) {
+        EmergencyContactManager.EmergencyContact contact = new EmergencyContactManager.EmergencyContact();
+        contact.name = map.get("name") instanceof String ? (String) map.get("name") : null;
+        contact.phoneNumber = map.get("phoneNumber") instanceof String ? (String) map.get("phoneNumber") : null;
+        contact.lastUpdated = map.get("lastUpdated") instanceof Number
+                ? ((Number) map.get("lastUpdated")).longValue() : 0;
+        return contact;
+    }
+}
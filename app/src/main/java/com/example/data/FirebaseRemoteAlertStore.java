@@ -0,0 +1,406 @@
+package com.example.data;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.Transaction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * RemoteAlertStore on Firebase Realtime Database, under users/{uid}.
+ * Snapshots are parsed on a private background thread, never on the main thread.
+ * Alert nodes are never queried by child value, shards are read by key range and
+ * filtered here, so no server index on timestamp is needed. Syncs query the write index
+ * by write time and tombstones by value, database.rules.json ships both indexes.
+ */
+public class FirebaseRemoteAlertStore implements RemoteAlertStore {
+
+    private static final String TAG = "FirebaseAlertStore";
+    // Push keys take their time from the server clock, alert timestamps from the device
+    private static final long KEY_CLOCK_SKEW_MS = 60 * 60 * 1000;
+
+    private final FirebaseDatabase database;
+    private final ExecutorService parseExecutor = Executors.newSingleThreadExecutor();
+
+    public FirebaseRemoteAlertStore(FirebaseDatabase database) {
+        this.database = database;
+    }
+
+    private DatabaseReference userRef(String userId) {
+        return database.getReference("users").child(userId);
+    }
+
+    @Override
+    public String newAlertKey(String userId) {
+        return userRef(userId).child(NODE_ALERT_SHARDS).push().getKey();
+    }
+
+    @Override
+    public Object serverTimestamp() {
+        return ServerValue.TIMESTAMP;
+    }
+
+    @Override
+    public Object increment(long delta) {
+        return ServerValue.increment(delta);
+    }
+
+    @Override
+    public void commit(String userId, Map<String, Object> updates,
+                       AlertRepository.RepositoryCallback<Boolean> callback) {
+        userRef(userId).updateChildren(updates).addOnCompleteListener(task -> {
+            if (!task.isSuccessful()) {
+                Log.e(TAG, "✗ Update of " + updates.size() + " paths failed", task.getException());
+            }
+            callback.onComplete(task.isSuccessful());
+        });
+    }
+
+    @Override
+    public void fetchDelta(String userId, boolean full, long writtenSince, long tombstonesSince,
+                           AlertRepository.RepositoryCallback<Delta> callback) {
+        DatabaseReference userRef = userRef(userId);
+        // On a full fetch tombstones are irrelevant, only the newest is needed to seed the watermark
+        Query tombstonesQuery = full
+                ? userRef.child(NODE_TOMBSTONES).orderByValue().limitToLast(1)
+                : userRef.child(NODE_TOMBSTONES).orderByValue().startAt(tombstonesSince);
+
+        // A full fetch needs every shard anyway, one read of the parent beats one per month
+        Task<List<AlertEntity>> alertsTask = full
+                ? userRef.child(NODE_ALERT_SHARDS).get().continueWith(parseExecutor,
+                        shards -> parseShards(shards.getResult().getChildren(), Long.MIN_VALUE, Long.MAX_VALUE))
+                : fetchWrittenSince(userRef, writtenSince);
+        Task<DataSnapshot> tombstonesTask = tombstonesQuery.get();
+        Task<DataSnapshot> clearedTask = userRef.child(NODE_CLEARED_AT).get();
+
+        Tasks.whenAllComplete(alertsTask, tombstonesTask, clearedTask)
+                .addOnCompleteListener(parseExecutor, done -> {
+                    if (!alertsTask.isSuccessful() || !tombstonesTask.isSuccessful()
+                            || !clearedTask.isSuccessful()) {
+                        Log.e(TAG, "✗ Delta fetch failed", alertsTask.getException());
+                        callback.onComplete(null);
+                        return;
+                    }
+
+                    List<AlertEntity> alerts = alertsTask.getResult();
+                    Map<String, Long> tombstones = new HashMap<>();
+                    for (DataSnapshot tombstone : tombstonesTask.getResult().getChildren()) {
+                        Long deletedAt = tombstone.getValue(Long.class);
+                        if (deletedAt != null) {
+                            tombstones.put(tombstone.getKey(), deletedAt);
+                        }
+                    }
+                    Long clearedAt = clearedTask.getResult().getValue(Long.class);
+                    callback.onComplete(new Delta(alerts, tombstones, clearedAt != null ? clearedAt : 0));
+                });
+    }
+
+    @Override
+    public void fetchRange(String userId, long startTime, long endTime,
+                           AlertRepository.RepositoryCallback<List<AlertEntity>> callback) {
+        fetchShards(userRef(userId), startTime, endTime)
+                .addOnCompleteListener(parseExecutor, task -> {
+                    if (!task.isSuccessful()) {
+                        Log.e(TAG, "Range query failed", task.getException());
+                        callback.onComplete(null);
+                        return;
+                    }
+                    callback.onComplete(task.getResult());
+                });
+    }
+
+    @Override
+    public void fetchAgedAlerts(String userId, long cutoff, int limit,
+                                AlertRepository.RepositoryCallback<AgedAlerts> callback) {
+        DatabaseReference userRef = userRef(userId);
+        String cutoffMonth = AlertShards.monthOf(cutoff);
+
+        userRef.child(NODE_ALERT_MONTHS).orderByKey().endAt(cutoffMonth).get()
+                .continueWithTask(parseExecutor, index -> {
+                    List<String> paths = new ArrayList<>();
+                    List<Task<DataSnapshot>> shardTasks = new ArrayList<>();
+                    boolean cutoffMonthStored = false;
+                    boolean monthsLeft = false;
+                    for (DataSnapshot month : index.getResult().getChildren()) {
+                        if (cutoffMonth.equals(month.getKey())) {
+                            cutoffMonthStored = true;
+                        } else if (!monthsLeft && (paths.isEmpty() || paths.size() + 2 <= limit)) {
+                            // Whole month is past the cutoff, one path drops it. It is still
+                            // read once, the summary counters need what it held.
+                            paths.add(AlertShards.shardPath(month.getKey()));
+                            paths.add(AlertShards.monthIndexPath(month.getKey()));
+                            shardTasks.add(userRef.child(NODE_ALERT_SHARDS).child(month.getKey()).get());
+                        } else {
+                            // Oldest first, the cutoff month waits for the next batch
+                            monthsLeft = true;
+                        }
+                    }
+                    boolean readCutoffMonth = cutoffMonthStored && !monthsLeft && paths.size() < limit;
+                    if (readCutoffMonth) {
+                        shardTasks.add(userRef.child(NODE_ALERT_SHARDS).child(cutoffMonth).get());
+                    }
+                    return Tasks.<DataSnapshot>whenAllSuccess(shardTasks).continueWith(parseExecutor, shards -> {
+                        List<DataSnapshot> read = shards.getResult();
+                        List<DataSnapshot> wholeMonths = readCutoffMonth ? read.subList(0, read.size() - 1) : read;
+                        List<AlertEntity> alerts = parseShards(wholeMonths, Long.MIN_VALUE, Long.MAX_VALUE);
+                        if (readCutoffMonth) {
+                            List<DataSnapshot> shard = Collections.singletonList(read.get(read.size() - 1));
+                            for (AlertEntity alert : parseShards(shard, Long.MIN_VALUE, cutoff - 1)) {
+                                if (paths.size() >= limit) {
+                                    break;
+                                }
+                                paths.add(AlertShards.alertPath(alert.getFirebaseKey(), alert.getTimestamp()));
+                                alerts.add(alert);
+                            }
+                        }
+                        return new AgedAlerts(paths, alerts);
+                    });
+                })
+                .addOnCompleteListener(parseExecutor, task ->
+                        callback.onComplete(task.isSuccessful() ? task.getResult() : null));
+    }
+
+    @Override
+    public void fetchTombstoneKeysBefore(String userId, long cutoff, int limit,
+                                         AlertRepository.RepositoryCallback<List<String>> callback) {
+        fetchKeys(userRef(userId).child(NODE_TOMBSTONES).orderByValue()
+                .endAt(cutoff - 1)
+                .limitToFirst(limit), callback);
+    }
+
+    @Override
+    public void fetchLegacyAlerts(String userId, int limit,
+                                  AlertRepository.RepositoryCallback<List<AlertEntity>> callback) {
+        userRef(userId).child(NODE_ALERTS).orderByKey().limitToFirst(limit).get()
+                .addOnCompleteListener(parseExecutor, task -> {
+                    if (!task.isSuccessful()) {
+                        Log.e(TAG, "Legacy alerts read failed", task.getException());
+                        callback.onComplete(null);
+                        return;
+                    }
+                    callback.onComplete(parseAlerts(task.getResult()));
+                });
+    }
+
+    @Override
+    public void fetchSummary(String userId, AlertRepository.RepositoryCallback<AlertSummary> callback) {
+        userRef(userId).child(NODE_SUMMARY).get().addOnCompleteListener(parseExecutor, task -> {
+            if (!task.isSuccessful()) {
+                Log.e(TAG, "Summary read failed", task.getException());
+                callback.onComplete(null);
+                return;
+            }
+            Object value = task.getResult().getValue();
+            callback.onComplete(AlertSummary.fromMap(value instanceof Map ? (Map<?, ?>) value : null));
+        });
+    }
+
+    @Override
+    public void raiseLastAlertAt(String userId, long timestamp,
+                                 AlertRepository.RepositoryCallback<Boolean> callback) {
+        userRef(userId).child(NODE_SUMMARY).child(AlertSummary.FIELD_LAST_ALERT_AT)
+                .runTransaction(new Transaction.Handler() {
+                    @NonNull
+                    @Override
+                    public Transaction.Result doTransaction(@NonNull MutableData current) {
+                        Long last = current.getValue(Long.class);
+                        if (last != null && last >= timestamp) {
+                            return Transaction.abort();
+                        }
+                        current.setValue(timestamp);
+                        return Transaction.success(current);
+                    }
+
+                    @Override
+                    public void onComplete(DatabaseError error, boolean committed, DataSnapshot snapshot) {
+                        // Aborted because a later alert is already recorded counts as success
+                        if (error != null) {
+                            Log.e(TAG, "✗ Last alert time transaction failed", error.toException());
+                        }
+                        callback.onComplete(error == null);
+                    }
+                });
+    }
+
+    private void fetchKeys(Query query, AlertRepository.RepositoryCallback<List<String>> callback) {
+        query.get().addOnCompleteListener(parseExecutor, task -> {
+            if (!task.isSuccessful()) {
+                callback.onComplete(null);
+                return;
+            }
+            List<String> keys = new ArrayList<>();
+            for (DataSnapshot child : task.getResult().getChildren()) {
+                keys.add(child.getKey());
+            }
+            callback.onComplete(keys);
+        });
+    }
+
+    @Override
+    public Subscription subscribe(String userId, long writtenSince, ChangeListener listener) {
+        DatabaseReference userRef = userRef(userId);
+        Query writes = writesSince(userRef, writtenSince);
+        ChildEventListener childListener = new ChildEventListener() {
+            @Override
+            public void onChildAdded(@NonNull DataSnapshot snapshot, String previousChildName) {
+                deliverUpsert(snapshot, true);
+            }
+
+            @Override
+            public void onChildChanged(@NonNull DataSnapshot snapshot, String previousChildName) {
+                deliverUpsert(snapshot, false);
+            }
+
+            @Override
+            public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+                String firebaseKey = snapshot.getKey();
+                parseExecutor.execute(() -> listener.onAlertRemoved(firebaseKey));
+            }
+
+            @Override
+            public void onChildMoved(@NonNull DataSnapshot snapshot, String previousChildName) {
+                // Ordering is handled locally
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError databaseError) {
+                Log.e(TAG, "Realtime listener cancelled", databaseError.toException());
+            }
+
+            // The index entry only says which node changed, the node itself is read next
+            private void deliverUpsert(DataSnapshot written, boolean added) {
+                Task<DataSnapshot> node = readIndexedAlert(userRef, written);
+                if (node == null) {
+                    return;
+                }
+                node.addOnSuccessListener(parseExecutor, snapshot -> {
+                    // Null when the alert was deleted before the read
+                    AlertEntity alert = AlertMapper.fromSnapshot(snapshot);
+                    if (alert != null) {
+                        listener.onAlertUpserted(alert, added);
+                    }
+                });
+            }
+        };
+        writes.addChildEventListener(childListener);
+        return () -> writes.removeEventListener(childListener);
+    }
+
+    private static Query writesSince(DatabaseReference userRef, long writtenSince) {
+        return userRef.child(NODE_ALERT_WRITES).orderByChild(AlertShards.FIELD_WRITTEN_AT).startAt(writtenSince);
+    }
+
+    // Read of the alert node a write index entry points at, null for a malformed entry
+    private static Task<DataSnapshot> readIndexedAlert(DatabaseReference userRef, DataSnapshot written) {
+        String month = written.child(AlertShards.FIELD_MONTH).getValue(String.class);
+        if (month == null) {
+            return null;
+        }
+        return userRef.child(NODE_ALERT_SHARDS).child(month).child(written.getKey()).get();
+    }
+
+    /**
+     * Alerts written at or after writtenSince, oldest first. The write index finds them in
+     * any month, however old their timestamp, then the nodes are read in parallel.
+     */
+    private Task<List<AlertEntity>> fetchWrittenSince(DatabaseReference userRef, long writtenSince) {
+        return writesSince(userRef, writtenSince).get()
+                .continueWithTask(parseExecutor, index -> {
+                    List<Task<DataSnapshot>> nodeTasks = new ArrayList<>();
+                    for (DataSnapshot written : index.getResult().getChildren()) {
+                        Task<DataSnapshot> node = readIndexedAlert(userRef, written);
+                        if (node != null) {
+                            nodeTasks.add(node);
+                        }
+                    }
+                    return Tasks.<DataSnapshot>whenAllSuccess(nodeTasks);
+                })
+                .continueWith(parseExecutor, nodes -> {
+                    List<AlertEntity> alerts = new ArrayList<>();
+                    for (DataSnapshot node : nodes.getResult()) {
+                        // Null when the alert was deleted after the index was read
+                        AlertEntity alert = AlertMapper.fromSnapshot(node);
+                        if (alert != null) {
+                            alerts.add(alert);
+                        }
+                    }
+                    Collections.sort(alerts, (a1, a2) -> Long.compare(a1.getTimestamp(), a2.getTimestamp()));
+                    return alerts;
+                });
+    }
+
+    /**
+     * Alerts with startTime <= timestamp <= endTime, oldest first. Looks the months up
+     * in the index, then reads only those shards in parallel, each from the first key
+     * that can belong to an alert at startTime. Keys may be created long after the alert
+     * (queued offline), so the end of the range is only filtered here.
+     */
+    private Task<List<AlertEntity>> fetchShards(DatabaseReference userRef, long startTime, long endTime) {
+        Query months = userRef.child(NODE_ALERT_MONTHS).orderByKey();
+        if (startTime > 0) {
+            months = months.startAt(AlertShards.monthOf(startTime));
+        }
+        if (endTime != Long.MAX_VALUE) {
+            months = months.endAt(AlertShards.monthOf(endTime));
+        }
+        return months.get()
+                .continueWithTask(parseExecutor, index -> {
+                    List<Task<DataSnapshot>> shardTasks = new ArrayList<>();
+                    for (DataSnapshot month : index.getResult().getChildren()) {
+                        Query shard = userRef.child(NODE_ALERT_SHARDS).child(month.getKey()).orderByKey();
+                        if (startTime > 0) {
+                            shard = shard.startAt(AlertShards.firstKeyAt(startTime - KEY_CLOCK_SKEW_MS));
+                        }
+                        shardTasks.add(shard.get());
+                    }
+                    return Tasks.<DataSnapshot>whenAllSuccess(shardTasks);
+                })
+                .continueWith(parseExecutor, shards -> parseShards(shards.getResult(), startTime, endTime));
+    }
+
+    private static List<AlertEntity> parseShards(Iterable<DataSnapshot> shards, long startTime, long endTime) {
+        List<AlertEntity> alerts = new ArrayList<>();
+        for (DataSnapshot shard : shards) {
+            for (AlertEntity alert : parseAlerts(shard)) {
+                if (alert.getTimestamp() >= startTime && alert.getTimestamp() <= endTime) {
+                    alerts.add(alert);
+                }
+            }
+        }
+        Collections.sort(alerts, (a1, a2) -> Long.compare(a1.getTimestamp(), a2.getTimestamp()));
+        return alerts;
+    }
+
+    private static List<AlertEntity> parseAlerts(DataSnapshot alertsSnapshot) {
+        List<AlertEntity> alerts = new ArrayList<>();
+        for (DataSnapshot snapshot : alertsSnapshot.getChildren()) {
+            try {
+                AlertEntity alert = AlertMapper.fromSnapshot(snapshot);
+                if (alert != null) {
+                    alerts.add(alert);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error parsing alert from Firebase: " + snapshot.getKey(), e);
+            }
+        }
+        return alerts;
+    }
+}
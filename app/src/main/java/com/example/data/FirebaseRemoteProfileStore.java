@@ -0,0 +1,122 @@
+package com.example.data;
+
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ServerValue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * RemoteProfileStore on Firebase Realtime Database, under users/{uid}
+ */
+public class FirebaseRemoteProfileStore implements RemoteProfileStore {
+
+    private static final String TAG = "FirebaseProfileStore";
+
+    private final FirebaseDatabase database;
+
+    public FirebaseRemoteProfileStore(FirebaseDatabase database) {
+        this.database = database;
+    }
+
+    private DatabaseReference userRef(String userId) {
+        return database.getReference("users").child(userId);
+    }
+
+    @Override
+    public void loadProfile(String userId, ValueCallback<EmergencyProfile> callback) {
+        userRef(userId).child(NODE_PROFILE).get().addOnCompleteListener(task -> {
+            if (!task.isSuccessful()) {
+                callback.onError(task.getException());
+                return;
+            }
+            DataSnapshot profile = task.getResult();
+            if (!profile.exists()) {
+                loadLegacyProfile(userId, callback);
+                return;
+            }
+            DataSnapshot contact = profile.child(EmergencyProfile.FIELD_CONTACT);
+            Long version = profile.child(EmergencyProfile.FIELD_VERSION).getValue(Long.class);
+            callback.onValue(new EmergencyProfile(
+                    contact.exists() ? contact.getValue(EmergencyContactManager.EmergencyContact.class) : null,
+                    profile.child(EmergencyProfile.FIELD_MESSAGE).getValue(String.class),
+                    version != null ? version : 0));
+        });
+    }
+
+    // Both old nodes are read in parallel, so even an unmigrated profile costs one round trip more
+    private void loadLegacyProfile(String userId, ValueCallback<EmergencyProfile> callback) {
+        Task<DataSnapshot> contactTask = userRef(userId).child(NODE_CONTACT).get();
+        Task<DataSnapshot> messageTask = userRef(userId).child(NODE_MESSAGE).get();
+        Tasks.whenAllComplete(contactTask, messageTask).addOnCompleteListener(done -> {
+            if (!contactTask.isSuccessful() || !messageTask.isSuccessful()) {
+                callback.onError(contactTask.isSuccessful() ? messageTask.getException() : contactTask.getException());
+                return;
+            }
+            DataSnapshot contact = contactTask.getResult();
+            DataSnapshot message = messageTask.getResult();
+            if (!contact.exists() && !message.exists()) {
+                callback.onValue(null);
+                return;
+            }
+            callback.onValue(new EmergencyProfile(
+                    contact.exists() ? contact.getValue(EmergencyContactManager.EmergencyContact.class) : null,
+                    message.getValue(String.class), 0));
+        });
+    }
+
+    @Override
+    public void updateProfile(String userId, EmergencyContactManager.EmergencyContact contact, String message,
+                              AlertRepository.RepositoryCallback<Boolean> callback) {
+        Map<String, Object> updates = new HashMap<>();
+        if (contact != null) {
+            updates.put(NODE_PROFILE + "/" + EmergencyProfile.FIELD_CONTACT, EmergencyProfile.contactToMap(contact));
+        }
+        if (message != null) {
+            updates.put(NODE_PROFILE + "/" + EmergencyProfile.FIELD_MESSAGE, message);
+        }
+        update(userId, updates, callback);
+    }
+
+    @Override
+    public void saveProfile(String userId, EmergencyProfile profile,
+                            AlertRepository.RepositoryCallback<Boolean> callback) {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put(NODE_PROFILE + "/" + EmergencyProfile.FIELD_CONTACT,
+                profile.contact != null ? EmergencyProfile.contactToMap(profile.contact) : null);
+        updates.put(NODE_PROFILE + "/" + EmergencyProfile.FIELD_MESSAGE, profile.message);
+        updates.put(NODE_CONTACT, null);
+        updates.put(NODE_MESSAGE, null);
+        update(userId, updates, callback);
+    }
+
+    // Every profile write moves the version stamp with it
+    private void update(String userId, Map<String, Object> updates,
+                        AlertRepository.RepositoryCallback<Boolean> callback) {
+        updates.put(NODE_PROFILE + "/" + EmergencyProfile.FIELD_VERSION, ServerValue.TIMESTAMP);
+        userRef(userId).updateChildren(updates)
+                .addOnCompleteListener(task -> complete(task.isSuccessful(), task.getException(), callback));
+    }
+
+    @Override
+    public void clearUser(String userId, AlertRepository.RepositoryCallback<Boolean> callback) {
+        userRef(userId).removeValue()
+                .addOnCompleteListener(task -> complete(task.isSuccessful(), task.getException(), callback));
+    }
+
+    private static void complete(boolean success, Exception error,
+                                 AlertRepository.RepositoryCallback<Boolean> callback) {
+        if (!success) {
+            Log.e(TAG, "✗ Profile write failed", error);
+        }
+        if (callback != null) {
+            callback.onComplete(success);
+        }
+    }
+}
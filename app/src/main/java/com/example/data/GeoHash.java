@@ -0,0 +1,103 @@
+package com.example.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Geohash encoding used as a spatial index on alert_history. Nearby points share a
+ * prefix, so a box on the map becomes a handful of indexed prefix range scans.
+ */
+public final class GeoHash {
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    // Precision stored on each alert, ~5m x 5m cells
+    public static final int STORED_PRECISION = 9;
+
+    // Sorts after every base32 character, closes a prefix range
+    static final String PREFIX_END = "~";
+
+    private GeoHash() {
+    }
+
+    public static String encode(double latitude, double longitude, int precision) {
+        double minLat = -90, maxLat = 90;
+        double minLon = -180, maxLon = 180;
+        StringBuilder hash = new StringBuilder(precision);
+        boolean evenBit = true;
+        int bit = 0;
+        int ch = 0;
+
+        while (hash.length() < precision) {
+            if (evenBit) {
+                double mid = (minLon + maxLon) / 2;
+                if (longitude >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLon = mid;
+                } else {
+                    ch = ch << 1;
+                    maxLon = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLat = mid;
+                } else {
+                    ch = ch << 1;
+                    maxLat = mid;
+                }
+            }
+            evenBit = !evenBit;
+
+            if (++bit == 5) {
+                hash.append(BASE32[ch]);
+                bit = 0;
+                ch = 0;
+            }
+        }
+        return hash.toString();
+    }
+
+    static double cellHeight(int precision) {
+        return 180.0 / (1L << ((5 * precision) / 2));
+    }
+
+    static double cellWidth(int precision) {
+        return 360.0 / (1L << ((5 * precision + 1) / 2));
+    }
+
+    /**
+     * Prefixes covering the box, at the finest precision that needs no more than
+     * maxCells cells. Returns a single empty prefix when the box is too large to
+     * benefit from the index. Boxes crossing the antimeridian are not split.
+     */
+    public static List<String> coveringCells(double minLat, double minLon,
+                                             double maxLat, double maxLon, int maxCells) {
+        List<String> cells = new ArrayList<>();
+
+        for (int precision = STORED_PRECISION; precision > 0; precision--) {
+            double height = cellHeight(precision);
+            double width = cellWidth(precision);
+            long firstRow = (long) Math.floor((minLat + 90) / height);
+            long lastRow = (long) Math.floor((maxLat + 90) / height);
+            long firstCol = (long) Math.floor((minLon + 180) / width);
+            long lastCol = (long) Math.floor((maxLon + 180) / width);
+
+            if ((lastRow - firstRow + 1) * (lastCol - firstCol + 1) > maxCells) {
+                continue;
+            }
+
+            for (long row = firstRow; row <= lastRow; row++) {
+                double lat = Math.min(89.999999, -90 + (row + 0.5) * height);
+                for (long col = firstCol; col <= lastCol; col++) {
+                    double lon = Math.min(179.999999, -180 + (col + 0.5) * width);
+                    cells.add(encode(lat, lon, precision));
+                }
+            }
+            return cells;
+        }
+
+        cells.add("");
+        return cells;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.data;
+
+import android.os.Handler;
+
+/**
+ * Handle for an asynchronous repository load. Cancelling it drops the result and
+ * skips whatever work has not started yet, so a screen can abandon a stale load
+ * when it starts the next one or goes away. Work already writing to Room is always
+ * finished, only its delivery is dropped.
+ */
+public final class LoadHandle {
+
+    private volatile boolean cancelled;
+
+    LoadHandle() {
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Post the result to the handler unless the load was cancelled, checked again
+     * on the handler thread so a cancel from the main thread always wins
+     */
+    <T> void deliver(Handler handler, AlertRepository.RepositoryCallback<T> callback, T result) {
+        if (callback == null || cancelled) {
+            return;
+        }
+        handler.post(() -> {
+            if (!cancelled) {
+                callback.onComplete(result);
+            }
+        });
+    }
+}
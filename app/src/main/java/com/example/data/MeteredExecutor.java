@@ -0,0 +1,89 @@
+package com.example.data;
+
+import android.os.Process;
+
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed size executor lane running at a given thread priority, recording how deep its
+ * queue gets and how long tasks wait before they start.
+ */
+public final class MeteredExecutor implements Executor {
+
+    private final String name;
+    private final ThreadPoolExecutor pool;
+
+    // Guarded by this
+    private long tasksStarted;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+    private int maxQueueDepth;
+
+    MeteredExecutor(String name, int threads, int threadPriority) {
+        this.name = name;
+        AtomicInteger threadCount = new AtomicInteger();
+        pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> new Thread(() -> {
+                    Process.setThreadPriority(threadPriority);
+                    runnable.run();
+                }, "alerts-" + name + "-" + threadCount.incrementAndGet()));
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        long enqueuedAt = System.nanoTime();
+        pool.execute(() -> {
+            recordStart(System.nanoTime() - enqueuedAt);
+            task.run();
+        });
+        int depth = pool.getQueue().size();
+        synchronized (this) {
+            maxQueueDepth = Math.max(maxQueueDepth, depth);
+        }
+    }
+
+    private synchronized void recordStart(long waitNanos) {
+        tasksStarted++;
+        totalWaitNanos += waitNanos;
+        maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(name, pool.getQueue().size(), maxQueueDepth, tasksStarted,
+                tasksStarted > 0 ? TimeUnit.NANOSECONDS.toMicros(totalWaitNanos / tasksStarted) : 0,
+                TimeUnit.NANOSECONDS.toMicros(maxWaitNanos));
+    }
+
+    /**
+     * Point in time view of one lane
+     */
+    public static final class Stats {
+        public final String lane;
+        public final int queueDepth;
+        public final int maxQueueDepth;
+        public final long tasksStarted;
+        public final long averageWaitMicros;
+        public final long maxWaitMicros;
+
+        Stats(String lane, int queueDepth, int maxQueueDepth, long tasksStarted,
+              long averageWaitMicros, long maxWaitMicros) {
+            this.lane = lane;
+            this.queueDepth = queueDepth;
+            this.maxQueueDepth = maxQueueDepth;
+            this.tasksStarted = tasksStarted;
+            this.averageWaitMicros = averageWaitMicros;
+            this.maxWaitMicros = maxWaitMicros;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s: queue %d (max %d), %d tasks, wait avg %d us, max %d us",
+                    lane, queueDepth, maxQueueDepth, tasksStarted, averageWaitMicros, maxWaitMicros);
+        }
+    }
+}
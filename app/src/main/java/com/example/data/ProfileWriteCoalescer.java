@@ -0,0 +1,253 @@
+package com.example.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges emergency profile edits into one remote write. Every change restarts a short
+ * debounce window, capped at maxDelayMs after the first change, and the newest value
+ * per field goes out as a single profile update. Pending fields are persisted, so an
+ * edit made just before the process dies is written on the next start. A failed write
+ * stays pending until the next change, flush or start.
+ */
+final class ProfileWriteCoalescer {
+
+    private static final String TAG = "ProfileWriteCoalescer";
+    private static final String PREFS_NAME = "ProfileWriteQueue";
+    private static final String KEY_USER = "pending_user";
+    private static final String KEY_CONTACT_NAME = "pending_contact_name";
+    private static final String KEY_CONTACT_PHONE = "pending_contact_phone";
+    private static final String KEY_CONTACT_UPDATED = "pending_contact_updated";
+    private static final String KEY_MESSAGE = "pending_message";
+
+    static final long DEBOUNCE_MS = 3000;
+    static final long MAX_DELAY_MS = 30_000;
+
+    private static ProfileWriteCoalescer instance;
+
+    private final SharedPreferences prefs;
+    private final RemoteProfileStore store;
+    private final long debounceMs;
+    private final long maxDelayMs;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "profile-write-coalescer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Pending fields of userId, null when unchanged
+    private String userId;
+    private EmergencyContactManager.EmergencyContact contact;
+    private String message;
+    // Bumped per change, so a finished write only clears fields it actually sent
+    private long contactGeneration;
+    private long messageGeneration;
+    private long firstChangeAt;
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean writing;
+    private boolean flushAgain;
+
+    ProfileWriteCoalescer(SharedPreferences prefs, RemoteProfileStore store, long debounceMs, long maxDelayMs) {
+        this.prefs = prefs;
+        this.store = store;
+        this.debounceMs = debounceMs;
+        this.maxDelayMs = maxDelayMs;
+        restore();
+    }
+
+    /**
+     * Process wide coalescer, created on first use. Resumes writes left pending by a
+     * previous process.
+     */
+    static synchronized ProfileWriteCoalescer get(Context context) {
+        if (instance == null) {
+            instance = new ProfileWriteCoalescer(
+                    context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE),
+                    RemoteStores.profiles(), DEBOUNCE_MS, MAX_DELAY_MS);
+        }
+        return instance;
+    }
+
+    /**
+     * Flush the process wide coalescer if it was ever used, e.g. when the app goes to the background
+     */
+    static void flushIfCreated() {
+        ProfileWriteCoalescer coalescer;
+        synchronized (ProfileWriteCoalescer.class) {
+            coalescer = instance;
+        }
+        if (coalescer != null) {
+            coalescer.flush();
+        }
+    }
+
+    synchronized void setContact(String userId, EmergencyContactManager.EmergencyContact contact) {
+        retainUser(userId);
+        this.userId = userId;
+        this.contact = contact;
+        contactGeneration++;
+        changed();
+    }
+
+    synchronized void setMessage(String userId, String message) {
+        retainUser(userId);
+        this.userId = userId;
+        this.message = message;
+        messageGeneration++;
+        changed();
+    }
+
+    synchronized boolean hasPendingContact(String userId) {
+        return contact != null && userId.equals(this.userId);
+    }
+
+    synchronized boolean hasPendingMessage(String userId) {
+        return message != null && userId.equals(this.userId);
+    }
+
+    /**
+     * Drop changes pending for any other user. They can no longer be written once
+     * that user signed out.
+     */
+    synchronized void retainUser(String userId) {
+        if (this.userId != null && !this.userId.equals(userId)) {
+            if (hasPending()) {
+                Log.w(TAG, "Dropping profile changes pending for a previous user");
+            }
+            contact = null;
+            message = null;
+            this.userId = null;
+            firstChangeAt = 0;
+            cancelScheduledFlush();
+            persist();
+        }
+    }
+
+    /**
+     * Write whatever is pending now instead of waiting for the window to close
+     */
+    void flush() {
+        String flushUserId;
+        EmergencyContactManager.EmergencyContact flushContact;
+        String flushMessage;
+        long flushContactGeneration;
+        long flushMessageGeneration;
+
+        synchronized (this) {
+            cancelScheduledFlush();
+            if (!hasPending()) {
+                return;
+            }
+            if (writing) {
+                // Picked up as soon as the running write completes
+                flushAgain = true;
+                return;
+            }
+            writing = true;
+            firstChangeAt = 0;
+            flushUserId = userId;
+            flushContact = contact;
+            flushMessage = message;
+            flushContactGeneration = contactGeneration;
+            flushMessageGeneration = messageGeneration;
+        }
+
+        Log.d(TAG, "Writing coalesced profile change"
+                + (flushContact != null ? " (contact)" : "") + (flushMessage != null ? " (message)" : ""));
+        store.updateProfile(flushUserId, flushContact, flushMessage, success -> {
+            boolean again;
+            synchronized (this) {
+                writing = false;
+                if (success && flushUserId.equals(userId)) {
+                    if (contactGeneration == flushContactGeneration) {
+                        contact = null;
+                    }
+                    if (messageGeneration == flushMessageGeneration) {
+                        message = null;
+                    }
+                    persist();
+                }
+                again = success && flushAgain;
+                flushAgain = false;
+            }
+            if (success) {
+                Log.d(TAG, "✓ Profile change written");
+            } else {
+                Log.e(TAG, "✗ Profile change failed, kept pending");
+            }
+            if (again) {
+                flush();
+            }
+        });
+    }
+
+    private boolean hasPending() {
+        return userId != null && (contact != null || message != null);
+    }
+
+    private void changed() {
+        persist();
+        long now = System.currentTimeMillis();
+        if (firstChangeAt == 0) {
+            firstChangeAt = now;
+        }
+        long delay = Math.min(debounceMs, Math.max(0, firstChangeAt + maxDelayMs - now));
+        cancelScheduledFlush();
+        scheduledFlush = timer.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelScheduledFlush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+    }
+
+    private void persist() {
+        SharedPreferences.Editor editor = prefs.edit();
+        if (!hasPending()) {
+            editor.clear().apply();
+            return;
+        }
+        editor.putString(KEY_USER, userId);
+        if (contact != null) {
+            editor.putString(KEY_CONTACT_NAME, contact.name)
+                    .putString(KEY_CONTACT_PHONE, contact.phoneNumber)
+                    .putLong(KEY_CONTACT_UPDATED, contact.lastUpdated);
+        } else {
+            editor.remove(KEY_CONTACT_NAME)
+                    .remove(KEY_CONTACT_PHONE)
+                    .remove(KEY_CONTACT_UPDATED);
+        }
+        if (message != null) {
+            editor.putString(KEY_MESSAGE, message);
+        } else {
+            editor.remove(KEY_MESSAGE);
+        }
+        editor.apply();
+    }
+
+    private synchronized void restore() {
+        userId = prefs.getString(KEY_USER, null);
+        String phone = prefs.getString(KEY_CONTACT_PHONE, null);
+        if (phone != null) {
+            contact = new EmergencyContactManager.EmergencyContact();
+            contact.name = prefs.getString(KEY_CONTACT_NAME, null);
+            contact.phoneNumber = phone;
+            contact.lastUpdated = prefs.getLong(KEY_CONTACT_UPDATED, 0);
+        }
+        message = prefs.getString(KEY_MESSAGE, null);
+        if (!hasPending()) {
+            userId = null;
+        } else {
+            Log.d(TAG, "Resuming profile change left pending by a previous run");
+            scheduledFlush = timer.schedule(this::flush, 0, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remote side of the alert history, one tree per user, alerts sharded by month (see
+ * AlertShards). Paths passed to commit are relative to the user's node. Callbacks may
+ * run on any thread; a null result (or false for commits) means the operation failed.
+ */
+public interface RemoteAlertStore {
+
+    // Children of the user's node
+    String NODE_ALERT_SHARDS = "alerts_by_month";
+    String NODE_ALERT_MONTHS = "alert_months";
+    // Server write time and month of every alert, indexed by write time
+    String NODE_ALERT_WRITES = "alert_writes";
+    // Flat layout from before sharding, only read to migrate it
+    String NODE_ALERTS = "alerts";
+    // Key of every migrated flat alert, write-once in the database rules
+    String NODE_MIGRATED = "alerts_migrated";
+    String NODE_TOMBSTONES = "alert_tombstones";
+    String NODE_CLEARED_AT = "alerts_cleared_at";
+    String NODE_SUMMARY = "alert_summary";
+
+    /**
+     * New unique, time ordered key for an alert node
+     */
+    String newAlertKey(String userId);
+
+    /**
+     * Placeholder resolved to the store's clock when a commit is applied
+     */
+    Object serverTimestamp();
+
+    /**
+     * Placeholder adding delta to the number at its path when a commit is applied,
+     * atomic against concurrent commits
+     */
+    Object increment(long delta);
+
+    /**
+     * Apply all updates atomically, a null value deletes the path
+     */
+    void commit(String userId, Map<String, Object> updates,
+                AlertRepository.RepositoryCallback<Boolean> callback);
+
+    /**
+     * Alerts written (server time, see AlertShards) at or after writtenSince, whatever
+     * their own timestamp, and tombstones at or after tombstonesSince, plus the clear
+     * marker. A full fetch returns every alert and only the newest tombstone.
+     */
+    void fetchDelta(String userId, boolean full, long writtenSince, long tombstonesSince,
+                    AlertRepository.RepositoryCallback<Delta> callback);
+
+    /**
+     * Alerts with startTime <= timestamp <= endTime, read from the overlapping month shards only
+     */
+    void fetchRange(String userId, long startTime, long endTime,
+                    AlertRepository.RepositoryCallback<List<AlertEntity>> callback);
+
+    /**
+     * Up to limit paths to delete for alerts older than cutoff, oldest first, and the
+     * alerts they remove. A month entirely before the cutoff is one shard path plus its
+     * index entry.
+     */
+    void fetchAgedAlerts(String userId, long cutoff, int limit,
+                         AlertRepository.RepositoryCallback<AgedAlerts> callback);
+
+    void fetchTombstoneKeysBefore(String userId, long cutoff, int limit,
+                                  AlertRepository.RepositoryCallback<List<String>> callback);
+
+    /**
+     * First alerts, by key, still in the flat pre-sharding node, empty once migrated
+     */
+    void fetchLegacyAlerts(String userId, int limit,
+                           AlertRepository.RepositoryCallback<List<AlertEntity>> callback);
+
+    /**
+     * Summary node, empty when it does not exist yet
+     */
+    void fetchSummary(String userId, AlertRepository.RepositoryCallback<AlertSummary> callback);
+
+    /**
+     * Set the summary's last alert time to timestamp in a transaction, unless it is
+     * already later
+     */
+    void raiseLastAlertAt(String userId, long timestamp,
+                          AlertRepository.RepositoryCallback<Boolean> callback);
+
+    /**
+     * Deliver existing alerts written at or after since as additions, then every later
+     * write or removal, in any month shard. Watches the write index, not the shards.
+     */
+    Subscription subscribe(String userId, long writtenSince, ChangeListener listener);
+
+    /**
+     * Result of fetchDelta
+     */
+    final class Delta {
+        public final List<AlertEntity> alerts;
+        // Deleted alert key to deletion time
+        public final Map<String, Long> tombstones;
+        // 0 when the history was never cleared
+        public final long clearedAt;
+
+        public Delta(List<AlertEntity> alerts, Map<String, Long> tombstones, long clearedAt) {
+            this.alerts = alerts;
+            this.tombstones = tombstones;
+            this.clearedAt = clearedAt;
+        }
+    }
+
+    /**
+     * Result of fetchAgedAlerts
+     */
+    final class AgedAlerts {
+        public final List<String> paths;
+        // Every alert under paths, for the summary counters
+        public final List<AlertEntity> alerts;
+
+        public AgedAlerts(List<String> paths, List<AlertEntity> alerts) {
+            this.paths = paths;
+            this.alerts = alerts;
+        }
+    }
+
+    interface ChangeListener {
+        void onAlertUpserted(AlertEntity alert, boolean added);
+        void onAlertRemoved(String firebaseKey);
+    }
+
+    interface Subscription {
+        void cancel();
+    }
+}
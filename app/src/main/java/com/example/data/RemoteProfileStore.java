@@ -0,0 +1,46 @@
+package com.example.data;
+
+/**
+ * Remote side of the user's emergency profile (contact and message), kept in one
+ * profile node so it loads with a single read. Every write stamps the node with the
+ * server time as its version. Callbacks may run on any thread.
+ */
+public interface RemoteProfileStore {
+
+    // Child of the user's node
+    String NODE_PROFILE = "profile";
+    // Sibling nodes from before the profile node, only read to migrate them
+    String NODE_CONTACT = "emergency_contact";
+    String NODE_MESSAGE = "emergency_message";
+
+    /**
+     * One read of the profile node. Completes with null when the user has no profile;
+     * a profile only found in the old sibling nodes comes back with version 0.
+     */
+    void loadProfile(String userId, ValueCallback<EmergencyProfile> callback);
+
+    /**
+     * Write the given fields in one update, a null field is left as it is remotely
+     */
+    void updateProfile(String userId, EmergencyContactManager.EmergencyContact contact, String message,
+                       AlertRepository.RepositoryCallback<Boolean> callback);
+
+    /**
+     * Write the whole profile node and drop the old sibling nodes in one update
+     */
+    void saveProfile(String userId, EmergencyProfile profile,
+                     AlertRepository.RepositoryCallback<Boolean> callback);
+
+    /**
+     * Remove everything stored for the user, alerts included
+     */
+    void clearUser(String userId, AlertRepository.RepositoryCallback<Boolean> callback);
+
+    /**
+     * Read result that keeps "missing" (null value) apart from a failed read
+     */
+    interface ValueCallback<T> {
+        void onValue(T value);
+        void onError(Exception error);
+    }
+}
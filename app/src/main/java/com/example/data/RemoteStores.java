@@ -0,0 +1,75 @@
+package com.example.data;
+
+import android.util.Log;
+
+import com.google.firebase.database.DatabaseException;
+import com.google.firebase.database.FirebaseDatabase;
+
+/**
+ * Process wide remote stores. Firebase backed unless another implementation was
+ * installed before first use (e.g. a test double in unit tests). The
+ * Firebase instance is only set up when a store is first asked for.
+ */
+public final class RemoteStores {
+
+    private static final String TAG = "RemoteStores";
+    static final String DATABASE_URL = "https://sentinel-7b6b4-default-rtdb.asia-southeast1.firebasedatabase.app";
+
+    private static FirebaseDatabase database;
+    // Set by useFirebaseEmulator, applied when the database is set up
+    private static String emulatorHost;
+    private static int emulatorPort;
+
+    private static RemoteAlertStore alertStore;
+    private static RemoteProfileStore profileStore;
+
+    private RemoteStores() {
+    }
+
+    public static synchronized RemoteAlertStore alerts() {
+        if (alertStore == null) {
+            alertStore = new FirebaseRemoteAlertStore(database());
+        }
+        return alertStore;
+    }
+
+    public static synchronized RemoteProfileStore profiles() {
+        if (profileStore == null) {
+            profileStore = new FirebaseRemoteProfileStore(database());
+        }
+        return profileStore;
+    }
+
+    /**
+     * Replace both stores, call before the repository or contact manager is created
+     */
+    public static synchronized void install(RemoteAlertStore alerts, RemoteProfileStore profiles) {
+        alertStore = alerts;
+        profileStore = profiles;
+    }
+
+    /**
+     * Point the Firebase stores at a local emulator, debug builds only. Call before first use.
+     */
+    public static synchronized void useFirebaseEmulator(String host, int port) {
+        emulatorHost = host;
+        emulatorPort = port;
+    }
+
+    // Persistence and the emulator must be set before anything else touches the
+    // instance, so this is the only place that creates it
+    private static FirebaseDatabase database() {
+        if (database == null) {
+            database = FirebaseDatabase.getInstance(DATABASE_URL);
+            try {
+                database.setPersistenceEnabled(true);
+            } catch (DatabaseException e) {
+                Log.w(TAG, "Offline persistence not enabled, database already in use");
+            }
+            if (emulatorHost != null) {
+                database.useEmulator(emulatorHost, emulatorPort);
+            }
+        }
+        return database;
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.data;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects remote writes for a short window, or until a size limit is reached, and
+ * commits them as one atomic multi-path update. Each enqueued write keeps its own
+ * callback, which receives the outcome of the batch it was committed in.
+ * A null value deletes the path. Counter increments on the same path are summed
+ * and committed as one atomic increment.
+ */
+final class RemoteWriteBatcher {
+
+    private static final String TAG = "RemoteWriteBatcher";
+
+    private final RemoteAlertStore store;
+    private final long windowMs;
+    private final int maxPaths;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "remote-write-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Pending batch, all paths relative to the node of batchUserId
+    private String batchUserId;
+    private final Map<String, Object> pendingUpdates = new LinkedHashMap<>();
+    private final Map<String, Long> pendingIncrements = new LinkedHashMap<>();
+    private final List<AlertRepository.RepositoryCallback<Boolean>> pendingCallbacks = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    RemoteWriteBatcher(RemoteAlertStore store, long windowMs, int maxPaths) {
+        this.store = store;
+        this.windowMs = windowMs;
+        this.maxPaths = maxPaths;
+    }
+
+    /**
+     * Queue a group of path writes for a user. The group is always committed in one
+     * batch, so it stays atomic. Callback may be null.
+     */
+    void enqueue(String userId, Map<String, Object> updates,
+                 AlertRepository.RepositoryCallback<Boolean> callback) {
+        enqueue(userId, updates, Collections.emptyMap(), callback);
+    }
+
+    /**
+     * Queue path writes together with counter increments, committed in the same batch
+     */
+    synchronized void enqueue(String userId, Map<String, Object> updates, Map<String, Long> increments,
+                              AlertRepository.RepositoryCallback<Boolean> callback) {
+        // A batch only targets one user, a user switch must not mix writes across users
+        boolean flushFirst = batchUserId != null && !batchUserId.equals(userId);
+        if (!flushFirst && pendingPathCount() + updates.size() + increments.size() > maxPaths) {
+            flushFirst = true;
+        }
+        // Multi-path updates reject a batch containing both a path and one of its ancestors
+        for (String path : updates.keySet()) {
+            if (flushFirst) {
+                break;
+            }
+            flushFirst = overlapsPending(path, true);
+        }
+        for (String path : increments.keySet()) {
+            if (flushFirst) {
+                break;
+            }
+            flushFirst = overlapsPending(path, false);
+        }
+        if (flushFirst) {
+            flush();
+        }
+
+        batchUserId = userId;
+        pendingUpdates.putAll(updates);
+        for (Map.Entry<String, Long> increment : increments.entrySet()) {
+            Long pending = pendingIncrements.get(increment.getKey());
+            pendingIncrements.put(increment.getKey(),
+                    pending != null ? pending + increment.getValue() : increment.getValue());
+        }
+        if (callback != null) {
+            pendingCallbacks.add(callback);
+        }
+
+        if (pendingPathCount() >= maxPaths) {
+            flush();
+        } else if (scheduledFlush == null) {
+            scheduledFlush = timer.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void enqueue(String userId, String path, Object value,
+                 AlertRepository.RepositoryCallback<Boolean> callback) {
+        Map<String, Object> updates = new LinkedHashMap<>();
+        updates.put(path, value);
+        enqueue(userId, updates, callback);
+    }
+
+    /**
+     * Commit whatever is pending now instead of waiting for the window to close
+     */
+    void flush() {
+        String userId;
+        Map<String, Object> updates;
+        List<AlertRepository.RepositoryCallback<Boolean>> callbacks;
+
+        synchronized (this) {
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+            if (pendingUpdates.isEmpty() && pendingIncrements.isEmpty()) {
+                return;
+            }
+            userId = batchUserId;
+            updates = new LinkedHashMap<>(pendingUpdates);
+            for (Map.Entry<String, Long> increment : pendingIncrements.entrySet()) {
+                if (increment.getValue() != 0) {
+                    updates.put(increment.getKey(), store.increment(increment.getValue()));
+                }
+            }
+            callbacks = new ArrayList<>(pendingCallbacks);
+            batchUserId = null;
+            pendingUpdates.clear();
+            pendingIncrements.clear();
+            pendingCallbacks.clear();
+        }
+        if (updates.isEmpty()) {
+            // Increments that cancelled out, nothing to send
+            for (AlertRepository.RepositoryCallback<Boolean> callback : callbacks) {
+                callback.onComplete(true);
+            }
+            return;
+        }
+
+        Log.d(TAG, "Committing " + updates.size() + " paths for " + callbacks.size() + " writes");
+        store.commit(userId, updates, success -> {
+            if (success) {
+                Log.d(TAG, "✓ Batch of " + updates.size() + " paths committed");
+            } else {
+                Log.e(TAG, "✗ Batch of " + updates.size() + " paths failed");
+            }
+            for (AlertRepository.RepositoryCallback<Boolean> callback : callbacks) {
+                callback.onComplete(success);
+            }
+        });
+    }
+
+    private int pendingPathCount() {
+        return pendingUpdates.size() + pendingIncrements.size();
+    }
+
+    // A plain write may replace a pending write to the same path, but not a pending
+    // increment; increments to the same path are summed
+    private boolean overlapsPending(String path, boolean isWrite) {
+        for (String pending : pendingUpdates.keySet()) {
+            if (!pending.equals(path)
+                    && (pending.startsWith(path + "/") || path.startsWith(pending + "/"))) {
+                return true;
+            }
+            if (!isWrite && pending.equals(path)) {
+                return true;
+            }
+        }
+        for (String pending : pendingIncrements.keySet()) {
+            if (pending.equals(path) ? isWrite
+                    : pending.startsWith(path + "/") || path.startsWith(pending + "/")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
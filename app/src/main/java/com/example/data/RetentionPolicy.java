@@ -0,0 +1,51 @@
+package com.example.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * How long raw alerts are kept before they are rolled up into daily summaries.
+ * Chosen in SettingsActivity from RETENTION_DAY_OPTIONS, read from the same
+ * preferences file.
+ */
+public class RetentionPolicy {
+    private static final String PREFS_NAME = "sentinel_prefs";
+    public static final String KEY_RETENTION_DAYS = "alert_retention_days";
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    public static final int DEFAULT_RETENTION_DAYS = 90;
+    public static final int[] RETENTION_DAY_OPTIONS = {30, 60, 90, 180, 365};
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private final int retentionDays;
+    private final int batchSize;
+
+    public RetentionPolicy(int retentionDays, int batchSize) {
+        this.retentionDays = Math.max(1, retentionDays);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public static RetentionPolicy fromPreferences(Context context) {
+        SharedPreferences prefs = DeviceStorage.preferences(context, PREFS_NAME);
+        return new RetentionPolicy(prefs.getInt(KEY_RETENTION_DAYS, DEFAULT_RETENTION_DAYS),
+                DEFAULT_BATCH_SIZE);
+    }
+
+    public int getRetentionDays() {
+        return retentionDays;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    // Alerts with a timestamp strictly before this are compacted
+    public long getCutoff(long now) {
+        return now - retentionDays * DAY_MILLIS;
+    }
+
+    // UTC day number used as the summary bucket
+    public static long toDay(long timestamp) {
+        return Math.floorDiv(timestamp, DAY_MILLIS);
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.data;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Alerts the detection service sent before the first unlock, one file each in device
+ * protected storage until the app process has recorded them. They survive the detection
+ * process dying before the unlock. The app process deletes a file only once its Room row
+ * is written, see AlertRecordReceiver.
+ */
+public final class UnrecordedAlerts {
+
+    private static final String TAG = "UnrecordedAlerts";
+    private static final String DIRECTORY = "unrecorded_alerts";
+    private static final String SUFFIX = ".json";
+
+    private static final String FIELD_TYPE = "alertType";
+    private static final String FIELD_TIMESTAMP = "timestamp";
+    private static final String FIELD_LATITUDE = "latitude";
+    private static final String FIELD_LONGITUDE = "longitude";
+    private static final String FIELD_CONTACT_NAME = "contactName";
+    private static final String FIELD_CONTACT_PHONE = "contactPhone";
+    private static final String FIELD_LOCATION_AVAILABLE = "locationAvailable";
+
+    private UnrecordedAlerts() {
+    }
+
+    /**
+     * Persist an alert, written to a temporary file and renamed so a crash never leaves
+     * half an alert behind
+     *
+     * @return name identifying the alert until it is recorded
+     */
+    public static synchronized String save(Context context, AlertEntity alert) throws IOException {
+        File directory = directory(context);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        String name = alert.getTimestamp() + SUFFIX;
+        File file = new File(directory, name);
+        File temporary = new File(directory, name + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temporary)) {
+            out.write(toJson(alert).getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+        if (!temporary.renameTo(file)) {
+            temporary.delete();
+            throw new IOException("Cannot rename " + temporary);
+        }
+        return name;
+    }
+
+    /**
+     * Names of the alerts still waiting to be recorded, oldest first
+     */
+    public static synchronized List<String> names(Context context) {
+        String[] names = directory(context).list((dir, name) -> name.endsWith(SUFFIX));
+        if (names == null) {
+            return new ArrayList<>();
+        }
+        Arrays.sort(names);
+        return new ArrayList<>(Arrays.asList(names));
+    }
+
+    /**
+     * Read an alert back, null when it was recorded already or can't be read
+     */
+    public static synchronized AlertEntity load(Context context, String name) {
+        File file = new File(directory(context), name);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (FileInputStream in = new FileInputStream(file)) {
+            byte[] bytes = new byte[(int) file.length()];
+            int read = 0;
+            while (read < bytes.length) {
+                int count = in.read(bytes, read, bytes.length - read);
+                if (count < 0) {
+                    break;
+                }
+                read += count;
+            }
+            return fromJson(new String(bytes, 0, read, StandardCharsets.UTF_8));
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "✗ Unreadable unrecorded alert " + name, e);
+            return null;
+        }
+    }
+
+    public static synchronized boolean exists(Context context, String name) {
+        return new File(directory(context), name).isFile();
+    }
+
+    public static synchronized void delete(Context context, String name) {
+        File file = new File(directory(context), name);
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "✗ Could not delete recorded alert " + name);
+        }
+    }
+
+    private static File directory(Context context) {
+        return new File(context.createDeviceProtectedStorageContext().getFilesDir(), DIRECTORY);
+    }
+
+    private static String toJson(AlertEntity alert) throws IOException {
+        try {
+            JSONObject json = new JSONObject()
+                    .put(FIELD_TYPE, alert.getAlertType())
+                    .put(FIELD_TIMESTAMP, alert.getTimestamp())
+                    .put(FIELD_CONTACT_NAME, alert.getContactName())
+                    .put(FIELD_CONTACT_PHONE, alert.getContactPhone())
+                    .put(FIELD_LOCATION_AVAILABLE, alert.isLocationAvailable());
+            if (alert.getLatitude() != null && alert.getLongitude() != null) {
+                json.put(FIELD_LATITUDE, alert.getLatitude().doubleValue())
+                        .put(FIELD_LONGITUDE, alert.getLongitude().doubleValue());
+            }
+            return json.toString();
+        } catch (JSONException e) {
+            throw new IOException("Cannot encode alert", e);
+        }
+    }
+
+    private static AlertEntity fromJson(String text) throws JSONException {
+        JSONObject json = new JSONObject(text);
+        boolean located = json.has(FIELD_LATITUDE) && json.has(FIELD_LONGITUDE);
+        return new AlertEntity(
+                json.optString(FIELD_TYPE, null),
+                json.getLong(FIELD_TIMESTAMP),
+                located ? json.getDouble(FIELD_LATITUDE) : null,
+                located ? json.getDouble(FIELD_LONGITUDE) : null,
+                json.optString(FIELD_CONTACT_NAME, null),
+                json.optString(FIELD_CONTACT_PHONE, null),
+                json.optBoolean(FIELD_LOCATION_AVAILABLE, false));
+    }
+}
@@ -0,0 +1,331 @@
+package com.example.sentinel
+
+import android.annotation.SuppressLint
+import android.content.Intent
+import android.net.Uri
+import android.os.Bundle
+import android.util.Log
+import android.view.MenuItem
+import android.view.View
+import android.widget.ProgressBar
+import android.widget.TextView
+import android.widget.Toast
+import androidx.appcompat.app.AlertDialog
+import androidx.appcompat.app.AppCompatActivity
+import androidx.appcompat.widget.SearchView
+import androidx.core.content.ContextCompat
+import androidx.lifecycle.Lifecycle
+import androidx.lifecycle.lifecycleScope
+import androidx.lifecycle.repeatOnLifecycle
+import androidx.recyclerview.widget.LinearLayoutManager
+import androidx.recyclerview.widget.RecyclerView
+import androidx.swiperefreshlayout.widget.SwipeRefreshLayout
+import com.example.data.AlertEntity
+import com.example.data.AlertRepository
+import com.example.data.alertChanges
+import com.example.data.alerts
+import com.example.data.search
+import com.example.data.sync
+import com.google.android.material.floatingactionbutton.FloatingActionButton
+import com.google.firebase.auth.FirebaseAuth
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.MutableSharedFlow
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.collect
+import kotlinx.coroutines.flow.collectLatest
+import kotlinx.coroutines.flow.combine
+import kotlinx.coroutines.launch
+
+class AlertHistoryActivity : AppCompatActivity() {
+
+    private lateinit var recyclerView: RecyclerView
+    private lateinit var adapter: AlertHistoryAdapter
+    private lateinit var alertRepository: AlertRepository
+    private lateinit var tvEmptyState: View
+    private lateinit var fabClearHistory: FloatingActionButton
+    private lateinit var swipeRefreshLayout: SwipeRefreshLayout
+    private lateinit var progressBar: ProgressBar
+    private lateinit var tvSyncStatus: TextView
+    private lateinit var searchView: SearchView
+
+    // Latest query and how long to wait before running it, typing is debounced, submit is not
+    private val searchRequests = MutableStateFlow(SearchRequest("", 0))
+    // Swipe refreshes, only handled while the screen is started
+    private val refreshRequests = MutableSharedFlow<Unit>(extraBufferCapacity = 1)
+
+    override fun onCreate(savedInstanceState: Bundle?) {
+        super.onCreate(savedInstanceState)
+        setContentView(R.layout.activity_alert_history)
+
+        // Enable back button in action bar
+        supportActionBar?.apply {
+            setDisplayHomeAsUpEnabled(true)
+            title = "Alert History"
+        }
+
+        initViews()
+        setupRecyclerView()
+        checkFirebaseAuth()
+        observeAlertHistory()
+    }
+
+    private fun initViews() {
+        recyclerView = findViewById(R.id.rv_alert_history)
+        tvEmptyState = findViewById(R.id.tv_empty_state)
+        fabClearHistory = findViewById(R.id.fab_clear_history)
+        swipeRefreshLayout = findViewById(R.id.swipe_refresh)
+        progressBar = findViewById(R.id.progress_bar)
+        tvSyncStatus = findViewById(R.id.tv_sync_status)
+        searchView = findViewById(R.id.search_alerts)
+
+        alertRepository = AlertRepository.getInstance(application)
+
+        fabClearHistory.setOnClickListener { showClearHistoryDialog() }
+
+        searchView.setOnQueryTextListener(object : SearchView.OnQueryTextListener {
+            override fun onQueryTextSubmit(query: String?): Boolean {
+                search(query, 0)
+                searchView.clearFocus()
+                return true
+            }
+
+            override fun onQueryTextChange(newText: String?): Boolean {
+                search(newText, SEARCH_DEBOUNCE_MS)
+                return true
+            }
+        })
+
+        swipeRefreshLayout.setOnRefreshListener { refreshRequests.tryEmit(Unit) }
+    }
+
+    private fun setupRecyclerView() {
+        adapter = AlertHistoryAdapter(object : AlertHistoryAdapter.AlertClickListener {
+            override fun onAlertClick(alert: AlertEntity) {
+                showAlertDetails(alert)
+            }
+
+            override fun onLocationClick(alert: AlertEntity) {
+                openMap(alert)
+            }
+
+            override fun onDeleteClick(alert: AlertEntity) {
+                deleteAlert(alert)
+            }
+        })
+
+        recyclerView.layoutManager = LinearLayoutManager(this)
+        recyclerView.adapter = adapter
+    }
+
+    @SuppressLint("SetTextI18n")
+    private fun checkFirebaseAuth() {
+        if (FirebaseAuth.getInstance().currentUser != null) {
+            tvSyncStatus.text = "Synced with cloud ☁️"
+            tvSyncStatus.setTextColor(ContextCompat.getColor(this, android.R.color.holo_green_dark))
+        } else {
+            tvSyncStatus.text = "Local storage only"
+            tvSyncStatus.setTextColor(ContextCompat.getColor(this, android.R.color.holo_orange_dark))
+        }
+    }
+
+    /**
+     * Everything the screen loads runs while it is started. Stopping cancels it, a search,
+     * sync or refresh still in flight included, and the next start begins afresh.
+     */
+    private fun observeAlertHistory() {
+        Log.d(TAG, "=== OBSERVING ALERT HISTORY ===")
+        showLoading(true)
+
+        lifecycleScope.launch {
+            repeatOnLifecycle(Lifecycle.State.STARTED) {
+                // In case the user changed while the screen was stopped
+                alertRepository.reinitializeFirebase()
+
+                // Keeps the catch-up sync and realtime subscription running. Remote changes are
+                // written to Room and reach the list through alerts() below, so they are applied once
+                launch { alertRepository.alertChanges().collect() }
+                // A second swipe while a refresh runs replaces it
+                launch { refreshRequests.collectLatest { refresh() } }
+
+                // Room re-emits the list whenever alert_history changes (service inserts, syncs,
+                // deletes); a newer list or query cancels the search still running for the last one
+                alertRepository.alerts()
+                    .combine(searchRequests) { alerts, request -> alerts to request }
+                    .collectLatest { (alerts, request) -> showHistory(alerts, request) }
+            }
+        }
+    }
+
+    private fun search(query: String?, delayMs: Long) {
+        searchRequests.value = SearchRequest(query?.trim().orEmpty(), delayMs)
+    }
+
+    private suspend fun showHistory(alerts: List<AlertEntity>, request: SearchRequest) {
+        if (request.query.isEmpty()) {
+            displayAlerts(alerts)
+            return
+        }
+        delay(request.delayMs)
+        displayAlerts(alertRepository.search(request.query))
+    }
+
+    private suspend fun refresh() {
+        // Reinitialize Firebase for current user
+        alertRepository.reinitializeFirebase()
+        try {
+            // Joins a sync already running (e.g. the realtime catch-up) instead of fetching
+            // twice, the rows it writes reach the list through Room
+            val synced = alertRepository.sync()
+            Toast.makeText(this, if (synced) "Synced with cloud" else "Sync failed - showing local data",
+                Toast.LENGTH_SHORT).show()
+        } finally {
+            swipeRefreshLayout.isRefreshing = false
+        }
+    }
+
+    private fun displayAlerts(alerts: List<AlertEntity>?) {
+        showLoading(false)
+
+        Log.d(TAG, "Alerts received: " + (alerts?.size ?: "NULL"))
+
+        if (alerts.isNullOrEmpty()) {
+            Log.d(TAG, "No alerts to display - showing empty state")
+            adapter.submitList(emptyList())
+            tvEmptyState.visibility = View.VISIBLE
+            recyclerView.visibility = View.GONE
+            fabClearHistory.visibility = View.GONE
+        } else {
+            Log.d(TAG, "✓ Displaying " + alerts.size + " alerts")
+            tvEmptyState.visibility = View.GONE
+            recyclerView.visibility = View.VISIBLE
+            fabClearHistory.visibility = View.VISIBLE
+            // Diffed on a background thread, only changed rows are rebound
+            adapter.submitList(alerts)
+        }
+    }
+
+    private fun showLoading(show: Boolean) {
+        progressBar.visibility = if (show) View.VISIBLE else View.GONE
+    }
+
+    private fun showAlertDetails(alert: AlertEntity) {
+        val builder = AlertDialog.Builder(this)
+            .setTitle("Alert Details")
+            .setMessage(buildAlertDetails(alert))
+            .setPositiveButton("Close", null)
+
+        if (alert.isLocationAvailable) {
+            builder.setNeutralButton("View on Map") { _, _ -> openMap(alert) }
+        }
+
+        builder.show()
+    }
+
+    @SuppressLint("DefaultLocale")
+    private fun buildAlertDetails(alert: AlertEntity): String {
+        val details = StringBuilder()
+
+        details.append("🚨 Alert Type\n")
+        details.append(alert.alertType).append("\n\n")
+
+        details.append("📅 Date & Time\n")
+        details.append(android.text.format.DateFormat.format(
+            "EEEE, MMM dd, yyyy\nhh:mm:ss a", alert.timestamp)).append("\n\n")
+
+        details.append("👤 Emergency Contact\n")
+        details.append(alert.contactName).append("\n")
+        details.append("📞 ").append(alert.contactPhone).append("\n\n")
+
+        details.append("📍 Location\n")
+        if (alert.isLocationAvailable) {
+            details.append("Lat: ").append(String.format("%.6f", alert.latitudeDegrees)).append("\n")
+            details.append("Long: ").append(String.format("%.6f", alert.longitudeDegrees))
+        } else {
+            details.append("Not available")
+        }
+
+        return details.toString()
+    }
+
+    @SuppressLint("QueryPermissionsNeeded")
+    private fun openMap(alert: AlertEntity) {
+        if (!alert.isLocationAvailable) {
+            Toast.makeText(this, "Location not available for this alert", Toast.LENGTH_SHORT).show()
+            return
+        }
+
+        try {
+            val intent = Intent(Intent.ACTION_VIEW, Uri.parse(alert.googleMapsUrl))
+            intent.setPackage("com.google.android.apps.maps")
+
+            // Try to open Google Maps, fallback to browser if not installed
+            if (intent.resolveActivity(packageManager) == null) {
+                intent.setPackage(null)
+            }
+            startActivity(intent)
+        } catch (e: Exception) {
+            Toast.makeText(this, "Unable to open map", Toast.LENGTH_SHORT).show()
+        }
+    }
+
+    private fun deleteAlert(alert: AlertEntity) {
+        AlertDialog.Builder(this)
+            .setTitle("Delete Alert")
+            .setMessage("Are you sure you want to delete this alert? This will remove it from both local storage and cloud.")
+            .setPositiveButton("Delete") { _, _ ->
+                showLoading(true)
+
+                alertRepository.deleteAlert(alert) { success ->
+                    runOnUiThread {
+                        showLoading(false)
+                        Toast.makeText(this, if (success) "Alert deleted" else "Failed to delete alert",
+                            Toast.LENGTH_SHORT).show()
+                    }
+                }
+            }
+            .setNegativeButton("Cancel", null)
+            .show()
+    }
+
+    private fun showClearHistoryDialog() {
+        AlertDialog.Builder(this)
+            .setTitle("Clear All History")
+            .setMessage("Are you sure you want to delete all alert history? " +
+                    "This will remove all alerts from both local storage and cloud. " +
+                    "This action cannot be undone.")
+            .setPositiveButton("Clear All") { _, _ ->
+                showLoading(true)
+
+                alertRepository.deleteAllAlerts { success ->
+                    runOnUiThread {
+                        showLoading(false)
+                        Toast.makeText(this, if (success) "All history cleared" else "Failed to clear history",
+                            Toast.LENGTH_SHORT).show()
+                    }
+                }
+            }
+            .setNegativeButton("Cancel", null)
+            .show()
+    }
+
+    override fun onOptionsItemSelected(item: MenuItem): Boolean {
+        if (item.itemId == android.R.id.home) {
+            finish()
+            return true
+        }
+        return super.onOptionsItemSelected(item)
+    }
+
+    override fun onDestroy() {
+        super.onDestroy()
+        // Loads are cancelled with lifecycleScope, only repository resources are left
+        alertRepository.cleanup()
+    }
+
+    private data class SearchRequest(val query: String, val delayMs: Long)
+
+    private companion object {
+        const val TAG = "AlertHistoryActivity"
+        const val SEARCH_DEBOUNCE_MS = 300L
+    }
+}
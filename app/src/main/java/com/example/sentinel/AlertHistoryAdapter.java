@@ -8,15 +8,29 @@ import android.widget.ImageButton;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.data.AlertEntity;
 
-import java.util.List;
+import java.util.Objects;
 
-public class AlertHistoryAdapter extends RecyclerView.Adapter<AlertHistoryAdapter.AlertViewHolder> {
+public class AlertHistoryAdapter extends ListAdapter<AlertEntity, AlertHistoryAdapter.AlertViewHolder> {
+
+    // Rows are matched by id, so only alerts that actually changed are rebound
+    private static final DiffUtil.ItemCallback<AlertEntity> DIFF = new DiffUtil.ItemCallback<AlertEntity>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull AlertEntity oldAlert, @NonNull AlertEntity newAlert) {
+            return oldAlert.getId() == newAlert.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull AlertEntity oldAlert, @NonNull AlertEntity newAlert) {
+            return sameContents(oldAlert, newAlert);
+        }
+    };
 
-    private List<AlertEntity> alerts;
     private final AlertClickListener listener;
 
     public interface AlertClickListener {
@@ -25,14 +39,18 @@ public class AlertHistoryAdapter extends RecyclerView.Adapter<AlertHistoryAdapte
         void onDeleteClick(AlertEntity alert);
     }
 
-    public AlertHistoryAdapter(List<AlertEntity> alerts, AlertClickListener listener) {
-        this.alerts = alerts;
+    public AlertHistoryAdapter(AlertClickListener listener) {
+        super(DIFF);
         this.listener = listener;
     }
 
-    public void updateAlerts(List<AlertEntity> newAlerts) {
-        this.alerts = newAlerts;
-        notifyDataSetChanged();
+    private static boolean sameContents(AlertEntity a, AlertEntity b) {
+        return a.getTimestamp() == b.getTimestamp()
+                && a.getAlertTypeCode() == b.getAlertTypeCode()
+                && a.isLocationAvailable() == b.isLocationAvailable()
+                && Objects.equals(a.getFirebaseKey(), b.getFirebaseKey())
+                && Objects.equals(a.getContactName(), b.getContactName())
+                && Objects.equals(a.getContactPhone(), b.getContactPhone());
     }
 
     @NonNull
@@ -45,15 +63,10 @@ public class AlertHistoryAdapter extends RecyclerView.Adapter<AlertHistoryAdapte
 
     @Override
     public void onBindViewHolder(@NonNull AlertViewHolder holder, int position) {
-        AlertEntity alert = alerts.get(position);
+        AlertEntity alert = getItem(position);
         holder.bind(alert, listener);
     }
 
-    @Override
-    public int getItemCount() {
-        return alerts.size();
-    }
-
     static class AlertViewHolder extends RecyclerView.ViewHolder {
         private final TextView tvAlertType;
         private final TextView tvTimestamp;
@@ -10,7 +10,6 @@ import android.graphics.drawable.GradientDrawable;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.IBinder;
 import android.provider.ContactsContract;
 import android.provider.Settings;
 import android.util.Log;
@@ -22,8 +21,6 @@ import android.widget.LinearLayout;
 import android.widget.TextView;
 import android.widget.Toast;
 import android.view.MenuItem;
-import android.content.ComponentName;
-import android.content.ServiceConnection;
 import android.view.KeyEvent;
 
 import androidx.activity.result.ActivityResultLauncher;
@@ -36,6 +33,8 @@ import androidx.appcompat.app.ActionBarDrawerToggle;
 import androidx.drawerlayout.widget.DrawerLayout;
 
 import com.bumptech.glide.Glide;
+import com.example.core.DetectionClient;
+import com.example.core.DetectionStatus;
 import com.example.core.EmergencyShakeService;
 import com.example.data.EmergencyContactManager;
 import com.google.android.gms.auth.api.signin.GoogleSignIn;
@@ -46,13 +45,11 @@ import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.location.LocationSettingsResponse;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.navigation.NavigationView;
-import com.google.firebase.FirebaseApp;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.android.gms.location.LocationRequest;
 import com.google.android.gms.location.LocationSettingsRequest;
 import com.google.android.gms.location.Priority;
 import com.google.android.gms.tasks.Task;
-import com.google.firebase.database.FirebaseDatabase;
 
 import java.util.Objects;
 
@@ -75,12 +72,16 @@ public class MainActivity extends AppCompatActivity {
     private ImageView ivUserProfile;
     private FirebaseAuth mAuth;
 
-    private EmergencyShakeService serviceInstance;
-    private boolean isBound = false;
-
     private EmergencyContactManager contactManager;
     private ActivityResultLauncher<Intent> contactPickerLauncher;
     private boolean isServiceRunning = false;
+    // Pushed by the detection service, null while it isn't running
+    private DetectionStatus detectionStatus;
+    private final DetectionClient.StatusCallback statusListener = status -> {
+        detectionStatus = status;
+        isServiceRunning = status != null;
+        updateStatusIndicator();
+    };
 
     private static final int BACKGROUND_LOCATION_PERMISSION_CODE = 101;
 
@@ -90,22 +91,9 @@ public class MainActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
-        //initialize firebase
-        FirebaseApp.initializeApp(this);
-
-        //offline persistence
-        try {
-            FirebaseDatabase.getInstance().setPersistenceEnabled(true);
-        } catch (Exception e) {
-            //persistence already enabled
-        }
-
-        //FirebaseDatabase database = FirebaseDatabase.getInstance();
-
-        String databaseUrl = "https://sentinel-7b6b4-default-rtdb.asia-southeast1.firebasedatabase.app";
-        FirebaseDatabase database = FirebaseDatabase.getInstance(databaseUrl);
-
+        // Firebase is set up by SentinelApplication and the remote stores
         contactManager = new EmergencyContactManager(this);
+        // Whether detection runs (e.g. brought back by BootReceiver) arrives with its status
 
         // Load contact from firebase when app starts
         //contactManager.loadFromFirebase((name, phone) -> {
@@ -223,15 +211,13 @@ public class MainActivity extends AppCompatActivity {
             // Reinitialize Firebase reference for emergency contact when user changes
             contactManager.reinitializeFirebase();
 
-            contactManager.loadFromFirebase((name, phone) -> {
+            // Contact and message in one read, none while the cached copy is fresh
+            contactManager.loadProfile(profile -> {
                 updateUI();
-                if (name != null && phone != null) {
-                    Log.d("MainActivity", "Contact loaded: " + name);
+                if (profile.hasContact()) {
+                    Log.d("MainActivity", "Contact loaded: " + profile.contact.name);
                 }
             });
-            contactManager.loadEmergencyMessageFromFirebase(message -> {
-                Log.d("MainActivity", "Emergency message loaded: " + message);
-            });
 
         } else {
             // No user logged in, redirect to login
@@ -242,18 +228,18 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
-    private  ServiceConnection serviceConnection = new ServiceConnection() {
-        @Override
-        public void onServiceConnected(ComponentName name, IBinder service) {
-            //
-        }
+    @Override
+    protected void onStart() {
+        super.onStart();
+        // Live status while visible, no polling
+        DetectionClient.get(this).subscribe(statusListener);
+    }
 
-        @Override
-        public void onServiceDisconnected(ComponentName name) {
-            serviceInstance = null;
-            isBound = false;
-        }
-    };
+    @Override
+    protected void onStop() {
+        super.onStop();
+        DetectionClient.get(this).unsubscribe(statusListener);
+    }
 
     @Override
     public boolean onKeyDown(int keyCode, KeyEvent event) {
@@ -563,7 +549,14 @@ public class MainActivity extends AppCompatActivity {
     private void updateStatusIndicator() {
         GradientDrawable drawable = (GradientDrawable) statusIndicator.getBackground();
 
-        if (isServiceRunning && contactManager.hasEmergencyContact()) {
+        if (isServiceRunning && detectionStatus != null && detectionStatus.isAlertCountingDown()) {
+            drawable.setColor(Color.parseColor("#F44336"));
+            tvStatus.setText(R.string.alert_counting_down);
+        } else if (isServiceRunning && detectionStatus != null
+                && !detectionStatus.shakeListening && !detectionStatus.volumeButtonsActive) {
+            drawable.setColor(Color.parseColor("#FF9800"));
+            tvStatus.setText(R.string.running_no_triggers);
+        } else if (isServiceRunning && contactManager.hasEmergencyContact()) {
             drawable.setColor(Color.parseColor("#4CAF50"));
             tvStatus.setText(R.string.running);
         } else if (contactManager.hasEmergencyContact()) {
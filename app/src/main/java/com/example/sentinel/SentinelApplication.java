@@ -2,32 +2,86 @@ package com.example.sentinel;
 
 
 import android.app.Application;
-import com.google.firebase.FirebaseApp;
-import com.google.firebase.database.FirebaseDatabase;
+import android.content.ComponentCallbacks2;
+import android.os.Build;
+
+import com.example.core.DetectionClient;
+import com.example.data.AlertConfig;
+import com.example.data.AlertRepository;
+import com.example.data.AlertRetentionWorker;
+import com.example.data.DeviceStorage;
+import com.example.data.EmergencyContactManager;
+import com.google.firebase.auth.FirebaseAuth;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 public class SentinelApplication extends Application {
 
+    // Process of EmergencyShakeService, see the manifest
+    private static final String DETECTION_PROCESS_SUFFIX = ":detection";
+
+    private boolean detectionProcess;
+
     @Override
     public void onCreate() {
         super.onCreate();
 
-        // Initialize Firebase
-        FirebaseApp.initializeApp(this);
+        detectionProcess = processName().endsWith(DETECTION_PROCESS_SUFFIX);
+        if (detectionProcess) {
+            // The service needs nothing but its config, no Firebase, Room, WorkManager or UI
+            AlertConfig.get(this);
+            return;
+        }
 
-        // Set the correct database URL for Asia Southeast 1 region
-        FirebaseDatabase database = FirebaseDatabase.getInstance();
-        database.useEmulator("10.0.2.2", 9000); // Remove this line if not using emulator
+        // Point the remote stores at the local emulator with RemoteStores.useFirebaseEmulator("10.0.2.2", 9000)
 
-        // IMPORTANT: Set your actual database URL
-        // Replace with your actual database URL from Firebase Console
-        String databaseUrl = "https://sentinel-7b6b4-default-rtdb.asia-southeast1.firebasedatabase.app";
-        FirebaseDatabase.getInstance(databaseUrl).setPersistenceEnabled(true);
+        // Nothing here blocks the first frame, the remote stores set Firebase up on first use
+        StartupOrchestrator startup = new StartupOrchestrator()
+                // First alert after a cold start finds the config ready
+                .add("alert-config", () -> AlertConfig.get(this))
+                // The detection process can't see preference changes made here, send it each snapshot
+                .addOnMainThread("detection-link", () -> AlertConfig.subscribe(this,
+                        DetectionClient.get(this)::pushConfig), "alert-config");
+        // Before the first unlock only the detection service runs, credential storage is unavailable
+        if (DeviceStorage.isUserUnlocked(this)) {
+            // Loads the signed in user from disk before LaunchActivity asks for it. FirebaseApp
+            // itself is set up by its content provider before onCreate.
+            startup.add("firebase-auth", FirebaseAuth::getInstance)
+                    // Daily roll-up of aged alert history
+                    .add("retention-worker", () -> AlertRetentionWorker.schedule(this));
+        }
+        startup.start();
+    }
 
-        // Enable offline persistence (optional but recommended)
-        try {
-            FirebaseDatabase.getInstance().setPersistenceEnabled(true);
-        } catch (Exception e) {
-            // Persistence already enabled
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (detectionProcess) {
+            return;
+        }
+        AlertRepository.trimMemory(level);
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            // App went to the background, don't leave profile edits waiting in the debounce window
+            EmergencyContactManager.flushPendingWrites();
+        }
+    }
+
+    private static String processName() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            return Application.getProcessName();
+        }
+        try (FileInputStream in = new FileInputStream("/proc/self/cmdline")) {
+            byte[] buffer = new byte[256];
+            int length = in.read(buffer);
+            int end = 0;
+            while (end < length && buffer[end] != 0) {
+                end++;
+            }
+            return new String(buffer, 0, end, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return "";
         }
     }
 }
@@ -24,7 +24,9 @@ import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.ContextCompat;
 
+import com.example.data.DeviceStorage;
 import com.example.data.EmergencyContactManager;
+import com.example.data.RetentionPolicy;
 import com.google.android.material.textfield.TextInputEditText;
 
 import java.util.Objects;
@@ -59,6 +61,9 @@ public class SettingsActivity extends AppCompatActivity {
     private TextView tvCountdownValue;
     private SeekBar seekCountdown;
 
+    private TextView tvRetentionValue;
+    private SeekBar seekRetention;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -71,7 +76,7 @@ public class SettingsActivity extends AppCompatActivity {
         }
 
         contactManager = new EmergencyContactManager(this);
-        prefs = getSharedPreferences("sentinel_prefs", MODE_PRIVATE);
+        prefs = DeviceStorage.preferences(this, "sentinel_prefs");
 
         // Register contact picker
         contactPickerLauncher = registerForActivityResult(
@@ -130,6 +135,9 @@ public class SettingsActivity extends AppCompatActivity {
         seekCountdown = findViewById(R.id.seek_countdown);
         tvCountdownValue = findViewById(R.id.tv_countdown_value);
 
+        seekRetention = findViewById(R.id.seek_retention);
+        tvRetentionValue = findViewById(R.id.tv_retention_value);
+
         setupListeners();
     }
 
@@ -211,6 +219,23 @@ public class SettingsActivity extends AppCompatActivity {
                 prefs.edit().putInt("countdown_seconds", seconds).apply();
             }
         });
+
+        seekRetention.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                tvRetentionValue.setText(RetentionPolicy.RETENTION_DAY_OPTIONS[progress] + " days");
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {}
+
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {
+                // Picked up by the next daily retention run
+                int days = RetentionPolicy.RETENTION_DAY_OPTIONS[seekBar.getProgress()];
+                prefs.edit().putInt(RetentionPolicy.KEY_RETENTION_DAYS, days).apply();
+            }
+        });
     }
 
     private void loadSettings() {
@@ -250,8 +275,21 @@ public class SettingsActivity extends AppCompatActivity {
         seekCountdown.setProgress(countdown - 3);
         tvCountdownValue.setText(countdown + " seconds");
 
+        // Load history retention, the closest option to what is stored
+        int retentionDays = prefs.getInt(RetentionPolicy.KEY_RETENTION_DAYS, RetentionPolicy.DEFAULT_RETENTION_DAYS);
+        int retentionOption = 0;
+        for (int i = 1; i < RetentionPolicy.RETENTION_DAY_OPTIONS.length; i++) {
+            if (Math.abs(RetentionPolicy.RETENTION_DAY_OPTIONS[i] - retentionDays)
+                    < Math.abs(RetentionPolicy.RETENTION_DAY_OPTIONS[retentionOption] - retentionDays)) {
+                retentionOption = i;
+            }
+        }
+        seekRetention.setProgress(retentionOption);
+        tvRetentionValue.setText(RetentionPolicy.RETENTION_DAY_OPTIONS[retentionOption] + " days");
+
         //load emergency message from firebase
-        contactManager.loadEmergencyMessageFromFirebase(message -> {
+        contactManager.loadProfile(profile -> {
+            String message = contactManager.getEmergencyMessage();
             etEmergencyMessage.setText(message);
             tvCharCount.setText(message.length() + "/160");
         });
@@ -0,0 +1,121 @@
+package com.example.sentinel;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs application initializers once their dependencies are done. Independent ones
+ * run in parallel on a small background pool, the rest of Application.onCreate does
+ * not wait for any of them. Each initializer logs how long it took; one that fails
+ * is logged and its dependents are skipped.
+ */
+final class StartupOrchestrator {
+
+    private static final String TAG = "Startup";
+    private static final int MAX_THREADS = 3;
+
+    private final Map<String, Initializer> initializers = new LinkedHashMap<>();
+
+    private static final class Initializer {
+        final String name;
+        final Runnable task;
+        final List<String> dependsOn;
+        final boolean onMainThread;
+
+        Initializer(String name, Runnable task, List<String> dependsOn, boolean onMainThread) {
+            this.name = name;
+            this.task = task;
+            this.dependsOn = dependsOn;
+            this.onMainThread = onMainThread;
+        }
+    }
+
+    /**
+     * Declare a background initializer. Dependencies must be declared first, which
+     * also rules out cycles.
+     */
+    StartupOrchestrator add(String name, Runnable task, String... dependsOn) {
+        return declare(new Initializer(name, task, Arrays.asList(dependsOn), false));
+    }
+
+    /**
+     * Declare an initializer that has to run on the main thread, e.g. one touching views
+     */
+    StartupOrchestrator addOnMainThread(String name, Runnable task, String... dependsOn) {
+        return declare(new Initializer(name, task, Arrays.asList(dependsOn), true));
+    }
+
+    private StartupOrchestrator declare(Initializer initializer) {
+        for (String dependency : initializer.dependsOn) {
+            if (!initializers.containsKey(dependency)) {
+                throw new IllegalArgumentException(initializer.name + " depends on undeclared " + dependency);
+            }
+        }
+        if (initializers.put(initializer.name, initializer) != null) {
+            throw new IllegalArgumentException("Initializer declared twice: " + initializer.name);
+        }
+        return this;
+    }
+
+    /**
+     * Start every initializer and return right away
+     */
+    void start() {
+        long startedAt = SystemClock.elapsedRealtime();
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        Executor mainThread = mainHandler::post;
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(MAX_THREADS, initializers.size())), runnable -> {
+                    Thread thread = new Thread(runnable, "startup-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        Map<String, CompletableFuture<Void>> done = new LinkedHashMap<>();
+        for (Initializer initializer : initializers.values()) {
+            List<CompletableFuture<Void>> dependencies = new ArrayList<>();
+            for (String dependency : initializer.dependsOn) {
+                dependencies.add(done.get(dependency));
+            }
+            CompletableFuture<Void> ready = CompletableFuture.allOf(dependencies.toArray(new CompletableFuture[0]));
+            done.put(initializer.name, ready.thenRunAsync(() -> run(initializer),
+                    initializer.onMainThread ? mainThread : pool));
+        }
+
+        CompletableFuture.allOf(done.values().toArray(new CompletableFuture[0])).whenComplete((result, error) -> {
+            pool.shutdown();
+            for (Map.Entry<String, CompletableFuture<Void>> entry : done.entrySet()) {
+                if (entry.getValue().isCompletedExceptionally()) {
+                    Log.w(TAG, "✗ " + entry.getKey() + " failed or was skipped");
+                }
+            }
+            Log.d(TAG, "Startup finished in " + (SystemClock.elapsedRealtime() - startedAt) + " ms");
+        });
+    }
+
+    private static void run(Initializer initializer) {
+        long startedAt = SystemClock.elapsedRealtime();
+        try {
+            initializer.task.run();
+        } catch (RuntimeException e) {
+            Log.e(TAG, "✗ " + initializer.name + " threw", e);
+            throw e;
+        }
+        Log.d(TAG, "✓ " + initializer.name + " in " + (SystemClock.elapsedRealtime() - startedAt)
+                + " ms on " + Thread.currentThread().getName());
+    }
+}
@@ -4,45 +4,89 @@ import android.app.AlertDialog;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
-import android.os.Build;
-import android.telephony.SmsManager;
-import android.telephony.SubscriptionInfo;
-import android.telephony.SubscriptionManager;
+import android.os.Handler;
+import android.os.Looper;
 import android.widget.Toast;
 
-import com.example.data.EmergencyContactManager;
-
-import java.util.List;
+import com.example.core.PendingAlert;
+import com.example.core.WakeLeases;
+import com.example.data.AlertConfig;
+import com.google.android.gms.location.LocationServices;
 
+/**
+ * Confirmation and countdown of a manually triggered alert. The countdown belongs to
+ * the activity that shows it: dismiss() from its onDestroy cancels the alert, so a
+ * destroyed activity never sends one or touches its dialogs afterwards.
+ */
 public class EmergencyAlertDialog {
 
+    // Time to send the SMS and show the result once the countdown is over
+    private static final long DISPATCH_MARGIN_MS = 10_000;
+
     public interface OnAlertActionListener {
         void onAlertSent();
         void onAlertCancelled();
     }
 
-    public static void show(Context context, OnAlertActionListener listener) {
-        EmergencyContactManager contactManager = new EmergencyContactManager(context);
+    private final Context context;
+    private final OnAlertActionListener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private AlertDialog dialog;
+    // Counting down, null before and after
+    private PendingAlert alert;
+    private WakeLeases.Lease countdownLease;
+    private boolean dismissed;
+
+    private EmergencyAlertDialog(Context context, OnAlertActionListener listener) {
+        this.context = context;
+        this.listener = listener;
+    }
+
+    /**
+     * Ask for confirmation, then count down and send. Keep the returned dialog and
+     * call dismiss() when the activity is destroyed.
+     */
+    public static EmergencyAlertDialog show(Context context, OnAlertActionListener listener) {
+        EmergencyAlertDialog alertDialog = new EmergencyAlertDialog(context, listener);
+        alertDialog.confirm();
+        return alertDialog;
+    }
+
+    /**
+     * Cancel a countdown in progress and close whichever dialog is showing, without
+     * calling the listener. Calling it again is a no-op.
+     */
+    public void dismiss() {
+        if (dismissed) {
+            return;
+        }
+        dismissed = true;
+        if (alert != null) {
+            alert.cancel();
+        }
+        finishCountdown();
+        if (dialog != null && dialog.isShowing()) {
+            dialog.dismiss();
+        }
+    }
 
-        if (!contactManager.hasEmergencyContact()) {
+    private void confirm() {
+        AlertConfig config = AlertConfig.get(context);
+
+        if (!config.hasEmergencyContact()) {
             showSetupContactDialog(context);
             return;
         }
 
-        String contactName = contactManager.getContactName();
-        String contactPhone = contactManager.getContactPhone();
+        String contactName = config.contactName;
+        String contactPhone = config.contactPhone;
 
         AlertDialog.Builder builder = new AlertDialog.Builder(context);
         builder.setTitle("Emergency Alert");
         builder.setMessage("Send emergency notification to " +
                 (contactName != null ? contactName : contactPhone) + "?");
 
-        builder.setPositiveButton("Send Alert", (dialog, which) -> {
-            sendEmergencyAlert(context, contactPhone);
-            if (listener != null) {
-                listener.onAlertSent();
-            }
-        });
+        builder.setPositiveButton("Send Alert", (dialog, which) -> startCountdown(config));
 
         builder.setNegativeButton("Cancel", (dialog, which) -> {
             if (listener != null) {
@@ -51,7 +95,7 @@ public class EmergencyAlertDialog {
         });
 
         builder.setCancelable(false);
-        AlertDialog dialog = builder.create();
+        dialog = builder.create();
         dialog.show();
     }
 
@@ -63,74 +107,83 @@ public class EmergencyAlertDialog {
         builder.show();
     }
 
-    private static void sendEmergencyAlert(Context context, String phoneNumber) {
-        String message = "EMERGENCY ALERT: I need help! This is an automated message from my emergency app.";
-
-        try {
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP_MR1) {
-                // For Android 5.1 and above - handle dual SIM
-                sendSMSWithDualSIMSupport(context, phoneNumber, message);
-            } else {
-                // For older Android versions
-                SmsManager smsManager = SmsManager.getDefault();
-                smsManager.sendTextMessage(phoneNumber, null, message, null, null);
-                Toast.makeText(context, "Emergency alert sent!", Toast.LENGTH_LONG).show();
-            }
-        } catch (SecurityException e) {
-            Toast.makeText(context, "SMS permission denied", Toast.LENGTH_LONG).show();
-            openSMSAppAsFallback(context, phoneNumber, message);
-        } catch (Exception e) {
-            Toast.makeText(context, "Failed to send SMS: " + e.getMessage(),
-                    Toast.LENGTH_LONG).show();
-            openSMSAppAsFallback(context, phoneNumber, message);
+    /**
+     * Last chance to cancel. The countdown also gets a location fix and prepares the
+     * SMS, see PendingAlert. A lease keeps the CPU awake until the SMS is handed off,
+     * the screen may go off while the dialog counts down.
+     */
+    private void startCountdown(AlertConfig config) {
+        if (dismissed) {
+            return;
         }
-    }
-
-    private static void sendSMSWithDualSIMSupport(Context context, String phoneNumber, String message) {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP_MR1) {
-            try {
-                SubscriptionManager subscriptionManager =
-                        (SubscriptionManager) context.getSystemService(Context.TELEPHONY_SUBSCRIPTION_SERVICE);
-
-                if (subscriptionManager != null) {
-                    List<SubscriptionInfo> subscriptionInfoList =
-                            subscriptionManager.getActiveSubscriptionInfoList();
-
-                    if (subscriptionInfoList != null && subscriptionInfoList.size() > 0) {
-                        // Get the default SMS subscription ID
-                        int defaultSmsSubscriptionId = SmsManager.getDefaultSmsSubscriptionId();
-
-                        SmsManager smsManager;
-                        if (defaultSmsSubscriptionId != -1) {
-                            // Use default SIM
-                            smsManager = SmsManager.getSmsManagerForSubscriptionId(defaultSmsSubscriptionId);
-                        } else {
-                            // Use first available SIM
-                            int subscriptionId = subscriptionInfoList.get(0).getSubscriptionId();
-                            smsManager = SmsManager.getSmsManagerForSubscriptionId(subscriptionId);
-                        }
-
-                        smsManager.sendTextMessage(phoneNumber, null, message, null, null);
-                        Toast.makeText(context, "Emergency alert sent!", Toast.LENGTH_LONG).show();
-                        return;
+        WakeLeases wakeLeases = new WakeLeases(context);
+        countdownLease = wakeLeases.acquire(WakeLeases.Scope.DISPATCH,
+                config.countdownSeconds * 1000L + DISPATCH_MARGIN_MS);
+        PendingAlert pending = new PendingAlert(context, config, null, null);
+        alert = pending;
+
+        AlertDialog countdownDialog = new AlertDialog.Builder(context)
+                .setTitle("Sending Emergency Alert")
+                .setMessage(countdownText(config.countdownSeconds))
+                .setNegativeButton("Cancel", (dialog, which) -> {
+                    pending.cancel();
+                    finishCountdown();
+                    if (listener != null) {
+                        listener.onAlertCancelled();
                     }
+                })
+                .setCancelable(false)
+                .create();
+        dialog = countdownDialog;
+
+        Runnable tick = new Runnable() {
+            @Override
+            public void run() {
+                long remainingMs = pending.getDeadline() - System.currentTimeMillis();
+                if (remainingMs > 0) {
+                    countdownDialog.setMessage(countdownText((int) Math.ceil(remainingMs / 1000.0)));
+                    handler.postDelayed(this, 1000);
                 }
-            } catch (SecurityException e) {
-                // Permission denied - fallback to SMS app
-                openSMSAppAsFallback(context, phoneNumber, message);
-                return;
-            } catch (Exception e) {
-                e.printStackTrace();
             }
+        };
+
+        pending.start(LocationServices.getFusedLocationProviderClient(context), wakeLeases, due -> {
+            countdownDialog.dismiss();
+            sendEmergencyAlert(context, due);
+            finishCountdown();
+            if (listener != null) {
+                listener.onAlertSent();
+            }
+        });
+        countdownDialog.show();
+        handler.postDelayed(tick, 1000);
+    }
+
+    // Sent or cancelled, nothing may run for this alert anymore
+    private void finishCountdown() {
+        alert = null;
+        handler.removeCallbacksAndMessages(null);
+        if (countdownLease != null) {
+            countdownLease.release();
+            countdownLease = null;
         }
+    }
+
+    private static String countdownText(int seconds) {
+        return "Alert will be sent in " + seconds + " seconds.";
+    }
 
-        // Fallback to default SmsManager
+    private static void sendEmergencyAlert(Context context, PendingAlert alert) {
         try {
-            SmsManager smsManager = SmsManager.getDefault();
-            smsManager.sendTextMessage(phoneNumber, null, message, null, null);
+            alert.send();
             Toast.makeText(context, "Emergency alert sent!", Toast.LENGTH_LONG).show();
+        } catch (SecurityException e) {
+            Toast.makeText(context, "SMS permission denied", Toast.LENGTH_LONG).show();
+            openSMSAppAsFallback(context, alert.config.contactPhone, alert.getMessage());
         } catch (Exception e) {
-            openSMSAppAsFallback(context, phoneNumber, message);
+            Toast.makeText(context, "Failed to send SMS: " + e.getMessage(),
+                    Toast.LENGTH_LONG).show();
+            openSMSAppAsFallback(context, alert.config.contactPhone, alert.getMessage());
         }
     }
 
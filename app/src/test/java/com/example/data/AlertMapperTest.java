@@ -0,0 +1,111 @@
+package com.example.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * AlertMapper against nodes in the layout the bean mapper wrote before it, in the
+ * shape DataSnapshot.getValue() hands them over: plain maps with boxed values. Each
+ * parsed alert must equal one built through AlertEntity's own constructor and setters,
+ * the route getValue(AlertEntity.class) took.
+ */
+public class AlertMapperTest {
+    private static final int ALERTS = 1_000;
+
+    @Test
+    public void readsBeanMapperNodes() {
+        Random random = new Random(7);
+        AlertType[] types = AlertType.values();
+
+        for (int i = 0; i < ALERTS; i++) {
+            String type = types[random.nextInt(types.length)].getLabel();
+            long timestamp = 1_700_000_000_000L + i * 60_000L;
+            boolean located = random.nextInt(4) != 0;
+            Double latitude = located ? -1.2864 + random.nextDouble() * 0.1 : null;
+            Double longitude = located ? 36.8172 + random.nextDouble() * 0.1 : null;
+
+            Map<String, Object> node = new HashMap<>();
+            node.put("alertType", type);
+            node.put("timestamp", timestamp);
+            if (located) {
+                node.put("latitude", latitude);
+                node.put("longitude", longitude);
+            }
+            node.put("contactName", "Contact " + (i % 5));
+            node.put("contactPhone", "+25470000000" + (i % 5));
+            node.put("locationAvailable", located);
+            // Written by the bean mapper, ignored now
+            node.put("id", (long) i);
+
+            AlertEntity expected = new AlertEntity(type, timestamp, latitude, longitude,
+                    "Contact " + (i % 5), "+25470000000" + (i % 5), located);
+            assertSameAlert(expected, AlertMapper.fromMap("k" + i, node));
+        }
+    }
+
+    @Test
+    public void readsWholeNumberCoordinatesStoredAsLong() {
+        // The database returns 37.0 as a Long
+        Map<String, Object> node = new HashMap<>();
+        node.put("alertType", AlertType.values()[0].getLabel());
+        node.put("timestamp", 1_700_000_000_000L);
+        node.put("latitude", 0L);
+        node.put("longitude", 37L);
+        node.put("locationAvailable", true);
+
+        AlertEntity alert = AlertMapper.fromMap("key", node);
+        assertEquals(AlertEntity.toE7(0.0), alert.getLatitudeE7());
+        assertEquals(AlertEntity.toE7(37.0), alert.getLongitudeE7());
+    }
+
+    @Test
+    public void writesTheBeanMapperLayout() {
+        AlertEntity located = new AlertEntity(AlertType.values()[0].getLabel(), 1_700_000_000_000L,
+                -1.2864, 36.8172, "Contact", "+254700000000", true);
+        Map<String, Object> node = AlertMapper.toMap(located);
+        assertEquals(located.getAlertType(), node.get("alertType"));
+        assertEquals(1_700_000_000_000L, node.get("timestamp"));
+        assertEquals(-1.2864, (Double) node.get("latitude"), 1e-7);
+        assertEquals(36.8172, (Double) node.get("longitude"), 1e-7);
+        assertEquals("Contact", node.get("contactName"));
+        assertEquals("+254700000000", node.get("contactPhone"));
+        assertEquals(true, node.get("locationAvailable"));
+        assertSameAlert(located, AlertMapper.fromMap("key", node));
+
+        AlertEntity unlocated = new AlertEntity(AlertType.values()[0].getLabel(), 1_700_000_000_000L,
+                null, null, "Contact", "+254700000000", false);
+        node = AlertMapper.toMap(unlocated);
+        assertFalse(node.containsKey("latitude"));
+        assertFalse(node.containsKey("longitude"));
+        assertSameAlert(unlocated, AlertMapper.fromMap("key", node));
+    }
+
+    @Test
+    public void ignoresNodesOfTheWrongShape() {
+        Map<String, Object> node = new HashMap<>();
+        node.put("timestamp", "not a number");
+        node.put("contactName", 42L);
+
+        AlertEntity alert = AlertMapper.fromMap("key", node);
+        assertEquals(0, alert.getTimestamp());
+        assertNull(alert.getContactName());
+        assertFalse(alert.isLocationAvailable());
+    }
+
+    private static void assertSameAlert(AlertEntity expected, AlertEntity actual) {
+        assertEquals(expected.getAlertTypeCode(), actual.getAlertTypeCode());
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getLatitudeE7(), actual.getLatitudeE7());
+        assertEquals(expected.getLongitudeE7(), actual.getLongitudeE7());
+        assertEquals(expected.getContactName(), actual.getContactName());
+        assertEquals(expected.getContactPhone(), actual.getContactPhone());
+        assertEquals(expected.isLocationAvailable(), actual.isLocationAvailable());
+    }
+}
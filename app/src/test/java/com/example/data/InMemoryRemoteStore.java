@@ -0,0 +1,661 @@
+package com.example.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-memory stand-in for the Firebase tree under users/{uid} in unit tests.
+ * All traffic goes through a LatencySimulator,
+ * so latency, jitter and failures can be injected. Values are stored as plain maps
+ * in the same layout Firebase uses.
+ */
+public class InMemoryRemoteStore implements RemoteAlertStore, RemoteProfileStore {
+
+    // Resolved to the store clock when a commit is applied
+    private static final Object SERVER_TIMESTAMP = new Object();
+
+    private final LatencySimulator network;
+    private final Map<String, TreeMap<String, Object>> users = new HashMap<>();
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private long lastKeyTime;
+    private int keySequence;
+    private long commitCount;
+
+    public InMemoryRemoteStore(LatencySimulator network) {
+        this.network = network;
+    }
+
+    // Stats and direct reads for tests, no simulated latency
+
+    public synchronized long getCommitCount() {
+        return commitCount;
+    }
+
+    public synchronized int getAlertCount(String userId) {
+        return alertNodes(userId).size();
+    }
+
+    public synchronized Set<String> getAlertKeys(String userId) {
+        return new HashSet<>(alertNodes(userId).keySet());
+    }
+
+    // Alerts written in the flat pre-sharding layout, to exercise the migration
+    public synchronized void putLegacyAlert(String userId, String key, AlertEntity alert) {
+        TreeMap<String, Object> user = users.get(userId);
+        if (user == null) {
+            user = new TreeMap<>();
+            users.put(userId, user);
+        }
+        setPath(user, new String[]{NODE_ALERTS, key}, 0, resolve(AlertMapper.toMap(alert), 0));
+    }
+
+    // --- RemoteAlertStore ---
+
+    @Override
+    public synchronized String newAlertKey(String userId) {
+        // Time ordered like a push key: millis, then a sequence within the same millisecond
+        long now = System.currentTimeMillis();
+        if (now == lastKeyTime) {
+            keySequence++;
+        } else {
+            lastKeyTime = now;
+            keySequence = 0;
+        }
+        return String.format("%013d%07d", now, keySequence);
+    }
+
+    @Override
+    public Object serverTimestamp() {
+        return SERVER_TIMESTAMP;
+    }
+
+    @Override
+    public Object increment(long delta) {
+        return new Increment(delta);
+    }
+
+    @Override
+    public void commit(String userId, Map<String, Object> updates,
+                       AlertRepository.RepositoryCallback<Boolean> callback) {
+        Map<String, Object> copy = new LinkedHashMap<>(updates);
+        network.execute(() -> {
+            applyCommit(userId, copy);
+            return true;
+        }, booleanCompletion(callback));
+    }
+
+    @Override
+    public void fetchDelta(String userId, boolean full, long writtenSince, long tombstonesSince,
+                           AlertRepository.RepositoryCallback<Delta> callback) {
+        network.execute(() -> {
+            synchronized (this) {
+                List<AlertEntity> alerts = full
+                        ? alertsWhere(userId, Long.MIN_VALUE, Long.MAX_VALUE)
+                        : alertsWrittenSince(userId, writtenSince);
+
+                Map<String, Long> tombstones = new HashMap<>();
+                String newestKey = null;
+                long newest = Long.MIN_VALUE;
+                for (Map.Entry<String, Object> entry : childrenOf(userId, NODE_TOMBSTONES).entrySet()) {
+                    long deletedAt = asLong(entry.getValue());
+                    if (full) {
+                        if (deletedAt >= newest) {
+                            newest = deletedAt;
+                            newestKey = entry.getKey();
+                        }
+                    } else if (deletedAt >= tombstonesSince) {
+                        tombstones.put(entry.getKey(), deletedAt);
+                    }
+                }
+                if (newestKey != null) {
+                    tombstones.put(newestKey, newest);
+                }
+
+                TreeMap<String, Object> user = users.get(userId);
+                long clearedAt = user != null ? asLong(user.get(NODE_CLEARED_AT)) : 0;
+                return new Delta(alerts, tombstones, clearedAt);
+            }
+        }, nullOnFailure(callback));
+    }
+
+    @Override
+    public void fetchRange(String userId, long startTime, long endTime,
+                           AlertRepository.RepositoryCallback<List<AlertEntity>> callback) {
+        network.execute(() -> {
+            synchronized (this) {
+                return alertsWhere(userId, startTime, endTime);
+            }
+        }, nullOnFailure(callback));
+    }
+
+    @Override
+    public void fetchAgedAlerts(String userId, long cutoff, int limit,
+                                AlertRepository.RepositoryCallback<AgedAlerts> callback) {
+        network.execute(() -> {
+            synchronized (this) {
+                String cutoffMonth = AlertShards.monthOf(cutoff);
+                List<AlertEntity> aged = alertsWhere(userId, Long.MIN_VALUE, cutoff - 1);
+                List<String> paths = new ArrayList<>();
+                List<AlertEntity> alerts = new ArrayList<>();
+                Set<String> wholeMonths = new HashSet<>();
+                boolean monthsLeft = false;
+                for (String month : childrenOf(userId, NODE_ALERT_MONTHS).keySet()) {
+                    if (month.compareTo(cutoffMonth) >= 0) {
+                        break;
+                    }
+                    if (!paths.isEmpty() && paths.size() + 2 > limit) {
+                        monthsLeft = true;
+                        break;
+                    }
+                    paths.add(AlertShards.shardPath(month));
+                    paths.add(AlertShards.monthIndexPath(month));
+                    wholeMonths.add(month);
+                }
+                for (AlertEntity alert : aged) {
+                    String month = AlertShards.monthOf(alert.getTimestamp());
+                    if (wholeMonths.contains(month)) {
+                        alerts.add(alert);
+                    } else if (month.equals(cutoffMonth) && !monthsLeft && paths.size() < limit) {
+                        paths.add(AlertShards.alertPath(alert.getFirebaseKey(), alert.getTimestamp()));
+                        alerts.add(alert);
+                    }
+                }
+                return new AgedAlerts(paths, alerts);
+            }
+        }, nullOnFailure(callback));
+    }
+
+    @Override
+    public void fetchTombstoneKeysBefore(String userId, long cutoff, int limit,
+                                         AlertRepository.RepositoryCallback<List<String>> callback) {
+        network.execute(() -> {
+            synchronized (this) {
+                List<Map.Entry<String, Object>> aged = new ArrayList<>();
+                for (Map.Entry<String, Object> entry : childrenOf(userId, NODE_TOMBSTONES).entrySet()) {
+                    if (asLong(entry.getValue()) < cutoff) {
+                        aged.add(entry);
+                    }
+                }
+                Collections.sort(aged, (e1, e2) -> Long.compare(asLong(e1.getValue()), asLong(e2.getValue())));
+                List<String> keys = new ArrayList<>();
+                for (int i = 0; i < aged.size() && i < limit; i++) {
+                    keys.add(aged.get(i).getKey());
+                }
+                return keys;
+            }
+        }, nullOnFailure(callback));
+    }
+
+    @Override
+    public void fetchLegacyAlerts(String userId, int limit,
+                                  AlertRepository.RepositoryCallback<List<AlertEntity>> callback) {
+        network.execute(() -> {
+            synchronized (this) {
+                List<AlertEntity> alerts = new ArrayList<>();
+                for (Map.Entry<String, Object> entry : childrenOf(userId, NODE_ALERTS).entrySet()) {
+                    if (alerts.size() == limit) {
+                        break;
+                    }
+                    if (entry.getValue() instanceof Map) {
+                        @SuppressWarnings("unchecked")
+                        Map<String, Object> map = (Map<String, Object>) entry.getValue();
+                        alerts.add(AlertMapper.fromMap(entry.getKey(), map));
+                    }
+                }
+                return alerts;
+            }
+        }, nullOnFailure(callback));
+    }
+
+    @Override
+    public void fetchSummary(String userId, AlertRepository.RepositoryCallback<AlertSummary> callback) {
+        network.execute(() -> {
+            synchronized (this) {
+                TreeMap<String, Object> user = users.get(userId);
+                Object node = user != null ? user.get(NODE_SUMMARY) : null;
+                return AlertSummary.fromMap(node instanceof Map ? (Map<?, ?>) node : null);
+            }
+        }, nullOnFailure(callback));
+    }
+
+    @Override
+    public void raiseLastAlertAt(String userId, long timestamp,
+                                 AlertRepository.RepositoryCallback<Boolean> callback) {
+        network.execute(() -> {
+            String path = NODE_SUMMARY + "/" + AlertSummary.FIELD_LAST_ALERT_AT;
+            // Read and write under one lock, like a transaction
+            synchronized (this) {
+                TreeMap<String, Object> user = users.get(userId);
+                if (user == null || asLong(getPath(user, path.split("/"))) < timestamp) {
+                    applyCommit(userId, Collections.singletonMap(path, timestamp));
+                }
+            }
+            return true;
+        }, booleanCompletion(callback));
+    }
+
+    @Override
+    public Subscription subscribe(String userId, long writtenSince, ChangeListener listener) {
+        Subscriber subscriber = new Subscriber(userId, writtenSince, listener);
+        List<AlertEntity> existing;
+        synchronized (this) {
+            subscribers.add(subscriber);
+            existing = alertsWrittenSince(userId, writtenSince);
+        }
+        for (AlertEntity alert : existing) {
+            network.deliver(() -> subscriber.dispatch(() -> listener.onAlertUpserted(alert, true)));
+        }
+        return () -> {
+            subscriber.cancelled = true;
+            subscribers.remove(subscriber);
+        };
+    }
+
+    // --- RemoteProfileStore ---
+
+    @Override
+    public void loadProfile(String userId, ValueCallback<EmergencyProfile> callback) {
+        network.execute(() -> {
+            synchronized (this) {
+                TreeMap<String, Object> user = users.get(userId);
+                if (user == null) {
+                    return null;
+                }
+                Object profile = user.get(NODE_PROFILE);
+                if (profile instanceof Map) {
+                    Map<?, ?> map = (Map<?, ?>) profile;
+                    Object contact = map.get(EmergencyProfile.FIELD_CONTACT);
+                    Object message = map.get(EmergencyProfile.FIELD_MESSAGE);
+                    return new EmergencyProfile(
+                            contact instanceof Map ? EmergencyProfile.contactFromMap((Map<?, ?>) contact) : null,
+                            message instanceof String ? (String) message : null,
+                            asLong(map.get(EmergencyProfile.FIELD_VERSION)));
+                }
+                Object contact = user.get(NODE_CONTACT);
+                Object message = user.get(NODE_MESSAGE);
+                if (!(contact instanceof Map) && !(message instanceof String)) {
+                    return null;
+                }
+                return new EmergencyProfile(
+                        contact instanceof Map ? EmergencyProfile.contactFromMap((Map<?, ?>) contact) : null,
+                        message instanceof String ? (String) message : null, 0);
+            }
+        }, valueCompletion(callback));
+    }
+
+    @Override
+    public void updateProfile(String userId, EmergencyContactManager.EmergencyContact contact, String message,
+                              AlertRepository.RepositoryCallback<Boolean> callback) {
+        Map<String, Object> updates = new HashMap<>();
+        if (contact != null) {
+            updates.put(NODE_PROFILE + "/" + EmergencyProfile.FIELD_CONTACT, EmergencyProfile.contactToMap(contact));
+        }
+        if (message != null) {
+            updates.put(NODE_PROFILE + "/" + EmergencyProfile.FIELD_MESSAGE, message);
+        }
+        writeProfile(userId, updates, callback);
+    }
+
+    @Override
+    public void saveProfile(String userId, EmergencyProfile profile,
+                            AlertRepository.RepositoryCallback<Boolean> callback) {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put(NODE_PROFILE + "/" + EmergencyProfile.FIELD_CONTACT,
+                profile.contact != null ? EmergencyProfile.contactToMap(profile.contact) : null);
+        updates.put(NODE_PROFILE + "/" + EmergencyProfile.FIELD_MESSAGE, profile.message);
+        updates.put(NODE_CONTACT, null);
+        updates.put(NODE_MESSAGE, null);
+        writeProfile(userId, updates, callback);
+    }
+
+    private void writeProfile(String userId, Map<String, Object> updates,
+                              AlertRepository.RepositoryCallback<Boolean> callback) {
+        updates.put(NODE_PROFILE + "/" + EmergencyProfile.FIELD_VERSION, SERVER_TIMESTAMP);
+        commit(userId, updates, callback);
+    }
+
+    @Override
+    public void clearUser(String userId, AlertRepository.RepositoryCallback<Boolean> callback) {
+        network.execute(() -> {
+            Map<String, Object> removeAll = new HashMap<>();
+            synchronized (this) {
+                TreeMap<String, Object> user = users.get(userId);
+                if (user != null) {
+                    for (String child : user.keySet()) {
+                        removeAll.put(child, null);
+                    }
+                }
+            }
+            applyCommit(userId, removeAll);
+            return true;
+        }, booleanCompletion(callback));
+    }
+
+    // --- Tree operations ---
+
+    private void applyCommit(String userId, Map<String, Object> updates) {
+        List<Runnable> events = new ArrayList<>();
+        synchronized (this) {
+            checkNoOverlap(updates.keySet());
+
+            // Alert keys touched by this commit and their write times before it, for change
+            // events. Like the Firebase subscription, events follow the write index.
+            Set<String> touched = new HashSet<>();
+            Map<String, Long> before = writeTimes(userId);
+            for (Map.Entry<String, Object> update : updates.entrySet()) {
+                String[] parts = update.getKey().split("/");
+                if (!parts[0].equals(NODE_ALERT_WRITES) && !parts[0].equals(NODE_ALERT_SHARDS)) {
+                    continue;
+                }
+                if (parts[0].equals(NODE_ALERT_WRITES) ? parts.length == 2 : parts.length == 3) {
+                    touched.add(parts[parts.length - 1]);
+                    continue;
+                }
+                // Whole index, whole shard, or every shard, replaced
+                if (parts.length == 1) {
+                    touched.addAll(before.keySet());
+                } else {
+                    Object shard = childrenOf(userId, NODE_ALERT_SHARDS).get(parts[1]);
+                    collectKeys(shard, 1, touched);
+                }
+                collectKeys(update.getValue(), parts[0].equals(NODE_ALERT_SHARDS) && parts.length == 1 ? 2 : 1,
+                        touched);
+            }
+
+            long now = System.currentTimeMillis();
+            TreeMap<String, Object> user = users.get(userId);
+            if (user == null) {
+                user = new TreeMap<>();
+                users.put(userId, user);
+            }
+            for (Map.Entry<String, Object> update : updates.entrySet()) {
+                String[] parts = update.getKey().split("/");
+                Object value = update.getValue() instanceof Increment
+                        ? asLong(getPath(user, parts)) + ((Increment) update.getValue()).delta
+                        : resolve(update.getValue(), now);
+                setPath(user, parts, 0, value);
+            }
+            if (user.isEmpty()) {
+                users.remove(userId);
+            }
+            commitCount++;
+
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.userId.equals(userId)) {
+                    collectEvents(subscriber, touched, before, writeTimes(userId), events);
+                }
+            }
+        }
+        for (Runnable event : events) {
+            network.deliver(event);
+        }
+    }
+
+    private void collectEvents(Subscriber subscriber, Set<String> touched, Map<String, Long> before,
+                               Map<String, Long> after, List<Runnable> events) {
+        Map<String, Map<String, Object>> alerts = alertNodes(subscriber.userId);
+        for (String key : touched) {
+            Long oldWrittenAt = before.get(key);
+            boolean wasVisible = oldWrittenAt != null && oldWrittenAt >= subscriber.since;
+            Long writtenAt = after.get(key);
+            boolean isVisible = writtenAt != null && writtenAt >= subscriber.since;
+
+            if (isVisible) {
+                AlertEntity changed = AlertMapper.fromMap(key, alerts.get(key));
+                boolean added = !wasVisible;
+                events.add(() -> subscriber.dispatch(() -> subscriber.listener.onAlertUpserted(changed, added)));
+            } else if (wasVisible) {
+                events.add(() -> subscriber.dispatch(() -> subscriber.listener.onAlertRemoved(key)));
+            }
+        }
+    }
+
+    private static Object getPath(Map<String, Object> node, String[] parts) {
+        Object value = node;
+        for (String part : parts) {
+            if (!(value instanceof Map)) {
+                return null;
+            }
+            value = ((Map<?, ?>) value).get(part);
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void setPath(Map<String, Object> node, String[] parts, int index, Object value) {
+        String key = parts[index];
+        if (index == parts.length - 1) {
+            if (value == null) {
+                node.remove(key);
+            } else {
+                node.put(key, value);
+            }
+            return;
+        }
+        Object child = node.get(key);
+        if (!(child instanceof Map)) {
+            if (value == null) {
+                return;
+            }
+            child = new TreeMap<String, Object>();
+            node.put(key, child);
+        }
+        Map<String, Object> childMap = (Map<String, Object>) child;
+        setPath(childMap, parts, index + 1, value);
+        // Firebase has no empty nodes
+        if (childMap.isEmpty()) {
+            node.remove(key);
+        }
+    }
+
+    // Deep copy so callers cannot mutate stored state, with server timestamps filled in
+    private static Object resolve(Object value, long now) {
+        if (value == SERVER_TIMESTAMP) {
+            return now;
+        }
+        if (value instanceof Map) {
+            TreeMap<String, Object> copy = new TreeMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                Object resolved = resolve(entry.getValue(), now);
+                if (resolved != null) {
+                    copy.put(String.valueOf(entry.getKey()), resolved);
+                }
+            }
+            return copy.isEmpty() ? null : copy;
+        }
+        if (value instanceof Integer) {
+            // Firebase hands whole numbers back as Long
+            return ((Integer) value).longValue();
+        }
+        return value;
+    }
+
+    // Same rule as updateChildren: a batch may not contain a path and one of its ancestors
+    private static void checkNoOverlap(Set<String> paths) {
+        for (String path : paths) {
+            for (String other : paths) {
+                if (other.startsWith(path + "/")) {
+                    throw new IllegalArgumentException("Path " + path + " is an ancestor of " + other);
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> childrenOf(String userId, String node) {
+        TreeMap<String, Object> user = users.get(userId);
+        Object children = user != null ? user.get(node) : null;
+        return children instanceof Map ? (Map<String, Object>) children : Collections.emptyMap();
+    }
+
+    // Keys in a written subtree depth levels down, e.g. the alert keys of a shard value
+    private static void collectKeys(Object value, int depth, Set<String> keys) {
+        if (!(value instanceof Map)) {
+            return;
+        }
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+            if (depth == 1) {
+                keys.add(String.valueOf(entry.getKey()));
+            } else {
+                collectKeys(entry.getValue(), depth - 1, keys);
+            }
+        }
+    }
+
+    // Every alert node of a user across shards, by key
+    @SuppressWarnings("unchecked")
+    private Map<String, Map<String, Object>> alertNodes(String userId) {
+        Map<String, Map<String, Object>> nodes = new HashMap<>();
+        for (Object shard : childrenOf(userId, NODE_ALERT_SHARDS).values()) {
+            if (!(shard instanceof Map)) {
+                continue;
+            }
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) shard).entrySet()) {
+                if (entry.getValue() instanceof Map) {
+                    nodes.put(entry.getKey(), (Map<String, Object>) entry.getValue());
+                }
+            }
+        }
+        return nodes;
+    }
+
+    // Write index time of every alert whose node and index entry both exist, by key
+    private Map<String, Long> writeTimes(String userId) {
+        Map<String, Map<String, Object>> nodes = alertNodes(userId);
+        Map<String, Long> times = new HashMap<>();
+        for (Map.Entry<String, Object> entry : childrenOf(userId, NODE_ALERT_WRITES).entrySet()) {
+            if (nodes.containsKey(entry.getKey()) && entry.getValue() instanceof Map) {
+                times.put(entry.getKey(), asLong(((Map<?, ?>) entry.getValue()).get(AlertShards.FIELD_WRITTEN_AT)));
+            }
+        }
+        return times;
+    }
+
+    // Alerts written at or after writtenSince, whatever their timestamp, oldest first
+    private List<AlertEntity> alertsWrittenSince(String userId, long writtenSince) {
+        Map<String, Map<String, Object>> nodes = alertNodes(userId);
+        List<AlertEntity> alerts = new ArrayList<>();
+        for (Map.Entry<String, Long> written : writeTimes(userId).entrySet()) {
+            if (written.getValue() >= writtenSince) {
+                alerts.add(AlertMapper.fromMap(written.getKey(), nodes.get(written.getKey())));
+            }
+        }
+        Collections.sort(alerts, (a1, a2) -> Long.compare(a1.getTimestamp(), a2.getTimestamp()));
+        return alerts;
+    }
+
+    // Alerts with startTime <= timestamp <= endTime, oldest first, visiting only the overlapping shards
+    @SuppressWarnings("unchecked")
+    private List<AlertEntity> alertsWhere(String userId, long startTime, long endTime) {
+        String firstMonth = startTime > 0 ? AlertShards.monthOf(startTime) : null;
+        String lastMonth = endTime != Long.MAX_VALUE ? AlertShards.monthOf(endTime) : null;
+        List<AlertEntity> alerts = new ArrayList<>();
+        for (Map.Entry<String, Object> shard : childrenOf(userId, NODE_ALERT_SHARDS).entrySet()) {
+            if ((firstMonth != null && shard.getKey().compareTo(firstMonth) < 0)
+                    || (lastMonth != null && shard.getKey().compareTo(lastMonth) > 0)
+                    || !(shard.getValue() instanceof Map)) {
+                continue;
+            }
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) shard.getValue()).entrySet()) {
+                if (!(entry.getValue() instanceof Map)) {
+                    continue;
+                }
+                Map<String, Object> map = (Map<String, Object>) entry.getValue();
+                long timestamp = asLong(map.get(AlertMapper.FIELD_TIMESTAMP));
+                if (timestamp >= startTime && timestamp <= endTime) {
+                    alerts.add(AlertMapper.fromMap(entry.getKey(), map));
+                }
+            }
+        }
+        Collections.sort(alerts, (a1, a2) -> Long.compare(a1.getTimestamp(), a2.getTimestamp()));
+        return alerts;
+    }
+
+    private static long asLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+
+    private static LatencySimulator.Completion<Boolean> booleanCompletion(
+            AlertRepository.RepositoryCallback<Boolean> callback) {
+        return new LatencySimulator.Completion<Boolean>() {
+            @Override
+            public void onSuccess(Boolean result) {
+                if (callback != null) {
+                    callback.onComplete(true);
+                }
+            }
+
+            @Override
+            public void onFailure(Exception error) {
+                if (callback != null) {
+                    callback.onComplete(false);
+                }
+            }
+        };
+    }
+
+    private static <T> LatencySimulator.Completion<T> nullOnFailure(
+            AlertRepository.RepositoryCallback<T> callback) {
+        return new LatencySimulator.Completion<T>() {
+            @Override
+            public void onSuccess(T result) {
+                callback.onComplete(result);
+            }
+
+            @Override
+            public void onFailure(Exception error) {
+                callback.onComplete(null);
+            }
+        };
+    }
+
+    private static <T> LatencySimulator.Completion<T> valueCompletion(ValueCallback<T> callback) {
+        return new LatencySimulator.Completion<T>() {
+            @Override
+            public void onSuccess(T result) {
+                callback.onValue(result);
+            }
+
+            @Override
+            public void onFailure(Exception error) {
+                callback.onError(error);
+            }
+        };
+    }
+
+    private static final class Increment {
+        final long delta;
+
+        Increment(long delta) {
+            this.delta = delta;
+        }
+    }
+
+    private static final class Subscriber {
+        final String userId;
+        final long since;
+        final ChangeListener listener;
+        volatile boolean cancelled;
+
+        Subscriber(String userId, long since, ChangeListener listener) {
+            this.userId = userId;
+            this.since = since;
+            this.listener = listener;
+        }
+
+        // Events already in flight are dropped once the subscription is cancelled
+        void dispatch(Runnable event) {
+            if (!cancelled) {
+                event.run();
+            }
+        }
+    }
+}
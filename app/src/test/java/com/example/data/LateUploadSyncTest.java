@@ -0,0 +1,110 @@
+package com.example.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sync by server write time against InMemoryRemoteStore: an alert uploaded late keeps
+ * its old timestamp and month shard, and must still reach a device that synced before
+ * the upload, through both the realtime subscription and the next incremental fetch.
+ */
+public class LateUploadSyncTest {
+    private static final String USER = "late-upload-user";
+    // Same margin the repository re-fetches behind its watermark
+    private static final long SKEW_MARGIN_MS = 10 * 60 * 1000;
+    private static final long DAY_MS = 24 * 60 * 60 * 1000;
+
+    private final LatencySimulator network = new LatencySimulator(5, 5, 0, 7);
+    private final InMemoryRemoteStore store = new InMemoryRemoteStore(network);
+
+    @After
+    public void tearDown() {
+        network.shutdown();
+    }
+
+    @Test
+    public void backDatedUploadReachesDeviceThatAlreadySynced() throws Exception {
+        // Device A uploads a current alert, device B syncs it and keeps the write time
+        upload(System.currentTimeMillis());
+        RemoteAlertStore.Delta first = fetchDelta(true, 0);
+        assertEquals(1, first.alerts.size());
+        long watermark = first.alerts.get(0).getSyncedAt();
+        assertTrue(watermark > 0);
+
+        // Device B listens from its watermark, as the repository does after a sync
+        long raisedAt = System.currentTimeMillis() - 60 * DAY_MS;
+        AtomicReference<AlertEntity> pushed = new AtomicReference<>();
+        CountDownLatch pushedLate = new CountDownLatch(1);
+        RemoteAlertStore.Subscription subscription = store.subscribe(USER, watermark - SKEW_MARGIN_MS,
+                new RemoteAlertStore.ChangeListener() {
+                    @Override
+                    public void onAlertUpserted(AlertEntity alert, boolean added) {
+                        if (alert.getTimestamp() == raisedAt) {
+                            pushed.set(alert);
+                            pushedLate.countDown();
+                        }
+                    }
+
+                    @Override
+                    public void onAlertRemoved(String firebaseKey) {
+                    }
+                });
+
+        // Device A comes back online and uploads an alert raised two months ago
+        Thread.sleep(5);
+        String lateKey = upload(raisedAt);
+
+        assertTrue("late upload not pushed", pushedLate.await(5, TimeUnit.SECONDS));
+        assertEquals(lateKey, pushed.get().getFirebaseKey());
+        subscription.cancel();
+
+        // The next incremental fetch finds it too, in its old month shard
+        AlertEntity fetched = null;
+        for (AlertEntity alert : fetchDelta(false, watermark - SKEW_MARGIN_MS).alerts) {
+            if (lateKey.equals(alert.getFirebaseKey())) {
+                fetched = alert;
+            }
+        }
+        assertNotNull("late upload missing from the delta", fetched);
+        assertEquals(raisedAt, fetched.getTimestamp());
+        assertTrue(fetched.getSyncedAt() > watermark);
+    }
+
+    private String upload(long timestamp) throws InterruptedException {
+        AlertEntity alert = new AlertEntity("PANIC ALERT", timestamp, -1.28, 36.82,
+                "Contact", "+254700000001", true);
+        String key = store.newAlertKey(USER);
+        Map<String, Object> updates = new HashMap<>();
+        AlertShards.putAlert(updates, key, alert, store.serverTimestamp());
+
+        CountDownLatch committed = new CountDownLatch(1);
+        store.commit(USER, updates, success -> {
+            assertTrue(success);
+            committed.countDown();
+        });
+        assertTrue(committed.await(5, TimeUnit.SECONDS));
+        return key;
+    }
+
+    private RemoteAlertStore.Delta fetchDelta(boolean full, long writtenSince) throws InterruptedException {
+        AtomicReference<RemoteAlertStore.Delta> delta = new AtomicReference<>();
+        CountDownLatch fetched = new CountDownLatch(1);
+        store.fetchDelta(USER, full, writtenSince, 0, result -> {
+            delta.set(result);
+            fetched.countDown();
+        });
+        assertTrue(fetched.await(5, TimeUnit.SECONDS));
+        assertNotNull(delta.get());
+        return delta.get();
+    }
+}
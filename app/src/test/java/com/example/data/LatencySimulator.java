@@ -0,0 +1,105 @@
+package com.example.data;
+
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulated network between a client and InMemoryRemoteStore. Every operation waits
+ * for base latency plus uniform jitter and can fail at a configured rate. Operations
+ * complete in submission order, like requests on a single connection, so a slow
+ * request also holds back the ones queued behind it. Conditions can be changed while
+ * a test is running.
+ */
+public final class LatencySimulator {
+
+    private final ScheduledExecutorService scheduler;
+    private final Random random;
+    private volatile long baseLatencyMs;
+    private volatile long jitterMs;
+    private volatile double failureRate;
+    // Completion time of the last scheduled operation, keeps completions in order
+    private long lastDueNanos;
+
+    public LatencySimulator(long baseLatencyMs, long jitterMs, double failureRate, long seed) {
+        this.baseLatencyMs = baseLatencyMs;
+        this.jitterMs = jitterMs;
+        this.failureRate = failureRate;
+        this.random = new Random(seed);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "latency-simulator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * No added latency and no failures
+     */
+    public static LatencySimulator none() {
+        return new LatencySimulator(0, 0, 0, 0);
+    }
+
+    public void setConditions(long baseLatencyMs, long jitterMs, double failureRate) {
+        this.baseLatencyMs = baseLatencyMs;
+        this.jitterMs = jitterMs;
+        this.failureRate = failureRate;
+    }
+
+    /**
+     * Run op after a simulated round trip. An injected failure skips op entirely,
+     * as if the request never reached the server.
+     */
+    <T> void execute(Callable<T> op, Completion<T> completion) {
+        boolean fail;
+        long delayNanos;
+        synchronized (this) {
+            fail = random.nextDouble() < failureRate;
+            delayNanos = nextDelayNanos();
+        }
+        scheduler.schedule(() -> {
+            if (fail) {
+                completion.onFailure(new Exception("Simulated network failure"));
+                return;
+            }
+            T result;
+            try {
+                result = op.call();
+            } catch (Exception e) {
+                completion.onFailure(e);
+                return;
+            }
+            completion.onSuccess(result);
+        }, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Deliver a server pushed event after one simulated trip, never dropped
+     */
+    void deliver(Runnable event) {
+        long delayNanos;
+        synchronized (this) {
+            delayNanos = nextDelayNanos();
+        }
+        scheduler.schedule(event, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private long nextDelayNanos() {
+        long jitter = jitterMs > 0 ? (long) (random.nextDouble() * jitterMs) : 0;
+        long now = System.nanoTime();
+        long due = Math.max(lastDueNanos, now + TimeUnit.MILLISECONDS.toNanos(baseLatencyMs + jitter));
+        lastDueNanos = due;
+        return due - now;
+    }
+
+    interface Completion<T> {
+        void onSuccess(T result);
+        void onFailure(Exception error);
+    }
+}
@@ -0,0 +1,336 @@
+package com.example.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Application;
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Several devices signed in as the same user, each an AlertRepository with its own
+ * Room database and sync prefs, sharing InMemoryRemoteStore over a simulated network.
+ * Covers the watermark sync, the realtime subscription, a back-dated upload and a
+ * device that records alerts offline and uploads them late, and checks every device
+ * converges on the remote history.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 35, application = Application.class)
+public class MultiDeviceSyncTest {
+    private static final String USER = "multi-device-user";
+    private static final int ALERTS_PER_DEVICE = 15;
+    private static final long DAY_MS = 24 * 60 * 60 * 1000;
+    private static final long TIMEOUT_MS = 20_000;
+
+    private final LatencySimulator network = new LatencySimulator(5, 10, 0, 11);
+    private final InMemoryRemoteStore store = new InMemoryRemoteStore(network);
+    private final List<Device> devices = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (Device device : devices) {
+            device.repository.stopRealtimeUpdates();
+            device.database.close();
+            device.link.offlineNetwork.shutdown();
+        }
+        network.shutdown();
+    }
+
+    @Test
+    public void devicesConvergeWithLateAndOfflineUploads() throws Exception {
+        Device phone = addDevice("phone");
+        Device tablet = addDevice("tablet");
+        Device watch = addDevice("watch");
+        long now = System.currentTimeMillis();
+
+        // The watch records its alerts with no connection, they stay local without a key
+        watch.link.online = false;
+        for (int i = 0; i < ALERTS_PER_DEVICE; i++) {
+            watch.insert(alert(now - (3 * DAY_MS) - i * 1000L, "watch"));
+        }
+        awaitCondition("watch alerts recorded locally", () -> watch.localAlerts().size() == ALERTS_PER_DEVICE);
+        assertEquals(0, store.getAlertCount(USER));
+
+        // Phone and tablet sync (a full fetch the first time) and listen from their watermarks
+        phone.repository.startRealtimeUpdates(new IgnoringListener());
+        tablet.repository.startRealtimeUpdates(new IgnoringListener());
+        assertTrue(phone.sync());
+        assertTrue(tablet.sync());
+
+        for (int i = 0; i < ALERTS_PER_DEVICE; i++) {
+            phone.insert(alert(now - i * 1000L, "phone"));
+            tablet.insert(alert(now - 500 - i * 1000L, "tablet"));
+        }
+        Set<String> online = awaitRemoteKeys(2 * ALERTS_PER_DEVICE);
+        awaitCondition("phone and tablet exchanged alerts in realtime",
+                () -> phone.localKeys().equals(online) && tablet.localKeys().equals(online));
+
+        // An alert raised two months ago and uploaded after the tablet's watermark moved on still reaches it
+        phone.insert(alert(now - 60 * DAY_MS, "phone"));
+        Set<String> withBackDated = awaitRemoteKeys(2 * ALERTS_PER_DEVICE + 1);
+        awaitCondition("back-dated upload pushed to the tablet", () -> tablet.localKeys().equals(withBackDated));
+
+        // The tablet deletes one of the phone's alerts, the tombstone reaches the phone
+        AlertEntity deleted = null;
+        for (AlertEntity alert : tablet.localAlerts()) {
+            if (alert.getTimestamp() == now) {
+                deleted = alert;
+            }
+        }
+        assertNotNull(deleted);
+        String deletedKey = deleted.getFirebaseKey();
+        tablet.delete(deleted);
+        Set<String> afterDelete = awaitRemoteKeys(2 * ALERTS_PER_DEVICE);
+        assertFalse(afterDelete.contains(deletedKey));
+        awaitCondition("delete pushed to the phone", () -> phone.localKeys().equals(afterDelete));
+
+        // The watch comes back online: its first sync merges everything and uploads its
+        // backlog, whose old timestamps land behind the other devices' newest alerts
+        watch.link.online = true;
+        assertTrue(watch.sync());
+        int expected = 3 * ALERTS_PER_DEVICE;
+        Set<String> converged = awaitRemoteKeys(expected);
+        awaitCondition("watch backlog uploaded", () -> watch.localKeys().equals(converged));
+        awaitCondition("watch backlog pushed to phone and tablet",
+                () -> phone.localKeys().equals(converged) && tablet.localKeys().equals(converged));
+
+        // A further incremental sync on every device changes nothing
+        for (Device device : devices) {
+            assertTrue(device.sync());
+            List<AlertEntity> local = device.localAlerts();
+            assertEquals(device.name, expected, local.size());
+            assertEquals(device.name, converged, device.localKeys());
+            assertEquals(device.name, timestamps(phone.localAlerts()), timestamps(local));
+        }
+    }
+
+    private Device addDevice(String name) {
+        Context context = ApplicationProvider.getApplicationContext();
+        AlertDatabase database = AlertDatabase.inMemory(context);
+        DeviceLink link = new DeviceLink(store);
+        AlertRepository repository = new AlertRepository(database,
+                context.getSharedPreferences("sync_" + name, Context.MODE_PRIVATE), link, USER);
+        Device device = new Device(name, database, link, repository);
+        devices.add(device);
+        return device;
+    }
+
+    private Set<String> awaitRemoteKeys(int count) throws InterruptedException {
+        awaitCondition("remote holds " + count + " alerts", () -> store.getAlertCount(USER) == count);
+        return store.getAlertKeys(USER);
+    }
+
+    // Repository callbacks are posted to the main looper, which the test thread runs
+    private static void awaitCondition(String what, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (true) {
+            ShadowLooper.idleMainLooper();
+            if (condition.getAsBoolean()) {
+                return;
+            }
+            assertTrue("timed out waiting for " + what, System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static AlertEntity alert(long timestamp, String device) {
+        return new AlertEntity("PANIC ALERT", timestamp, -1.28, 36.82,
+                "Contact " + device, "+254700000001", true);
+    }
+
+    private static Set<Long> timestamps(List<AlertEntity> alerts) {
+        Set<Long> timestamps = new HashSet<>();
+        for (AlertEntity alert : alerts) {
+            timestamps.add(alert.getTimestamp());
+        }
+        return timestamps;
+    }
+
+    private static final class Device {
+        final String name;
+        final AlertDatabase database;
+        final DeviceLink link;
+        final AlertRepository repository;
+
+        Device(String name, AlertDatabase database, DeviceLink link, AlertRepository repository) {
+            this.name = name;
+            this.database = database;
+            this.link = link;
+            this.repository = repository;
+        }
+
+        void insert(AlertEntity alert) throws InterruptedException {
+            AtomicReference<Boolean> done = new AtomicReference<>();
+            repository.insert(alert, firebaseKey -> done.set(true));
+            awaitCondition(name + " insert", () -> done.get() != null);
+        }
+
+        void delete(AlertEntity alert) throws InterruptedException {
+            AtomicReference<Boolean> deleted = new AtomicReference<>();
+            repository.deleteAlert(alert, deleted::set);
+            awaitCondition(name + " delete", () -> deleted.get() != null);
+            assertTrue(deleted.get());
+        }
+
+        boolean sync() throws InterruptedException {
+            AtomicReference<Boolean> synced = new AtomicReference<>();
+            repository.forceSyncFromFirebase(synced::set);
+            awaitCondition(name + " sync", () -> synced.get() != null);
+            return synced.get();
+        }
+
+        List<AlertEntity> localAlerts() {
+            return database.alertDao().getAllAlerts();
+        }
+
+        // Keys of the local rows, a row not uploaded yet keeps this from matching the remote set
+        Set<String> localKeys() {
+            Set<String> keys = new HashSet<>();
+            for (AlertEntity alert : localAlerts()) {
+                keys.add(alert.getFirebaseKey());
+            }
+            return keys;
+        }
+    }
+
+    /**
+     * One device's connection to the shared store. While offline every request fails,
+     * asynchronously like a real one.
+     */
+    private static final class DeviceLink implements RemoteAlertStore {
+        final RemoteAlertStore server;
+        final LatencySimulator offlineNetwork = LatencySimulator.none();
+        volatile boolean online = true;
+
+        DeviceLink(RemoteAlertStore server) {
+            this.server = server;
+        }
+
+        private <T> boolean failOffline(AlertRepository.RepositoryCallback<T> callback, T failure) {
+            if (online) {
+                return false;
+            }
+            offlineNetwork.deliver(() -> {
+                if (callback != null) {
+                    callback.onComplete(failure);
+                }
+            });
+            return true;
+        }
+
+        @Override
+        public String newAlertKey(String userId) {
+            return server.newAlertKey(userId);
+        }
+
+        @Override
+        public Object serverTimestamp() {
+            return server.serverTimestamp();
+        }
+
+        @Override
+        public Object increment(long delta) {
+            return server.increment(delta);
+        }
+
+        @Override
+        public void commit(String userId, Map<String, Object> updates,
+                           AlertRepository.RepositoryCallback<Boolean> callback) {
+            if (!failOffline(callback, false)) {
+                server.commit(userId, updates, callback);
+            }
+        }
+
+        @Override
+        public void fetchDelta(String userId, boolean full, long writtenSince, long tombstonesSince,
+                               AlertRepository.RepositoryCallback<Delta> callback) {
+            if (!failOffline(callback, null)) {
+                server.fetchDelta(userId, full, writtenSince, tombstonesSince, callback);
+            }
+        }
+
+        @Override
+        public void fetchRange(String userId, long startTime, long endTime,
+                               AlertRepository.RepositoryCallback<List<AlertEntity>> callback) {
+            if (!failOffline(callback, null)) {
+                server.fetchRange(userId, startTime, endTime, callback);
+            }
+        }
+
+        @Override
+        public void fetchAgedAlerts(String userId, long cutoff, int limit,
+                                    AlertRepository.RepositoryCallback<AgedAlerts> callback) {
+            if (!failOffline(callback, null)) {
+                server.fetchAgedAlerts(userId, cutoff, limit, callback);
+            }
+        }
+
+        @Override
+        public void fetchTombstoneKeysBefore(String userId, long cutoff, int limit,
+                                             AlertRepository.RepositoryCallback<List<String>> callback) {
+            if (!failOffline(callback, null)) {
+                server.fetchTombstoneKeysBefore(userId, cutoff, limit, callback);
+            }
+        }
+
+        @Override
+        public void fetchLegacyAlerts(String userId, int limit,
+                                      AlertRepository.RepositoryCallback<List<AlertEntity>> callback) {
+            if (!failOffline(callback, null)) {
+                server.fetchLegacyAlerts(userId, limit, callback);
+            }
+        }
+
+        @Override
+        public void fetchSummary(String userId, AlertRepository.RepositoryCallback<AlertSummary> callback) {
+            if (!failOffline(callback, null)) {
+                server.fetchSummary(userId, callback);
+            }
+        }
+
+        @Override
+        public void raiseLastAlertAt(String userId, long timestamp,
+                                     AlertRepository.RepositoryCallback<Boolean> callback) {
+            if (!failOffline(callback, false)) {
+                server.raiseLastAlertAt(userId, timestamp, callback);
+            }
+        }
+
+        @Override
+        public Subscription subscribe(String userId, long writtenSince, ChangeListener listener) {
+            return server.subscribe(userId, writtenSince, listener);
+        }
+    }
+
+    private static final class IgnoringListener implements AlertRepository.AlertChangeListener {
+        @Override
+        public void onAlertAdded(AlertEntity alert) {
+        }
+
+        @Override
+        public void onAlertChanged(AlertEntity alert) {
+        }
+
+        @Override
+        public void onAlertRemoved(String firebaseKey) {
+        }
+    }
+}
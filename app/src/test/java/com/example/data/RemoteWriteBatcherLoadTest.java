@@ -0,0 +1,161 @@
+package com.example.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * RemoteWriteBatcher and the remote store contract under load: concurrent batched
+ * writes, an incremental fetch and realtime events against InMemoryRemoteStore over a
+ * simulated bad network (80 ms base latency, up to 120 ms jitter, 5% failed requests).
+ * MultiDeviceSyncTest drives the repository itself.
+ */
+public class RemoteWriteBatcherLoadTest {
+    private static final String USER = "load-test-user";
+    private static final int DEVICES = 20;
+    private static final int ALERTS_PER_DEVICE = 50;
+    private static final int TOTAL_ALERTS = DEVICES * ALERTS_PER_DEVICE;
+    // Back-dated alerts uploaded after the rest, like offline queues draining
+    private static final int LATE_ALERTS = 40;
+    // Generous for the simulated network, catches batches queueing behind each other
+    private static final long MAX_P95_WRITE_LATENCY_MS = 10_000;
+
+    private final LatencySimulator network = new LatencySimulator(80, 120, 0.05, 42);
+    private final InMemoryRemoteStore store = new InMemoryRemoteStore(network);
+
+    @After
+    public void tearDown() {
+        network.shutdown();
+    }
+
+    @Test
+    public void batchedWritesUnderLatencyAndFailures() throws Exception {
+        List<Long> latenciesMs = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger retries = new AtomicInteger();
+        CountDownLatch committed = new CountDownLatch(TOTAL_ALERTS);
+
+        // Realtime subscriber must see every alert exactly once as an addition
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicateAdds = new AtomicInteger();
+        RemoteAlertStore.Subscription subscription = store.subscribe(USER, 0,
+                new RemoteAlertStore.ChangeListener() {
+                    @Override
+                    public void onAlertUpserted(AlertEntity alert, boolean added) {
+                        if (added && !seen.add(alert.getFirebaseKey())) {
+                            duplicateAdds.incrementAndGet();
+                        }
+                    }
+
+                    @Override
+                    public void onAlertRemoved(String firebaseKey) {
+                    }
+                });
+
+        List<Thread> devices = new ArrayList<>();
+        for (int d = 0; d < DEVICES; d++) {
+            RemoteWriteBatcher batcher = new RemoteWriteBatcher(store, 20, 50);
+            int device = d;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < ALERTS_PER_DEVICE; i++) {
+                    AlertEntity alert = new AlertEntity("PANIC ALERT", 1_700_000_000_000L + device * 1000L + i,
+                            -1.28, 36.82, "Contact " + device, "+2547000000" + device, true);
+                    String key = store.newAlertKey(USER);
+                    write(batcher, key, alert, System.nanoTime(), latenciesMs, retries, committed);
+                }
+            });
+            devices.add(thread);
+            thread.start();
+        }
+        for (Thread thread : devices) {
+            thread.join();
+        }
+
+        assertTrue("writes did not finish", committed.await(60, TimeUnit.SECONDS));
+        assertEquals(TOTAL_ALERTS, store.getAlertCount(USER));
+
+        // Batching must collapse the writes into far fewer round trips
+        assertTrue(store.getCommitCount() + " commits, " + retries.get() + " retried writes",
+                store.getCommitCount() < TOTAL_ALERTS / 4);
+
+        // A failed batch is retried as a whole, one retry must not hold the rest back for long
+        List<Long> sorted = new ArrayList<>(latenciesMs);
+        Collections.sort(sorted);
+        long p95 = percentile(sorted, 95);
+        assertTrue("p95 write latency " + p95 + " ms", p95 < MAX_P95_WRITE_LATENCY_MS);
+
+        // Incremental fetch from a write time watermark returns only what was uploaded
+        // after it, even when those alerts happened long before everything else
+        long watermark = System.currentTimeMillis() + 1;
+        Thread.sleep(5);
+        CountDownLatch lateCommitted = new CountDownLatch(LATE_ALERTS);
+        RemoteWriteBatcher lateBatcher = new RemoteWriteBatcher(store, 20, 50);
+        for (int i = 0; i < LATE_ALERTS; i++) {
+            AlertEntity alert = new AlertEntity("PANIC ALERT", 1_600_000_000_000L + i,
+                    -1.28, 36.82, "Offline contact", "+254700000099", true);
+            write(lateBatcher, store.newAlertKey(USER), alert, System.nanoTime(), latenciesMs, retries, lateCommitted);
+        }
+        assertTrue("late writes did not finish", lateCommitted.await(30, TimeUnit.SECONDS));
+
+        CountDownLatch fetched = new CountDownLatch(1);
+        RemoteAlertStore.Delta[] delta = new RemoteAlertStore.Delta[1];
+        fetchWithRetry(watermark, delta, fetched);
+        assertTrue(fetched.await(30, TimeUnit.SECONDS));
+        assertNotNull(delta[0]);
+        assertEquals(LATE_ALERTS, delta[0].alerts.size());
+
+        // Pushed events trail the commits by one simulated trip
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (seen.size() < TOTAL_ALERTS + LATE_ALERTS && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        subscription.cancel();
+        assertEquals(TOTAL_ALERTS + LATE_ALERTS, seen.size());
+        assertEquals(0, duplicateAdds.get());
+    }
+
+    // Retries a failed batch item like the repository does on its next sync
+    private void write(RemoteWriteBatcher batcher, String key, AlertEntity alert, long enqueuedAt,
+                       List<Long> latenciesMs, AtomicInteger retries, CountDownLatch committed) {
+        Map<String, Object> updates = new HashMap<>();
+        AlertShards.putAlert(updates, key, alert, store.serverTimestamp());
+        batcher.enqueue(USER, updates, success -> {
+            if (success) {
+                latenciesMs.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - enqueuedAt));
+                committed.countDown();
+            } else {
+                retries.incrementAndGet();
+                write(batcher, key, alert, enqueuedAt, latenciesMs, retries, committed);
+            }
+        });
+    }
+
+    private void fetchWithRetry(long watermark, RemoteAlertStore.Delta[] delta, CountDownLatch fetched) {
+        store.fetchDelta(USER, false, watermark, 0, result -> {
+            if (result == null) {
+                fetchWithRetry(watermark, delta, fetched);
+                return;
+            }
+            delta[0] = result;
+            fetched.countDown();
+        });
+    }
+
+    private static long percentile(List<Long> sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index));
+    }
+}